@@ -2,22 +2,30 @@
 package se.kth.iv1350.pos.controller;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import se.kth.iv1350.pos.dto.BatchRegistrationDTO;
 import se.kth.iv1350.pos.dto.ItemDTO;
+import se.kth.iv1350.pos.dto.ItemEntryDTO;
 import se.kth.iv1350.pos.dto.ItemRegistrationDTO;
 import se.kth.iv1350.pos.dto.PaymentDTO;
 import se.kth.iv1350.pos.dto.ReceiptDTO;
 import se.kth.iv1350.pos.dto.SaleDTO;
+import se.kth.iv1350.pos.dto.SaleItemDTO;
 import se.kth.iv1350.pos.integration.AccountingSystem;
 import se.kth.iv1350.pos.integration.InventorySystem;
 import se.kth.iv1350.pos.integration.ItemRegistry;
 import se.kth.iv1350.pos.integration.Printer;
+import se.kth.iv1350.pos.integration.ReceiptExporter;
 import se.kth.iv1350.pos.integration.RegistryCreator;
+import se.kth.iv1350.pos.integration.SaleJournal;
 import se.kth.iv1350.pos.model.CashPayment;
 import se.kth.iv1350.pos.model.CashRegister;
 import se.kth.iv1350.pos.model.Receipt;
 import se.kth.iv1350.pos.model.Sale;
 import se.kth.iv1350.pos.model.SaleProcessor;
+import se.kth.iv1350.pos.model.VatRounding;
 import se.kth.iv1350.pos.util.Amount;
 
 /**
@@ -29,32 +37,84 @@ public class Controller {
     private final Printer printer;
     private final AccountingSystem accountingSystem;
     private final InventorySystem inventorySystem;
+    private final SaleJournal saleJournal;
+    private final ReceiptExporter receiptExporter;
 
     private final CashRegister cashRegister;
     private final SaleProcessor saleProcessor;
+    private final boolean reuseSales;
 
     private Sale currentSale;
+    private VatRounding vatRounding = VatRounding.PER_LINE;
 
     /**
      * Creates a new controller instance with references to external systems.
+     * If a sale was interrupted at this lane, it is resumed and its units are
+     * reserved again.
      *
      * @param creator Used to get all external system handlers
      */
     public Controller(RegistryCreator creator) {
+        this(creator, false);
+    }
+
+    /**
+     * Creates a new controller instance with references to external systems,
+     * optionally reusing one sale object for all sales at this lane. Reuse
+     * saves allocations at busy lanes. DTOs returned by the controller are
+     * copies of the sale data and stay valid. Item lists taken from the sale
+     * with <code>getItems()</code> are views, though; a view kept past the end
+     * of its sale is not prevented, only detected, since it throws
+     * <code>IllegalStateException</code> when used after the reset.
+     *
+     * @param creator Used to get all external system handlers
+     * @param reuseSales true if the sale object shall be reset and reused for each new sale
+     */
+    public Controller(RegistryCreator creator, boolean reuseSales) {
+        this.reuseSales = reuseSales;
         this.itemRegistry = creator.getItemRegistry();
         this.printer = creator.getPrinter();
         this.accountingSystem = creator.getAccountingSystem();
         this.inventorySystem = creator.getInventorySystem();
+        this.saleJournal = creator.getSaleJournal();
+        this.receiptExporter = creator.getReceiptExporter();
 
         this.cashRegister = new CashRegister();
         this.saleProcessor = new SaleProcessor();
+
+        resumeInterruptedSale();
     }
 
     /**
-     * Starts a new sale transaction.
+     * Starts a new sale transaction. Inventory reservations still held by an
+     * unpaid previous sale are released, since that sale is abandoned.
      */
     public void startNewSale() {
-        currentSale = new Sale();
+        if (currentSale != null) {
+            inventorySystem.releaseReservations(currentSale.getSaleID());
+        }
+        if (reuseSales && currentSale != null) {
+            currentSale.reset();
+        } else {
+            currentSale = new Sale();
+        }
+        currentSale.setVatRounding(vatRounding);
+        if (saleJournal != null) {
+            saleJournal.saleStarted(currentSale);
+        }
+    }
+
+    /**
+     * Sets where VAT is rounded to whole öre, for the current sale and all
+     * sales started afterwards. VAT is rounded per line by default.
+     *
+     * @param vatRounding Where VAT is rounded
+     */
+    public void setVatRounding(VatRounding vatRounding) {
+        this.vatRounding = vatRounding;
+        if (currentSale != null) {
+            currentSale.setVatRounding(vatRounding);
+        }
     }
 
     /**
@@ -71,7 +131,9 @@ public class Controller {
      *
      * @param itemID The identifier of the item to add
      * @param quantity The quantity of the specified item
-     * @return Information about the entered item and running total, or null if item not found
+     * @return Information about the entered item and running total, or null if item not found.
+     *         If the units cannot be reserved because other sales hold the rest of
+     *         the stock, the item is not added and the result is marked out of stock.
      */
     public ItemRegistrationDTO enterItem(String itemID, int quantity) {
         if (!isSaleActive()) {
@@ -84,24 +146,74 @@ public class Controller {
             return null;
         }
 
-        // Check if this is a duplicate item
-        boolean isDuplicate = false;
-        for (var lineItem : currentSale.getItems()) {
-            if (lineItem.getItem().itemID().equals(itemID)) {
-                isDuplicate = true;
-                break;
+        boolean isDuplicate = currentSale.containsItem(itemID);
+
+        // Reserve the units before adding them, so two lanes never sell the
+        // same last units
+        boolean reserved = inventorySystem.reserveItem(currentSale.getSaleID(), itemID, quantity);
+        if (reserved) {
+            currentSale.addItem(item, quantity);
+            if (saleJournal != null) {
+                saleJournal.itemAdded(item, quantity);
             }
         }
 
-        // Add item to sale
-        currentSale.addItem(item, quantity);
-
         // Return information about the addition
         return new ItemRegistrationDTO(
             item,
             currentSale.calculateTotalWithVat(),
             currentSale.calculateTotalVat(),
-            isDuplicate
+            isDuplicate,
+            !reserved
+        );
+    }
+
+    /**
+     * Adds a batch of items to the current sale, as delivered by a
+     * self-checkout scanner or an imported receipt. Entries for the same item
+     * are merged, all items are looked up at once, and the running total is
+     * calculated once for the whole batch.
+     *
+     * @param entries The identifiers and quantities of the items to add
+     * @return Information about the entered items and running total, or null if no sale is in progress
+     */
+    public BatchRegistrationDTO enterItems(List<ItemEntryDTO> entries) {
+        if (!isSaleActive()) {
+            return null;
+        }
+
+        Map<String, Integer> mergedEntries = new LinkedHashMap<>();
+        for (ItemEntryDTO entry : entries) {
+            mergedEntries.merge(entry.itemID(), entry.quantity(), Integer::sum);
+        }
+        Map<String, ItemDTO> foundItems = itemRegistry.findItems(mergedEntries.keySet());
+
+        List<SaleItemDTO> enteredItems = new ArrayList<>(foundItems.size());
+        List<String> unknownItemIDs = new ArrayList<>();
+        List<String> outOfStockItemIDs = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : mergedEntries.entrySet()) {
+            ItemDTO item = foundItems.get(entry.getKey());
+            if (item == null) {
+                unknownItemIDs.add(entry.getKey());
+                continue;
+            }
+            int quantity = entry.getValue();
+            if (!inventorySystem.reserveItem(currentSale.getSaleID(), item.itemID(), quantity)) {
+                outOfStockItemIDs.add(item.itemID());
+                continue;
+            }
+            enteredItems.add(currentSale.addItem(item, quantity));
+            if (saleJournal != null) {
+                saleJournal.itemAdded(item, quantity);
+            }
+        }
+
+        return new BatchRegistrationDTO(
+            enteredItems,
+            unknownItemIDs,
+            outOfStockItemIDs,
+            currentSale.calculateTotalWithVat(),
+            currentSale.calculateTotalVat()
         );
     }
 
@@ -137,8 +249,14 @@ public class Controller {
 
         cashRegister.addPayment(payment);
         printer.printReceipt(receiptDTO);
+        if (receiptExporter != null) {
+            receiptExporter.export(receiptDTO);
+        }
         accountingSystem.recordSale(saleProcessor.createSaleDTO(currentSale));
-        inventorySystem.updateInventory(currentSale.getItems());
+        inventorySystem.updateInventory(currentSale.getSaleID(), currentSale.getItems());
+        if (saleJournal != null) {
+            saleJournal.paymentReceived(paidAmount);
+        }
 
         return new PaymentDTO(paidAmount, change);
     }
@@ -154,4 +272,17 @@ public class Controller {
         }
         return saleProcessor.createSaleDTO(currentSale);
     }
+
+    private void resumeInterruptedSale() {
+        if (saleJournal == null) {
+            return;
+        }
+        currentSale = saleJournal.recover();
+        if (currentSale != null) {
+            for (var lineItem : currentSale.getItems()) {
+                inventorySystem.reserveItem(currentSale.getSaleID(), lineItem.getItem().itemID(),
+                                            lineItem.getQuantity());
+            }
+        }
+    }
 }
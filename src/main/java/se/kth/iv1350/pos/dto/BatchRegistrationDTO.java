@@ -0,0 +1,17 @@
+package se.kth.iv1350.pos.dto;
+
+import java.util.List;
+import se.kth.iv1350.pos.util.Amount;
+
+/**
+ * Data Transfer Object (DTO) for the result of entering a batch of items.
+ * Entries for the same item are merged into one line. Items whose units
+ * could not be reserved are not added to the sale.
+ */
+public record BatchRegistrationDTO(
+    List<SaleItemDTO> enteredItems,
+    List<String> unknownItemIDs,
+    List<String> outOfStockItemIDs,
+    Amount runningTotal,
+    Amount runningVat
+) {}
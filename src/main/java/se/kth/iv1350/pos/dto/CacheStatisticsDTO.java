@@ -0,0 +1,16 @@
+package se.kth.iv1350.pos.dto;
+
+/**
+ * Data Transfer Object (DTO) for the metrics of an item lookup cache.
+ */
+public record CacheStatisticsDTO(
+    long hits,
+    long misses,
+    long backendFetches,
+    long coalescedMisses,
+    long evictions,
+    long rejections,
+    long expirations,
+    long weightedSize,
+    int entryCount
+) {}
@@ -0,0 +1,22 @@
+package se.kth.iv1350.pos.dto;
+
+/**
+ * Data Transfer Object (DTO) for an item whose stock has fallen to or
+ * below its threshold.
+ */
+public record InventoryEventDTO(
+    String itemID,
+    Type type,
+    int remainingQuantity,
+    int threshold
+) {
+    /**
+     * The kinds of inventory events.
+     */
+    public enum Type {
+        /** The stock has fallen to or below the low-stock threshold. */
+        LOW_STOCK,
+        /** The last unit in stock has been sold. */
+        OUT_OF_STOCK
+    }
+}
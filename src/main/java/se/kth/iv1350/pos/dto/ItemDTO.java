@@ -1,6 +1,7 @@
 package se.kth.iv1350.pos.dto;
 
 import se.kth.iv1350.pos.util.Amount;
+import se.kth.iv1350.pos.util.VatRate;
 
 /**
  * Data Transfer Object (DTO) for item information.
@@ -11,5 +12,19 @@ public record ItemDTO(
     String name,
     String description,
     Amount price,
-    double vatRate
-) {}
+    VatRate vatRate
+) {
+    /**
+     * Creates an item with the VAT rate given as a fraction, rounded to
+     * whole basis points.
+     *
+     * @param itemID The item identifier
+     * @param name The item name
+     * @param description The item description
+     * @param price The price excluding VAT
+     * @param vatRate The VAT rate as a fraction, for example 0.12 for 12%
+     */
+    public ItemDTO(String itemID, String name, String description, Amount price, double vatRate) {
+        this(itemID, name, description, price, VatRate.of(vatRate));
+    }
+}
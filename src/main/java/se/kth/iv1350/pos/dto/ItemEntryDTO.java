@@ -0,0 +1,10 @@
+package se.kth.iv1350.pos.dto;
+
+/**
+ * Data Transfer Object (DTO) for one item entered in a batch, for example
+ * by a self-checkout scanner or an imported receipt.
+ */
+public record ItemEntryDTO(
+    String itemID,
+    int quantity
+) {}
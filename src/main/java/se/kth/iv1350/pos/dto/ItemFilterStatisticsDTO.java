@@ -0,0 +1,13 @@
+package se.kth.iv1350.pos.dto;
+
+/**
+ * Data Transfer Object (DTO) for the metrics of the unknown-item filter
+ * placed in front of the item catalog.
+ */
+public record ItemFilterStatisticsDTO(
+    long lookups,
+    long rejectedLookups,
+    long falsePositives,
+    double observedFalsePositiveRate,
+    double expectedFalsePositiveRate
+) {}
@@ -4,10 +4,13 @@ import se.kth.iv1350.pos.util.Amount;
 
 /**
  * Data Transfer Object (DTO) for item registration result.
+ * An item that is out of stock is not added to the sale, and the running
+ * totals are those of the sale without it.
  */
 public record ItemRegistrationDTO(
     ItemDTO item,
     Amount runningTotal,
     Amount runningVat,
-    boolean isDuplicate
+    boolean isDuplicate,
+    boolean isOutOfStock
 ) {}
@@ -0,0 +1,18 @@
+package se.kth.iv1350.pos.dto;
+
+import java.time.LocalDateTime;
+import se.kth.iv1350.pos.util.Amount;
+
+/**
+ * Data Transfer Object (DTO) for a sale submitted to the ledger. The
+ * idempotency key identifies the sale, so the ledger books an entry only
+ * once, however many times it is submitted.
+ */
+public record LedgerEntryDTO(
+    String idempotencyKey,
+    Amount total,
+    Amount totalVat,
+    Amount discountAmount,
+    Amount totalWithVat,
+    LocalDateTime saleTime
+) {}
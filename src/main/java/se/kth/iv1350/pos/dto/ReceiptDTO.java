@@ -13,5 +13,21 @@ public record ReceiptDTO(
     Amount totalVat,
     Amount paymentAmount,
     Amount changeAmount,
-    LocalDateTime saleTime
-) {}
+    LocalDateTime saleTime,
+    String saleID
+) {
+    /**
+     * Creates a receipt that does not identify its sale.
+     *
+     * @param items The sold items
+     * @param total The total excluding VAT
+     * @param totalVat The total VAT
+     * @param paymentAmount The amount paid
+     * @param changeAmount The change given
+     * @param saleTime The time of the sale
+     */
+    public ReceiptDTO(List<SaleItemDTO> items, Amount total, Amount totalVat, Amount paymentAmount,
+                      Amount changeAmount, LocalDateTime saleTime) {
+        this(items, total, totalVat, paymentAmount, changeAmount, saleTime, null);
+    }
+}
@@ -5,7 +5,9 @@ import java.util.List;
 import se.kth.iv1350.pos.util.Amount;
 
 /**
- * Data Transfer Object (DTO) containing sale information.
+ * Data Transfer Object (DTO) containing sale information. The transaction
+ * identifier stays the same for all submissions of the same sale, so that
+ * receivers can recognize a sale they have already booked.
  */
 public record SaleDTO(
     List<SaleItemDTO> items,
@@ -13,5 +15,21 @@ public record SaleDTO(
     Amount totalVat,
     Amount discountAmount,
     Amount totalWithVat,
-    LocalDateTime saleTime
-) {}
+    LocalDateTime saleTime,
+    String transactionID
+) {
+    /**
+     * Creates a sale that has no transaction identifier.
+     *
+     * @param items The sold items
+     * @param total The total excluding VAT
+     * @param totalVat The total VAT
+     * @param discountAmount The discount given
+     * @param totalWithVat The total including VAT, after the discount
+     * @param saleTime The time of the sale
+     */
+    public SaleDTO(List<SaleItemDTO> items, Amount total, Amount totalVat, Amount discountAmount,
+                   Amount totalWithVat, LocalDateTime saleTime) {
+        this(items, total, totalVat, discountAmount, totalWithVat, saleTime, null);
+    }
+}
@@ -0,0 +1,12 @@
+package se.kth.iv1350.pos.dto;
+
+/**
+ * Data Transfer Object (DTO) for the metrics of a receipt print spool.
+ */
+public record SpoolStatisticsDTO(
+    int queuedReceipts,
+    int maxQueuedReceipts,
+    long printedReceipts,
+    long deviceWrites,
+    long failedWrites
+) {}
@@ -0,0 +1,378 @@
+package se.kth.iv1350.pos.integration;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import se.kth.iv1350.pos.dto.LedgerEntryDTO;
+import se.kth.iv1350.pos.util.Amount;
+import se.kth.iv1350.pos.util.AsyncLogger;
+
+/**
+ * Holds sales on their way to the ledger. A submitted sale is written to an
+ * append-only outbox file before it is accepted, and is posted to the ledger
+ * in batches by a background flusher. When the ledger has booked a batch,
+ * its sales are marked as acknowledged in the file. If the ledger cannot be
+ * reached, the flusher tries again after a delay that doubles with every
+ * failure, up to a maximum, so an outage delays booking but loses nothing.
+ * <p>
+ * Each line of the file is either <code>P;key;total;vat;discount;totalWithVat;time</code>
+ * for a pending sale, with amounts in öre, or <code>A;key</code> for an
+ * acknowledged one. Recovery reads the file and keeps the pending sales that
+ * were never acknowledged. The keys of the most recently acknowledged sales
+ * are kept in the file as well, so a sale submitted again is refused even
+ * after a restart. When many acknowledgements have piled up, the file is
+ * rewritten with only those keys and the pending sales.
+ * <p>
+ * Booking exactly once still depends on the ledger: a sale posted just before
+ * a crash may be posted again after the restart, and a key older than the
+ * remembered ones is no longer recognized here. The ledger shall ignore
+ * entries whose idempotency key it has already booked, see {@link LedgerEndpoint}.
+ */
+final class AccountingOutbox {
+    private static final AsyncLogger LOGGER = AsyncLogger.diagnostics();
+    private static final String FIELD_SEPARATOR = ";";
+    private static final String PENDING = "P";
+    private static final String ACKNOWLEDGED = "A";
+    private static final int PENDING_FIELD_COUNT = 7;
+    private static final int COMPACTION_THRESHOLD = 1000;
+    private static final int REMEMBERED_KEYS = 10_000;
+
+    private final Path file;
+    private final LedgerEndpoint ledger;
+    private final int maxBatchSize;
+    private final long flushIntervalMillis;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final Object flushLock = new Object();
+    private final Map<String, LedgerEntryDTO> pendingEntries = new LinkedHashMap<>();
+    private final Set<String> bookedKeys = Collections.newSetFromMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > REMEMBERED_KEYS;
+        }
+    });
+
+    private FileChannel channel;
+    private int acknowledgedSinceCompaction;
+    private int consecutiveFailures;
+    private ScheduledExecutorService flusher;
+    private volatile boolean stopped;
+
+    /**
+     * Creates a new outbox.
+     *
+     * @param file The outbox file, or <code>null</code> to keep pending sales in memory only
+     * @param ledger The ledger to post sales to
+     * @param maxBatchSize The maximum number of sales posted in one batch
+     * @param flushIntervalMillis The time between two flushes, in milliseconds
+     * @param initialBackoffMillis The delay before the first retry after a failed flush
+     * @param maxBackoffMillis The longest delay between two retries
+     */
+    AccountingOutbox(Path file, LedgerEndpoint ledger, int maxBatchSize, long flushIntervalMillis,
+                     long initialBackoffMillis, long maxBackoffMillis) {
+        this.file = file;
+        this.ledger = ledger;
+        this.maxBatchSize = maxBatchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * Reads the sales that were pending when the outbox was last closed, and
+     * opens the file for appending. Must be called before any sale is submitted.
+     *
+     * @return The number of recovered pending sales
+     * @throws IOException if the file could not be read or opened
+     */
+    synchronized int recover() throws IOException {
+        if (file == null) {
+            return 0;
+        }
+        if (Files.exists(file)) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    replayLine(line);
+                }
+            }
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                   StandardOpenOption.APPEND);
+        return pendingEntries.size();
+    }
+
+    /**
+     * Submits a sale for booking. Returns when the sale is stored in the
+     * outbox file, the sale is posted later. If the file cannot be written,
+     * the sale is kept in memory only.
+     *
+     * @param entry The sale to book
+     * @return true if the sale was accepted, false if a sale with the same
+     *         idempotency key is already pending or was recently booked
+     * @throws IllegalArgumentException if the idempotency key is empty or
+     *         contains a field separator or line break
+     */
+    synchronized boolean submit(LedgerEntryDTO entry) {
+        String key = entry.idempotencyKey();
+        if (key == null || key.isEmpty() || key.contains(FIELD_SEPARATOR)
+                || key.indexOf('\n') >= 0 || key.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("Invalid idempotency key: " + key);
+        }
+        if (pendingEntries.containsKey(key) || bookedKeys.contains(key)) {
+            return false;
+        }
+        pendingEntries.put(key, entry);
+        try {
+            append(pendingLine(entry));
+        } catch (IOException e) {
+            LOGGER.warning("Failed to store sale " + key + " in the accounting outbox: " + e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * Starts posting pending sales periodically on a background thread.
+     */
+    synchronized void start() {
+        if (flusher != null) {
+            return;
+        }
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, task -> {
+            Thread thread = new Thread(task, "accounting-outbox");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // A retry waiting out its backoff shall not delay closing
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        flusher = executor;
+        scheduleFlush(flushIntervalMillis);
+    }
+
+    /**
+     * Posts all pending sales to the ledger, in batches, and marks them as
+     * acknowledged when the ledger has booked them.
+     *
+     * @return The number of posted sales
+     * @throws IOException if the ledger could not be reached, the sales not
+     *         yet booked are kept
+     */
+    int flush() throws IOException {
+        synchronized (flushLock) {
+            int posted = 0;
+            List<LedgerEntryDTO> batch;
+            while (!(batch = nextBatch()).isEmpty()) {
+                ledger.post(batch);
+                acknowledge(batch);
+                posted += batch.size();
+            }
+            return posted;
+        }
+    }
+
+    /**
+     * Gets the number of sales not yet booked by the ledger.
+     *
+     * @return The number of pending sales
+     */
+    synchronized int getPendingCount() {
+        return pendingEntries.size();
+    }
+
+    /**
+     * Stops the background flusher, waiting at most the specified time for
+     * a running flush, and tries to post the pending sales a last time. Sales
+     * that could not be posted stay in the outbox file for the next start.
+     *
+     * @param timeoutMillis The maximum time to wait for a running flush
+     */
+    void close(long timeoutMillis) {
+        stopped = true;
+        ScheduledExecutorService runningFlusher;
+        synchronized (this) {
+            runningFlusher = flusher;
+        }
+        try {
+            if (runningFlusher != null) {
+                runningFlusher.shutdown();
+                runningFlusher.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+            }
+            flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warning(getPendingCount() + " sales were kept in the accounting outbox: " + e.getMessage());
+        }
+        synchronized (this) {
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+            } catch (IOException e) {
+                LOGGER.warning("Failed to close the accounting outbox: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Calculates the delay before the next retry, which doubles with every
+     * failure in a row, up to the maximum delay.
+     *
+     * @param failures The number of failed flushes in a row, at least one
+     * @param initialBackoffMillis The delay after the first failure
+     * @param maxBackoffMillis The longest delay
+     * @return The delay in milliseconds
+     */
+    static long backoffMillis(int failures, long initialBackoffMillis, long maxBackoffMillis) {
+        int doublings = Math.min(failures - 1, Long.numberOfLeadingZeros(initialBackoffMillis) - 1);
+        return Math.min(initialBackoffMillis << doublings, maxBackoffMillis);
+    }
+
+    private void scheduleFlush(long delayMillis) {
+        try {
+            flusher.schedule(this::flushAndReschedule, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Outbox closed
+        }
+    }
+
+    private void flushAndReschedule() {
+        long delay = flushIntervalMillis;
+        try {
+            flush();
+            consecutiveFailures = 0;
+        } catch (IOException | RuntimeException e) {
+            consecutiveFailures++;
+            delay = backoffMillis(consecutiveFailures, initialBackoffMillis, maxBackoffMillis);
+            LOGGER.warning("Failed to post sales to the ledger, retrying in " + delay + " ms: " + e.getMessage());
+        }
+        if (!stopped) {
+            scheduleFlush(delay);
+        }
+    }
+
+    private synchronized List<LedgerEntryDTO> nextBatch() {
+        List<LedgerEntryDTO> batch = new ArrayList<>(Math.min(maxBatchSize, pendingEntries.size()));
+        for (LedgerEntryDTO entry : pendingEntries.values()) {
+            if (batch.size() == maxBatchSize) {
+                break;
+            }
+            batch.add(entry);
+        }
+        return batch;
+    }
+
+    /**
+     * Marks booked sales as acknowledged. If that cannot be written, the sales
+     * are posted again after a restart, which the ledger ignores.
+     */
+    private synchronized void acknowledge(List<LedgerEntryDTO> batch) {
+        StringBuilder lines = new StringBuilder();
+        for (LedgerEntryDTO entry : batch) {
+            pendingEntries.remove(entry.idempotencyKey());
+            bookedKeys.add(entry.idempotencyKey());
+            lines.append(acknowledgedLine(entry.idempotencyKey()));
+        }
+        acknowledgedSinceCompaction += batch.size();
+        try {
+            if (acknowledgedSinceCompaction >= COMPACTION_THRESHOLD) {
+                compact();
+            } else {
+                append(lines.toString());
+            }
+        } catch (IOException e) {
+            LOGGER.warning("Failed to acknowledge booked sales in the accounting outbox: " + e.getMessage());
+        }
+    }
+
+    private void append(String lines) throws IOException {
+        if (channel == null) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Rewrites the file with only the remembered acknowledged keys and the
+     * pending sales, replacing the old file atomically.
+     */
+    private void compact() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        StringBuilder lines = new StringBuilder();
+        for (String key : bookedKeys) {
+            lines.append(acknowledgedLine(key));
+        }
+        for (LedgerEntryDTO entry : pendingEntries.values()) {
+            lines.append(pendingLine(entry));
+        }
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(tempFile, lines, StandardCharsets.UTF_8);
+        channel.close();
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                   StandardOpenOption.APPEND);
+        acknowledgedSinceCompaction = 0;
+    }
+
+    private void replayLine(String line) {
+        String[] fields = line.split(FIELD_SEPARATOR, -1);
+        try {
+            if (fields[0].equals(PENDING) && fields.length == PENDING_FIELD_COUNT) {
+                pendingEntries.put(fields[1], new LedgerEntryDTO(fields[1], parseAmount(fields[2]),
+                        parseAmount(fields[3]), parseAmount(fields[4]), parseAmount(fields[5]),
+                        fields[6].isEmpty() ? null : LocalDateTime.parse(fields[6])));
+            } else if (fields[0].equals(ACKNOWLEDGED) && fields.length == 2) {
+                pendingEntries.remove(fields[1]);
+                bookedKeys.add(fields[1]);
+            } else {
+                LOGGER.warning("Skipping invalid accounting outbox record: " + line);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warning("Skipping invalid accounting outbox record: " + line);
+        }
+    }
+
+    private static String pendingLine(LedgerEntryDTO entry) {
+        return PENDING + FIELD_SEPARATOR + entry.idempotencyKey()
+               + FIELD_SEPARATOR + formatAmount(entry.total())
+               + FIELD_SEPARATOR + formatAmount(entry.totalVat())
+               + FIELD_SEPARATOR + formatAmount(entry.discountAmount())
+               + FIELD_SEPARATOR + formatAmount(entry.totalWithVat())
+               + FIELD_SEPARATOR + (entry.saleTime() == null ? "" : entry.saleTime().toString()) + '\n';
+    }
+
+    private static String acknowledgedLine(String key) {
+        return ACKNOWLEDGED + FIELD_SEPARATOR + key + '\n';
+    }
+
+    private static String formatAmount(Amount amount) {
+        return amount == null ? "" : Long.toString(amount.toOre());
+    }
+
+    private static Amount parseAmount(String field) {
+        return field.isEmpty() ? null : Amount.ofOre(Long.parseLong(field));
+    }
+}
@@ -1,29 +1,127 @@
 package se.kth.iv1350.pos.integration;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import se.kth.iv1350.pos.dto.LedgerEntryDTO;
 import se.kth.iv1350.pos.dto.SaleDTO;
+import se.kth.iv1350.pos.dto.SaleItemDTO;
 import se.kth.iv1350.pos.util.Amount;
+import se.kth.iv1350.pos.util.AsyncLogger;
 
 /**
- * Contains all calls to the external accounting system.
+ * Contains all calls to the external accounting system. Sales are booked in
+ * the ledger through an outbox, which posts them in the background and
+ * retries while the ledger cannot be reached. The transaction identifier of
+ * a sale is its idempotency key, so a sale recorded more than once is booked
+ * once.
  */
 public class AccountingSystem {
+    private static final AsyncLogger LOGGER = AsyncLogger.diagnostics();
+    private static final int MAX_BATCH_SIZE = 100;
+    private static final long FLUSH_INTERVAL_MILLIS = 200;
+    private static final long INITIAL_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5000;
+
+    private final Map<String, LongAdder> soldUnitsPerItem = new ConcurrentHashMap<>();
+    private final AccountingOutbox outbox;
+
     /**
-     * Creates a new instance.
+     * Creates a new instance booking sales in a simulated ledger. Sales
+     * waiting for the ledger are kept in memory only. Sales are booked on a
+     * background thread until {@link #shutdown()} is called.
      */
     public AccountingSystem() {
-        // Would initialize connection to external system in a real implementation
+        outbox = new AccountingOutbox(null, new SimulatedLedger(), MAX_BATCH_SIZE, FLUSH_INTERVAL_MILLIS,
+                                      INITIAL_BACKOFF_MILLIS, MAX_BACKOFF_MILLIS);
+        outbox.start();
+    }
+
+    /**
+     * Creates a new instance booking sales in the specified ledger. Sales
+     * waiting for the ledger are kept in the specified outbox file, and those
+     * left there by the previous run are booked first. Sales are booked on a
+     * background thread until {@link #shutdown()} is called.
+     *
+     * @param outboxFile The file holding the sales waiting for the ledger
+     * @param ledger The ledger to book sales in
+     * @throws IOException if the outbox file could not be read or opened
+     */
+    public AccountingSystem(Path outboxFile, LedgerEndpoint ledger) throws IOException {
+        this(new AccountingOutbox(outboxFile, ledger, MAX_BATCH_SIZE, FLUSH_INTERVAL_MILLIS,
+                                  INITIAL_BACKOFF_MILLIS, MAX_BACKOFF_MILLIS));
+    }
+
+    AccountingSystem(AccountingOutbox outbox) throws IOException {
+        this.outbox = outbox;
+        int recoveredSales = outbox.recover();
+        if (recoveredSales > 0) {
+            LOGGER.info(recoveredSales + " sales waiting for the ledger were recovered");
+        }
+        outbox.start();
     }
 
     /**
-     * Records a completed sale in the external accounting system.
+     * Records a completed sale in the external accounting system. The sale is
+     * booked in the background. A sale with the same transaction identifier
+     * as a sale already recorded is ignored. A sale without a transaction
+     * identifier is always recorded.
      *
      * @param saleDTO The sale data to record
      */
     public void recordSale(SaleDTO saleDTO) {
-        // In a real implementation, this would send data to an external system
-        System.out.println("Sale recorded in accounting system:");
-        System.out.println("  Total amount: " + saleDTO.total());
-        System.out.println("  Total VAT: " + saleDTO.totalVat());
+        String transactionID = saleDTO.transactionID() != null
+                               ? saleDTO.transactionID() : UUID.randomUUID().toString();
+        if (!outbox.submit(new LedgerEntryDTO(transactionID, saleDTO.total(), saleDTO.totalVat(),
+                                              saleDTO.discountAmount(), saleDTO.totalWithVat(),
+                                              saleDTO.saleTime()))) {
+            LOGGER.info("Sale " + transactionID + " was already recorded in accounting system");
+            return;
+        }
+        LOGGER.info("Sale recorded in accounting system:");
+        LOGGER.info("  Total amount: " + saleDTO.total());
+        LOGGER.info("  Total VAT: " + saleDTO.totalVat());
+
+        for (SaleItemDTO item : saleDTO.items()) {
+            soldUnitsPerItem.computeIfAbsent(item.item().itemID(), itemID -> new LongAdder())
+                    .add(item.quantity());
+        }
+    }
+
+    /**
+     * Gets the number of units sold per item, for all sales recorded since
+     * this instance was created.
+     *
+     * @return The number of sold units, mapped by item identifier
+     */
+    public Map<String, Long> getItemSalesFrequency() {
+        Map<String, Long> salesFrequency = new HashMap<>();
+        soldUnitsPerItem.forEach((itemID, soldUnits) -> salesFrequency.put(itemID, soldUnits.sum()));
+        return salesFrequency;
+    }
+
+    /**
+     * Gets the number of recorded sales that the ledger has not yet booked.
+     *
+     * @return The number of sales waiting for the ledger
+     */
+    public int getPendingSaleCount() {
+        return outbox.getPendingCount();
+    }
+
+    /**
+     * Stops booking sales in the background, after a last attempt to book
+     * the sales still waiting. Sales that could not be booked are kept in the
+     * outbox file, if there is one, and booked at the next start.
+     */
+    public void shutdown() {
+        outbox.close(SHUTDOWN_TIMEOUT_MILLIS);
     }
 
     /**
@@ -33,6 +131,6 @@ public class AccountingSystem {
      */
     public void updateSalesStatistics(Amount saleAmount) {
         // In a real implementation, this would update an external system
-        System.out.println("Sales statistics updated. Amount: " + saleAmount);
+        LOGGER.info("Sales statistics updated. Amount: " + saleAmount);
     }
 }
@@ -0,0 +1,309 @@
+package se.kth.iv1350.pos.integration;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import se.kth.iv1350.pos.dto.CacheStatisticsDTO;
+import se.kth.iv1350.pos.dto.ItemDTO;
+
+/**
+ * A bounded, size-aware item cache in front of a slow catalog backend.
+ * New entries enter a small LRU window; entries leaving the window are only
+ * admitted to the main LRU region if they have been requested more often than
+ * the entry they would evict (W-TinyLFU admission). Entries expire after a
+ * fixed time so that price changes in the backend become visible.
+ * Concurrent misses for the same item are coalesced into a single backend fetch.
+ * Fetched items are interned, so a refetched item that has not changed is
+ * the same instance as before.
+ * <p>
+ * Hits are served from a concurrent map without locking. Only changes to the
+ * cache contents take the eviction lock. A hit moves its entry to the front
+ * of the LRU order only if the lock is free at that moment, so under heavy
+ * load the order is approximate, which costs little since admission is
+ * decided by the lock-free frequency sketch.
+ */
+public class CachedCatalog {
+    private static final int WINDOW_PERCENT = 1;
+    private static final int ESTIMATED_ENTRY_WEIGHT = 128;
+    private static final int ENTRY_OVERHEAD = 96;
+    private static final int MAX_SKETCH_KEYS = 1 << 16;
+
+    private final CatalogBackend backend;
+    private final long windowMaxWeight;
+    private final long mainMaxWeight;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+
+    private final FrequencySketch sketch;
+    private final Map<String, CacheEntry> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final LinkedHashMap<String, CacheEntry> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, CacheEntry> main = new LinkedHashMap<>(16, 0.75f, true);
+    private long windowWeight;
+    private long mainWeight;
+    private long evictions;
+    private long rejections;
+    private long expirations;
+
+    private final Map<String, CompletableFuture<ItemDTO>> pendingFetches = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder backendFetches = new LongAdder();
+    private final LongAdder coalescedMisses = new LongAdder();
+
+    /**
+     * Creates a new cache in front of the specified backend.
+     *
+     * @param backend The backend to fetch missing items from
+     * @param maxWeightBytes The approximate maximum memory used by cached items, in bytes
+     * @param priceTtlMillis The time after which a cached item is fetched again, in milliseconds
+     */
+    public CachedCatalog(CatalogBackend backend, long maxWeightBytes, long priceTtlMillis) {
+        this(backend, maxWeightBytes, priceTtlMillis, System::nanoTime);
+    }
+
+    /**
+     * Creates a new cache using the specified clock. Used by tests.
+     */
+    CachedCatalog(CatalogBackend backend, long maxWeightBytes, long priceTtlMillis, LongSupplier nanoClock) {
+        this.backend = backend;
+        this.windowMaxWeight = Math.max(1, maxWeightBytes * WINDOW_PERCENT / 100);
+        this.mainMaxWeight = maxWeightBytes - windowMaxWeight;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(priceTtlMillis);
+        this.nanoClock = nanoClock;
+        this.sketch = new FrequencySketch((int) Math.min(MAX_SKETCH_KEYS, maxWeightBytes / ESTIMATED_ENTRY_WEIGHT));
+    }
+
+    /**
+     * Finds the specified item, fetching it from the backend if it is not cached.
+     * If other threads are already fetching the same item, this call waits for
+     * their result instead of fetching it again.
+     *
+     * @param itemID The item identifier
+     * @return The item or null if the backend does not know it
+     */
+    public ItemDTO findItem(String itemID) {
+        ItemDTO cached = getIfPresent(itemID, true);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        return load(itemID, true);
+    }
+
+    /**
+     * Loads the specified item into the cache without counting it as a lookup,
+     * so that warming up the cache does not show in the hit and miss statistics
+     * or in the access frequencies.
+     *
+     * @param itemID The item identifier
+     * @return The item or null if the backend does not know it
+     */
+    ItemDTO preload(String itemID) {
+        ItemDTO cached = getIfPresent(itemID, false);
+        if (cached != null) {
+            return cached;
+        }
+        return load(itemID, false);
+    }
+
+    private ItemDTO load(String itemID, boolean recordStatistics) {
+        CompletableFuture<ItemDTO> fetch = new CompletableFuture<>();
+        CompletableFuture<ItemDTO> pending = pendingFetches.putIfAbsent(itemID, fetch);
+        if (pending != null) {
+            if (recordStatistics) {
+                coalescedMisses.increment();
+            }
+            return awaitFetch(pending);
+        }
+
+        try {
+            ItemDTO item = getIfPresent(itemID, false);
+            if (item == null) {
+                backendFetches.increment();
+                item = ItemInterner.shared().intern(backend.fetchItem(itemID));
+                if (item != null) {
+                    put(itemID, item);
+                }
+            }
+            fetch.complete(item);
+            return item;
+        } catch (RuntimeException e) {
+            fetch.completeExceptionally(e);
+            throw e;
+        } finally {
+            pendingFetches.remove(itemID, fetch);
+        }
+    }
+
+    /**
+     * Gets the identifiers of all items known by the backend.
+     *
+     * @return The known item identifiers
+     */
+    public Set<String> getItemIDs() {
+        return backend.getItemIDs();
+    }
+
+    /**
+     * Gets the metrics of this cache.
+     *
+     * @return The current cache statistics
+     */
+    public CacheStatisticsDTO getStatistics() {
+        evictionLock.lock();
+        try {
+            return new CacheStatisticsDTO(
+                hits.sum(),
+                misses.sum(),
+                backendFetches.sum(),
+                coalescedMisses.sum(),
+                evictions,
+                rejections,
+                expirations,
+                windowWeight + mainWeight,
+                window.size() + main.size()
+            );
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Waits for a fetch started by another thread, failing with the same
+     * exception as that thread if the fetch failed.
+     */
+    private static ItemDTO awaitFetch(CompletableFuture<ItemDTO> pending) {
+        try {
+            return pending.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private ItemDTO getIfPresent(String itemID, boolean recordAccess) {
+        if (recordAccess) {
+            sketch.increment(itemID);
+        }
+
+        CacheEntry entry = entries.get(itemID);
+        if (entry == null) {
+            return null;
+        }
+        if (nanoClock.getAsLong() - entry.expiresAt > 0) {
+            expire(itemID, entry);
+            return null;
+        }
+        if (recordAccess && evictionLock.tryLock()) {
+            try {
+                if (window.get(itemID) == null) {
+                    main.get(itemID);
+                }
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+        return entry.item;
+    }
+
+    private void expire(String itemID, CacheEntry entry) {
+        evictionLock.lock();
+        try {
+            if (entries.get(itemID) == entry) {
+                removeExisting(itemID);
+                expirations++;
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void put(String itemID, ItemDTO item) {
+        evictionLock.lock();
+        try {
+            removeExisting(itemID);
+
+            CacheEntry entry = new CacheEntry(item, weigh(item), nanoClock.getAsLong() + ttlNanos);
+            window.put(itemID, entry);
+            entries.put(itemID, entry);
+            windowWeight += entry.weight;
+
+            Iterator<Map.Entry<String, CacheEntry>> windowOrder = window.entrySet().iterator();
+            while (windowWeight > windowMaxWeight && windowOrder.hasNext()) {
+                Map.Entry<String, CacheEntry> candidate = windowOrder.next();
+                windowOrder.remove();
+                windowWeight -= candidate.getValue().weight;
+                admitToMain(candidate.getKey(), candidate.getValue());
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void admitToMain(String itemID, CacheEntry candidate) {
+        if (candidate.weight > mainMaxWeight) {
+            entries.remove(itemID);
+            rejections++;
+            return;
+        }
+
+        Iterator<Map.Entry<String, CacheEntry>> mainOrder = main.entrySet().iterator();
+        boolean admitted = false;
+        while (mainWeight + candidate.weight > mainMaxWeight && mainOrder.hasNext()) {
+            Map.Entry<String, CacheEntry> victim = mainOrder.next();
+            if (!admitted && sketch.frequency(itemID) <= sketch.frequency(victim.getKey())) {
+                entries.remove(itemID);
+                rejections++;
+                return;
+            }
+            admitted = true;
+            mainOrder.remove();
+            entries.remove(victim.getKey());
+            mainWeight -= victim.getValue().weight;
+            evictions++;
+        }
+        main.put(itemID, candidate);
+        mainWeight += candidate.weight;
+    }
+
+    private void removeExisting(String itemID) {
+        entries.remove(itemID);
+        CacheEntry old = window.remove(itemID);
+        if (old != null) {
+            windowWeight -= old.weight;
+        }
+        old = main.remove(itemID);
+        if (old != null) {
+            mainWeight -= old.weight;
+        }
+    }
+
+    private static int weigh(ItemDTO item) {
+        int chars = item.itemID().length() + item.name().length() + item.description().length();
+        return ENTRY_OVERHEAD + 2 * chars;
+    }
+
+    private static final class CacheEntry {
+        private final ItemDTO item;
+        private final int weight;
+        private final long expiresAt;
+
+        private CacheEntry(ItemDTO item, int weight, long expiresAt) {
+            this.item = item;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package se.kth.iv1350.pos.integration;
+
+import java.util.Set;
+import se.kth.iv1350.pos.dto.ItemDTO;
+
+/**
+ * A source of item information, such as the central catalog service.
+ * Fetching an item may be slow, so callers are expected to cache results.
+ */
+public interface CatalogBackend {
+    /**
+     * Fetches the item with the specified identifier.
+     *
+     * @param itemID The item identifier
+     * @return The item or null if the backend does not know it
+     */
+    ItemDTO fetchItem(String itemID);
+
+    /**
+     * Gets the identifiers of all items known by the backend. Used to
+     * reject unknown identifiers without calling the backend.
+     *
+     * @return The known item identifiers
+     */
+    Set<String> getItemIDs();
+}
@@ -0,0 +1,124 @@
+package se.kth.iv1350.pos.integration;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import se.kth.iv1350.pos.dto.ItemDTO;
+import se.kth.iv1350.pos.util.Amount;
+import se.kth.iv1350.pos.util.VatRate;
+
+/**
+ * A single incremental change to the item catalog, as read from a catalog
+ * delta file. The text form of a delta is one of:
+ * <pre>
+ * UPSERT;itemID;name;description;price;vatRate
+ * DELETE;itemID
+ * PRICE;itemID;price
+ * VAT;itemID;vatRate
+ * </pre>
+ */
+final class CatalogDelta {
+    /**
+     * The kinds of change a delta can describe.
+     */
+    enum Operation {
+        UPSERT, DELETE, PRICE, VAT
+    }
+
+    private final Operation operation;
+    private final String itemID;
+    private final ItemDTO item;
+    private final Amount price;
+    private final VatRate vatRate;
+
+    private CatalogDelta(Operation operation, String itemID, ItemDTO item, Amount price, VatRate vatRate) {
+        this.operation = operation;
+        this.itemID = itemID;
+        this.item = item;
+        this.price = price;
+        this.vatRate = vatRate;
+    }
+
+    /**
+     * Parses a delta from its text form.
+     *
+     * @param line The text form of the delta
+     * @return The parsed delta
+     * @throws IllegalArgumentException if the line is not a valid delta
+     */
+    static CatalogDelta parse(String line) {
+        String[] fields = line.split(CatalogFile.FIELD_SEPARATOR, -1);
+        Operation operation;
+        try {
+            operation = Operation.valueOf(fields[0].trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown catalog delta: " + line, e);
+        }
+
+        String itemID = fields.length > 1 ? fields[1].trim() : "";
+        switch (operation) {
+            case UPSERT:
+                requireFieldCount(fields, 6, line);
+                ItemDTO item = new ItemDTO(itemID, fields[2].trim(), fields[3].trim(),
+                        Amount.of(new BigDecimal(fields[4].trim())), VatRate.parse(fields[5].trim()));
+                return new CatalogDelta(operation, itemID, item, null, null);
+            case DELETE:
+                requireFieldCount(fields, 2, line);
+                return new CatalogDelta(operation, itemID, null, null, null);
+            case PRICE:
+                requireFieldCount(fields, 3, line);
+                return new CatalogDelta(operation, itemID, null, Amount.of(new BigDecimal(fields[2].trim())), null);
+            default:
+                requireFieldCount(fields, 3, line);
+                return new CatalogDelta(operation, itemID, null, null, VatRate.parse(fields[2].trim()));
+        }
+    }
+
+    /**
+     * Applies this delta to the specified catalog content. Price and VAT
+     * changes of items that are not in the catalog are ignored.
+     *
+     * @param items The catalog content to change, mapped by item identifier
+     */
+    void applyTo(Map<String, ItemDTO> items) {
+        switch (operation) {
+            case UPSERT:
+                items.put(itemID, item);
+                break;
+            case DELETE:
+                items.remove(itemID);
+                break;
+            case PRICE:
+                items.computeIfPresent(itemID, (id, old) ->
+                        new ItemDTO(id, old.name(), old.description(), price, old.vatRate()));
+                break;
+            default:
+                items.computeIfPresent(itemID, (id, old) ->
+                        new ItemDTO(id, old.name(), old.description(), old.price(), vatRate));
+                break;
+        }
+    }
+
+    /**
+     * Gets the kind of change of this delta.
+     *
+     * @return The operation
+     */
+    Operation getOperation() {
+        return operation;
+    }
+
+    /**
+     * Gets the identifier of the changed item.
+     *
+     * @return The item identifier
+     */
+    String getItemID() {
+        return itemID;
+    }
+
+    private static void requireFieldCount(String[] fields, int count, String line) {
+        if (fields.length != count || fields[1].isBlank()) {
+            throw new IllegalArgumentException("Malformed catalog delta: " + line);
+        }
+    }
+}
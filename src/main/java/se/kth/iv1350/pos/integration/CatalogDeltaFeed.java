@@ -0,0 +1,242 @@
+package se.kth.iv1350.pos.integration;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import se.kth.iv1350.pos.util.AsyncLogger;
+
+/**
+ * Feeds incremental catalog changes from a local append-only delta file into
+ * an item registry. Each poll applies all complete lines appended since the
+ * previous poll as one new catalog version. When enough deltas have been
+ * applied, the current catalog is compacted into a new base catalog file.
+ * <p>
+ * Compaction never rewrites the delta file. It renames the file away, so
+ * that producers reopening the delta file start a new one, and applies what
+ * was appended to the renamed file. A producer that opened the file before
+ * the rename may still append to the renamed file, so it is read again at
+ * each poll. It is only deleted after a poll found nothing new in it, and
+ * any late lines are written to the base catalog first. Producers shall
+ * append whole lines and reopen the delta file for each write.
+ * Deltas set absolute values, so deltas that are already in the base
+ * catalog may be applied again after a restart without changing the result.
+ */
+public class CatalogDeltaFeed {
+    private static final AsyncLogger LOGGER = AsyncLogger.diagnostics();
+
+    private final ItemRegistry itemRegistry;
+    private final Path baseCatalogFile;
+    private final Path deltaFile;
+    private final int compactionThreshold;
+    private final Path drainingFile;
+
+    private long consumedBytes;
+    private long drainedBytes;
+    private int deltasSinceCompaction;
+    private int rejectedDeltas;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Creates a new instance. No deltas are read until {@link #poll()} is
+     * called or the feed is started.
+     *
+     * @param itemRegistry The registry to apply changes to
+     * @param baseCatalogFile The catalog file written when compacting
+     * @param deltaFile The append-only file to read changes from
+     * @param compactionThreshold The number of applied deltas that triggers a compaction
+     */
+    public CatalogDeltaFeed(ItemRegistry itemRegistry, Path baseCatalogFile, Path deltaFile,
+                            int compactionThreshold) {
+        this.itemRegistry = itemRegistry;
+        this.baseCatalogFile = baseCatalogFile;
+        this.deltaFile = deltaFile;
+        this.compactionThreshold = compactionThreshold;
+        this.drainingFile = deltaFile.resolveSibling(deltaFile.getFileName() + ".compacting");
+    }
+
+    /**
+     * Reads and applies all deltas appended since the previous poll.
+     * Malformed lines are skipped and counted.
+     *
+     * @return The number of applied deltas
+     * @throws IOException if the delta or base catalog file could not be accessed
+     */
+    public synchronized int poll() throws IOException {
+        int applied = 0;
+        if (Files.exists(drainingFile)) {
+            List<CatalogDelta> lateDeltas = new ArrayList<>();
+            drainedBytes += readDeltas(drainingFile, drainedBytes, lateDeltas);
+            if (lateDeltas.isEmpty()) {
+                Files.delete(drainingFile);
+                drainedBytes = 0;
+            } else {
+                applied += apply(lateDeltas);
+                writeBaseCatalog();
+            }
+        }
+
+        List<CatalogDelta> deltas = new ArrayList<>();
+        consumedBytes += readDeltas(deltaFile, consumedBytes, deltas);
+        applied += apply(deltas);
+
+        if (deltasSinceCompaction >= compactionThreshold) {
+            compact();
+        }
+        return applied;
+    }
+
+    /**
+     * Writes the current catalog to the base catalog file and renames the
+     * delta file away, so that the applied deltas are no longer read. Deltas
+     * appended to the renamed file are applied before the base catalog is
+     * written.
+     *
+     * @throws IOException if the files could not be accessed
+     */
+    public synchronized void compact() throws IOException {
+        if (Files.exists(drainingFile)) {
+            // The previous compaction had a full poll interval to drain
+            List<CatalogDelta> lateDeltas = new ArrayList<>();
+            readDeltas(drainingFile, drainedBytes, lateDeltas);
+            apply(lateDeltas);
+            writeBaseCatalog();
+            Files.delete(drainingFile);
+        }
+        if (Files.exists(deltaFile)) {
+            Files.move(deltaFile, drainingFile, StandardCopyOption.ATOMIC_MOVE);
+            List<CatalogDelta> deltas = new ArrayList<>();
+            drainedBytes = consumedBytes + readDeltas(drainingFile, consumedBytes, deltas);
+            apply(deltas);
+        } else {
+            drainedBytes = 0;
+        }
+        writeBaseCatalog();
+        consumedBytes = 0;
+        deltasSinceCompaction = 0;
+    }
+
+    /**
+     * Starts polling the delta file periodically on a background thread.
+     * The identifiers of items held by a remote catalog are re-read at the
+     * same pace, so that items added to the remote catalog become known.
+     *
+     * @param period The time between two polls
+     * @param unit The unit of <code>period</code>
+     */
+    public synchronized void start(long period, TimeUnit unit) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "catalog-delta-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::pollAndReportFailure, 0, period, unit);
+    }
+
+    /**
+     * Stops polling the delta file.
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Gets the number of delta lines that could not be parsed.
+     *
+     * @return The number of skipped deltas
+     */
+    public synchronized int getRejectedDeltaCount() {
+        return rejectedDeltas;
+    }
+
+    private void pollAndReportFailure() {
+        try {
+            poll();
+        } catch (IOException e) {
+            LOGGER.warning("Failed to read catalog deltas: " + e.getMessage());
+        }
+        try {
+            itemRegistry.refreshRemoteItemIDs();
+        } catch (RuntimeException e) {
+            LOGGER.warning("Failed to read remote item identifiers: " + e.getMessage());
+        }
+    }
+
+    private void writeBaseCatalog() throws IOException {
+        CatalogFile.write(baseCatalogFile, itemRegistry.getCatalogSnapshot().getItems().values());
+    }
+
+    private int apply(List<CatalogDelta> deltas) {
+        if (!deltas.isEmpty()) {
+            itemRegistry.applyCatalogDeltas(deltas);
+            deltasSinceCompaction += deltas.size();
+        }
+        return deltas.size();
+    }
+
+    /**
+     * Parses the complete lines of the file from the specified position.
+     * Malformed lines are skipped and counted.
+     *
+     * @return The number of bytes consumed
+     */
+    private int readDeltas(Path file, long position, List<CatalogDelta> deltas) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        byte[] appended = readFrom(file, position);
+        int completeLength = lengthOfCompleteLines(appended);
+        if (completeLength == 0) {
+            return 0;
+        }
+        for (String line : new String(appended, 0, completeLength, StandardCharsets.UTF_8).split("\n")) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                deltas.add(CatalogDelta.parse(line.strip()));
+            } catch (IllegalArgumentException e) {
+                rejectedDeltas++;
+                LOGGER.warning("Skipped catalog delta: " + e.getMessage());
+            }
+        }
+        return completeLength;
+    }
+
+    private int lengthOfCompleteLines(byte[] appended) {
+        int end = appended.length;
+        while (end > 0 && appended[end - 1] != '\n') {
+            end--;
+        }
+        return end;
+    }
+
+    private byte[] readFrom(Path file, long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (position >= size) {
+                return new byte[0];
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) (size - position));
+            while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0) {
+                // Keep reading until the buffer is full
+            }
+            return buffer.array();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package se.kth.iv1350.pos.integration;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import se.kth.iv1350.pos.dto.ItemDTO;
+import se.kth.iv1350.pos.util.Amount;
+import se.kth.iv1350.pos.util.VatRate;
+
+/**
+ * Reads and writes item catalogs as local text files. Each non-empty line
+ * that does not start with <code>#</code> describes one item:
+ * <pre>itemID;name;description;price;vatRate</pre>
+ */
+final class CatalogFile {
+    static final String FIELD_SEPARATOR = ";";
+
+    private CatalogFile() {
+    }
+
+    /**
+     * Reads all items from the specified catalog file.
+     *
+     * @param catalogFile The file to read
+     * @return The items of the file, mapped by item identifier
+     * @throws IOException if the file could not be read or contains a malformed line
+     */
+    static Map<String, ItemDTO> read(Path catalogFile) throws IOException {
+        Map<String, ItemDTO> items = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(catalogFile, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                ItemDTO item = parseItem(line, catalogFile, lineNumber);
+                items.put(item.itemID(), item);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Writes the specified items to a catalog file. The file is replaced
+     * atomically, so readers never see a partially written catalog.
+     *
+     * @param catalogFile The file to write
+     * @param items The items to write
+     * @throws IOException if the file could not be written
+     */
+    static void write(Path catalogFile, Collection<ItemDTO> items) throws IOException {
+        Path tempFile = catalogFile.resolveSibling(catalogFile.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            for (ItemDTO item : items) {
+                writer.write(formatItem(item));
+                writer.newLine();
+            }
+        }
+        Files.move(tempFile, catalogFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String formatItem(ItemDTO item) {
+        return String.join(FIELD_SEPARATOR,
+                item.itemID(),
+                item.name(),
+                item.description(),
+                item.price().getValue().toPlainString(),
+                item.vatRate().toBigDecimal().toPlainString());
+    }
+
+    private static ItemDTO parseItem(String line, Path catalogFile, int lineNumber) throws IOException {
+        String[] fields = line.split(FIELD_SEPARATOR, -1);
+        if (fields.length != 5) {
+            throw new IOException("Malformed catalog line " + lineNumber + " in " + catalogFile);
+        }
+        try {
+            return new ItemDTO(fields[0].trim(),
+                    fields[1].trim(),
+                    fields[2].trim(),
+                    Amount.of(new BigDecimal(fields[3].trim())),
+                    VatRate.parse(fields[4].trim()));
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed number on catalog line " + lineNumber + " in " + catalogFile, e);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package se.kth.iv1350.pos.integration;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import se.kth.iv1350.pos.dto.ItemDTO;
+import se.kth.iv1350.pos.util.BloomFilter;
+
+/**
+ * An immutable version of the item catalog, together with the filter used to
+ * reject unknown item identifiers. A new snapshot is built for every catalog
+ * change and published by replacing the reference held by the registry.
+ * A snapshot may also know identifiers of items that are only held by a
+ * remote catalog backend; those pass the filter but are not in the snapshot.
+ */
+final class CatalogSnapshot {
+    private static final double FILTER_FALSE_POSITIVE_RATE = 0.01;
+
+    private final long version;
+    private final Map<String, ItemDTO> items;
+    private final Set<String> remoteItemIDs;
+    private final BloomFilter itemFilter;
+
+    /**
+     * Creates a new snapshot of a local catalog. The specified map is copied,
+     * with each item replaced by its canonical instance.
+     *
+     * @param version The catalog version of this snapshot
+     * @param items The items of the catalog, mapped by item identifier
+     */
+    CatalogSnapshot(long version, Map<String, ItemDTO> items) {
+        this(version, items, Collections.emptySet());
+    }
+
+    /**
+     * Creates a new snapshot. The specified map is copied, with each item
+     * replaced by its canonical instance.
+     *
+     * @param version The catalog version of this snapshot
+     * @param items The locally held items of the catalog, mapped by item identifier
+     * @param remoteItemIDs The identifiers of items held by a remote catalog backend
+     */
+    CatalogSnapshot(long version, Map<String, ItemDTO> items, Set<String> remoteItemIDs) {
+        this.version = version;
+        Map<String, ItemDTO> canonicalItems = new HashMap<>(items);
+        canonicalItems.replaceAll((itemID, item) -> ItemInterner.shared().intern(item));
+        this.items = Collections.unmodifiableMap(canonicalItems);
+        this.remoteItemIDs = remoteItemIDs;
+
+        Set<String> knownItemIDs = new HashSet<>(remoteItemIDs);
+        knownItemIDs.addAll(this.items.keySet());
+        this.itemFilter = BloomFilter.of(knownItemIDs, FILTER_FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * Gets the catalog version of this snapshot.
+     *
+     * @return The version number
+     */
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the item with the specified identifier.
+     *
+     * @param itemID The item identifier
+     * @return The item or null if it is not in this snapshot
+     */
+    ItemDTO getItem(String itemID) {
+        return items.get(itemID);
+    }
+
+    /**
+     * Gets all items of this snapshot.
+     *
+     * @return An unmodifiable map of the items, by item identifier
+     */
+    Map<String, ItemDTO> getItems() {
+        return items;
+    }
+
+    /**
+     * Gets the identifiers of items held by a remote catalog backend.
+     *
+     * @return The remote item identifiers
+     */
+    Set<String> getRemoteItemIDs() {
+        return remoteItemIDs;
+    }
+
+    /**
+     * Gets the filter rejecting identifiers that are not in this snapshot.
+     *
+     * @return The item filter
+     */
+    BloomFilter getItemFilter() {
+        return itemFilter;
+    }
+}
@@ -0,0 +1,166 @@
+package se.kth.iv1350.pos.integration;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import se.kth.iv1350.pos.util.AsyncLogger;
+
+/**
+ * Preloads the most sold items into the cache in front of the remote catalog
+ * of an item registry, so that the first scans after a restart are as fast
+ * as later ones. Registries without a remote catalog keep all items in memory
+ * and are not warmed up.
+ * Sales frequencies are kept between restarts in a hotness file, where each
+ * line holds <code>itemID;count</code>.
+ */
+public class CatalogWarmer {
+    private static final AsyncLogger LOGGER = AsyncLogger.diagnostics();
+
+    private final ItemRegistry itemRegistry;
+    private final int threadCount;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param itemRegistry The registry to warm up
+     * @param threadCount The number of items loaded in parallel
+     */
+    public CatalogWarmer(ItemRegistry itemRegistry, int threadCount) {
+        this.itemRegistry = itemRegistry;
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Loads the most sold items in parallel and waits until all are loaded.
+     *
+     * @param salesFrequency The number of sold units per item identifier
+     * @param topN The maximum number of items to load
+     * @return The number of items that were found and loaded
+     * @throws InterruptedException if interrupted while waiting for the loads
+     */
+    public int warmUp(Map<String, Long> salesFrequency, int topN) throws InterruptedException {
+        if (!itemRegistry.hasRemoteCatalog()) {
+            return 0;
+        }
+        List<String> itemIDs = selectMostSold(salesFrequency, topN);
+        if (itemIDs.isEmpty()) {
+            return 0;
+        }
+
+        List<Callable<Boolean>> loads = new ArrayList<>();
+        for (String itemID : itemIDs) {
+            loads.add(() -> itemRegistry.preloadItem(itemID));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threadCount, loads.size()));
+        try {
+            int loaded = 0;
+            for (Future<Boolean> load : executor.invokeAll(loads)) {
+                if (isLoaded(load)) {
+                    loaded++;
+                }
+            }
+            return loaded;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Selects the identifiers of the most sold items.
+     *
+     * @param salesFrequency The number of sold units per item identifier
+     * @param topN The maximum number of identifiers to select
+     * @return The selected identifiers, most sold first
+     */
+    static List<String> selectMostSold(Map<String, Long> salesFrequency, int topN) {
+        return salesFrequency.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(topN)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Reads the sales frequencies from a hotness file.
+     *
+     * @param hotnessFile The file to read
+     * @return The number of sold units per item identifier, empty if the file does not exist
+     * @throws IOException if the file exists but could not be read
+     */
+    public static Map<String, Long> readHotnessFile(Path hotnessFile) throws IOException {
+        Map<String, Long> salesFrequency = new HashMap<>();
+        if (!Files.exists(hotnessFile)) {
+            return salesFrequency;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(hotnessFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(CatalogFile.FIELD_SEPARATOR);
+                if (fields.length != 2) {
+                    continue;
+                }
+                try {
+                    salesFrequency.merge(fields[0].trim(), Long.parseLong(fields[1].trim()), Long::sum);
+                } catch (NumberFormatException e) {
+                    // A damaged line only costs one warm item, skip it
+                }
+            }
+        }
+        return salesFrequency;
+    }
+
+    /**
+     * Writes sales frequencies to a hotness file. Recent sales count fully,
+     * while the counts previously stored in the file are halved, so the file
+     * follows changes in what is popular.
+     *
+     * @param hotnessFile The file to write
+     * @param recentSalesFrequency The number of units sold per item since the file was read
+     * @throws IOException if the file could not be read or written
+     */
+    public static void updateHotnessFile(Path hotnessFile, Map<String, Long> recentSalesFrequency)
+            throws IOException {
+        Map<String, Long> salesFrequency = new HashMap<>();
+        readHotnessFile(hotnessFile).forEach((itemID, count) -> {
+            if (count > 1) {
+                salesFrequency.put(itemID, count / 2);
+            }
+        });
+        recentSalesFrequency.forEach((itemID, count) -> salesFrequency.merge(itemID, count, Long::sum));
+
+        Path tempFile = hotnessFile.resolveSibling(hotnessFile.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Long> entry : salesFrequency.entrySet()) {
+                writer.write(entry.getKey() + CatalogFile.FIELD_SEPARATOR + entry.getValue());
+                writer.newLine();
+            }
+        }
+        Files.move(tempFile, hotnessFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private boolean isLoaded(Future<Boolean> load) throws InterruptedException {
+        try {
+            return load.get();
+        } catch (ExecutionException e) {
+            LOGGER.warning("Failed to warm up item: " + e.getCause().getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package se.kth.iv1350.pos.integration;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import se.kth.iv1350.pos.dto.ItemDTO;
+import se.kth.iv1350.pos.dto.PaymentDTO;
+import se.kth.iv1350.pos.dto.ReceiptDTO;
+import se.kth.iv1350.pos.dto.SaleDTO;
+import se.kth.iv1350.pos.dto.SaleItemDTO;
+import se.kth.iv1350.pos.util.Amount;
+import se.kth.iv1350.pos.util.VatRate;
+
+/**
+ * Encodes DTOs in a compact binary format, for sending them to accounting,
+ * inventory or other terminals. Values are written straight into and read
+ * straight from a <code>ByteBuffer</code>, in the byte order of the buffer.
+ * <p>
+ * Every message starts with a byte identifying the DTO type and a byte
+ * giving the schema version. Nested DTOs have no header of their own.
+ * Amounts are written as a long number of öre, with {@link Long#MIN_VALUE}
+ * meaning <code>null</code>. Strings are written as an int byte count,
+ * <code>-1</code> for <code>null</code>, followed by UTF-8. Lists are written
+ * as an int element count followed by the elements. Times are written as
+ * UTC epoch seconds and nanoseconds, which leaves out the time zone.
+ * <p>
+ * Version 2 added the sale identifier at the end of receipts, and version 3
+ * the transaction identifier at the end of sales. Version 4 writes VAT rates
+ * as an int number of basis points instead of a double fraction. Messages of
+ * older versions are still read, with the fields they lack left empty.
+ */
+public final class DTOCodec {
+    /**
+     * The schema version written by this codec.
+     */
+    public static final byte SCHEMA_VERSION = 4;
+
+    private static final byte ITEM = 1;
+    private static final byte SALE_ITEM = 2;
+    private static final byte SALE = 3;
+    private static final byte RECEIPT = 4;
+    private static final byte PAYMENT = 5;
+    private static final byte RECEIPT_SALE_ID_VERSION = 2;
+    private static final byte SALE_TRANSACTION_ID_VERSION = 3;
+    private static final byte VAT_BASIS_POINTS_VERSION = 4;
+    private static final long NULL_AMOUNT = Long.MIN_VALUE;
+    private static final int NULL_STRING = -1;
+
+    private DTOCodec() {
+    }
+
+    /**
+     * Writes an item as a message.
+     *
+     * @param item The item to write
+     * @param buffer The buffer to write to
+     * @throws java.nio.BufferOverflowException if the buffer is too small
+     */
+    public static void encode(ItemDTO item, ByteBuffer buffer) {
+        writeHeader(ITEM, buffer);
+        writeItem(item, buffer);
+    }
+
+    /**
+     * Writes a sale line as a message.
+     *
+     * @param saleItem The sale line to write
+     * @param buffer The buffer to write to
+     * @throws java.nio.BufferOverflowException if the buffer is too small
+     */
+    public static void encode(SaleItemDTO saleItem, ByteBuffer buffer) {
+        writeHeader(SALE_ITEM, buffer);
+        writeSaleItem(saleItem, buffer);
+    }
+
+    /**
+     * Writes a sale as a message.
+     *
+     * @param sale The sale to write
+     * @param buffer The buffer to write to
+     * @throws java.nio.BufferOverflowException if the buffer is too small
+     */
+    public static void encode(SaleDTO sale, ByteBuffer buffer) {
+        writeHeader(SALE, buffer);
+        writeSaleItems(sale.items(), buffer);
+        writeAmount(sale.total(), buffer);
+        writeAmount(sale.totalVat(), buffer);
+        writeAmount(sale.discountAmount(), buffer);
+        writeAmount(sale.totalWithVat(), buffer);
+        writeTime(sale.saleTime(), buffer);
+        writeString(sale.transactionID(), buffer);
+    }
+
+    /**
+     * Writes a receipt as a message.
+     *
+     * @param receipt The receipt to write
+     * @param buffer The buffer to write to
+     * @throws java.nio.BufferOverflowException if the buffer is too small
+     */
+    public static void encode(ReceiptDTO receipt, ByteBuffer buffer) {
+        writeHeader(RECEIPT, buffer);
+        writeSaleItems(receipt.items(), buffer);
+        writeAmount(receipt.total(), buffer);
+        writeAmount(receipt.totalVat(), buffer);
+        writeAmount(receipt.paymentAmount(), buffer);
+        writeAmount(receipt.changeAmount(), buffer);
+        writeTime(receipt.saleTime(), buffer);
+        writeString(receipt.saleID(), buffer);
+    }
+
+    /**
+     * Writes a payment as a message.
+     *
+     * @param payment The payment to write
+     * @param buffer The buffer to write to
+     * @throws java.nio.BufferOverflowException if the buffer is too small
+     */
+    public static void encode(PaymentDTO payment, ByteBuffer buffer) {
+        writeHeader(PAYMENT, buffer);
+        writeAmount(payment.paidAmount(), buffer);
+        writeAmount(payment.changeAmount(), buffer);
+    }
+
+    /**
+     * Reads an item message.
+     *
+     * @param buffer The buffer to read from
+     * @return The item
+     * @throws IllegalArgumentException if the message is not an item of a known schema version,
+     *         or is truncated
+     */
+    public static ItemDTO decodeItem(ByteBuffer buffer) {
+        try {
+            byte version = readHeader(ITEM, buffer);
+            return readItem(version, buffer);
+        } catch (BufferUnderflowException e) {
+            throw truncated(e);
+        }
+    }
+
+    /**
+     * Reads a sale line message.
+     *
+     * @param buffer The buffer to read from
+     * @return The sale line
+     * @throws IllegalArgumentException if the message is not a sale line of a known schema version,
+     *         or is truncated
+     */
+    public static SaleItemDTO decodeSaleItem(ByteBuffer buffer) {
+        try {
+            byte version = readHeader(SALE_ITEM, buffer);
+            return readSaleItem(version, buffer);
+        } catch (BufferUnderflowException e) {
+            throw truncated(e);
+        }
+    }
+
+    /**
+     * Reads a sale message.
+     *
+     * @param buffer The buffer to read from
+     * @return The sale
+     * @throws IllegalArgumentException if the message is not a sale of a known schema version,
+     *         or is truncated
+     */
+    public static SaleDTO decodeSale(ByteBuffer buffer) {
+        try {
+            byte version = readHeader(SALE, buffer);
+            return new SaleDTO(readSaleItems(version, buffer), readAmount(buffer), readAmount(buffer),
+                               readAmount(buffer), readAmount(buffer), readTime(buffer),
+                               version >= SALE_TRANSACTION_ID_VERSION ? readString(buffer) : null);
+        } catch (BufferUnderflowException e) {
+            throw truncated(e);
+        }
+    }
+
+    /**
+     * Reads a receipt message.
+     *
+     * @param buffer The buffer to read from
+     * @return The receipt
+     * @throws IllegalArgumentException if the message is not a receipt of a known schema version,
+     *         or is truncated
+     */
+    public static ReceiptDTO decodeReceipt(ByteBuffer buffer) {
+        try {
+            byte version = readHeader(RECEIPT, buffer);
+            return new ReceiptDTO(readSaleItems(version, buffer), readAmount(buffer), readAmount(buffer),
+                                  readAmount(buffer), readAmount(buffer), readTime(buffer),
+                                  version >= RECEIPT_SALE_ID_VERSION ? readString(buffer) : null);
+        } catch (BufferUnderflowException e) {
+            throw truncated(e);
+        }
+    }
+
+    /**
+     * Reads a payment message.
+     *
+     * @param buffer The buffer to read from
+     * @return The payment
+     * @throws IllegalArgumentException if the message is not a payment of a known schema version,
+     *         or is truncated
+     */
+    public static PaymentDTO decodePayment(ByteBuffer buffer) {
+        try {
+            readHeader(PAYMENT, buffer);
+            return new PaymentDTO(readAmount(buffer), readAmount(buffer));
+        } catch (BufferUnderflowException e) {
+            throw truncated(e);
+        }
+    }
+
+    private static IllegalArgumentException truncated(BufferUnderflowException e) {
+        return new IllegalArgumentException("Message is truncated", e);
+    }
+
+    private static void writeHeader(byte type, ByteBuffer buffer) {
+        buffer.put(type);
+        buffer.put(SCHEMA_VERSION);
+    }
+
+    private static byte readHeader(byte expectedType, ByteBuffer buffer) {
+        byte type = buffer.get();
+        byte version = buffer.get();
+        if (type != expectedType) {
+            throw new IllegalArgumentException("Expected message type " + expectedType + " but found " + type);
+        }
+        if (version < 1 || version > SCHEMA_VERSION) {
+            throw new IllegalArgumentException("Unsupported schema version " + version);
+        }
+        return version;
+    }
+
+    private static void writeItem(ItemDTO item, ByteBuffer buffer) {
+        writeString(item.itemID(), buffer);
+        writeString(item.name(), buffer);
+        writeString(item.description(), buffer);
+        writeAmount(item.price(), buffer);
+        buffer.putInt(item.vatRate().getBasisPoints());
+    }
+
+    private static ItemDTO readItem(byte version, ByteBuffer buffer) {
+        return new ItemDTO(readString(buffer), readString(buffer), readString(buffer),
+                           readAmount(buffer), readVatRate(version, buffer));
+    }
+
+    private static VatRate readVatRate(byte version, ByteBuffer buffer) {
+        if (version >= VAT_BASIS_POINTS_VERSION) {
+            return VatRate.ofBasisPoints(buffer.getInt());
+        }
+        return VatRate.of(buffer.getDouble());
+    }
+
+    private static void writeSaleItem(SaleItemDTO saleItem, ByteBuffer buffer) {
+        writeItem(saleItem.item(), buffer);
+        buffer.putInt(saleItem.quantity());
+        writeAmount(saleItem.subtotal(), buffer);
+        writeAmount(saleItem.vatAmount(), buffer);
+        writeAmount(saleItem.totalWithVat(), buffer);
+    }
+
+    private static SaleItemDTO readSaleItem(byte version, ByteBuffer buffer) {
+        return new SaleItemDTO(readItem(version, buffer), buffer.getInt(), readAmount(buffer),
+                               readAmount(buffer), readAmount(buffer));
+    }
+
+    private static void writeSaleItems(List<SaleItemDTO> items, ByteBuffer buffer) {
+        buffer.putInt(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            writeSaleItem(items.get(i), buffer);
+        }
+    }
+
+    private static List<SaleItemDTO> readSaleItems(byte version, ByteBuffer buffer) {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid number of sale items: " + count);
+        }
+        List<SaleItemDTO> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            items.add(readSaleItem(version, buffer));
+        }
+        return items;
+    }
+
+    private static void writeAmount(Amount amount, ByteBuffer buffer) {
+        buffer.putLong(amount == null ? NULL_AMOUNT : amount.toOre());
+    }
+
+    private static Amount readAmount(ByteBuffer buffer) {
+        long ore = buffer.getLong();
+        return ore == NULL_AMOUNT ? null : Amount.ofOre(ore);
+    }
+
+    private static void writeTime(LocalDateTime time, ByteBuffer buffer) {
+        buffer.putLong(time.toEpochSecond(ZoneOffset.UTC));
+        buffer.putInt(time.getNano());
+    }
+
+    private static LocalDateTime readTime(ByteBuffer buffer) {
+        return LocalDateTime.ofEpochSecond(buffer.getLong(), buffer.getInt(), ZoneOffset.UTC);
+    }
+
+    /**
+     * Writes the string as UTF-8 directly into the buffer, then fills in the
+     * byte count in front of it.
+     */
+    private static void writeString(String value, ByteBuffer buffer) {
+        if (value == null) {
+            buffer.putInt(NULL_STRING);
+            return;
+        }
+        int lengthPosition = buffer.position();
+        buffer.putInt(0);
+        int start = buffer.position();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                       && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        buffer.putInt(lengthPosition, buffer.position() - start);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_STRING) {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid string length: " + length);
+        }
+        int start = buffer.position();
+        buffer.position(start + length);
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + start, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,195 @@
+package se.kth.iv1350.pos.integration;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import se.kth.iv1350.pos.dto.ReceiptDTO;
+import se.kth.iv1350.pos.dto.SaleItemDTO;
+import se.kth.iv1350.pos.util.MoneyFormatter;
+
+/**
+ * Encodes receipts as ESC/POS commands for thermal receipt printers. The
+ * commands are written straight into a <code>ByteBuffer</code>, character by
+ * character, without building strings. The layout is the same as that of
+ * the text receipt: amounts are right-aligned, the total is printed in
+ * bold, the sale identifier is printed as a CODE128 barcode, and the paper
+ * is cut at the end. Text is written in code page 437, which has the Swedish
+ * letters; characters outside it are printed as <code>?</code>.
+ */
+public final class EscPosReceiptEncoder {
+    private static final byte ESC = 0x1B;
+    private static final byte GS = 0x1D;
+    private static final byte LF = 0x0A;
+    private static final byte ALIGN_LEFT = 0;
+    private static final byte ALIGN_CENTER = 1;
+    private static final byte CODE_PAGE_437 = 0;
+    private static final byte BARCODE_CODE128 = 73;
+    private static final byte BARCODE_HEIGHT = 80;
+    private static final byte BARCODE_MODULE_WIDTH = 2;
+    private static final byte BARCODE_TEXT_BELOW = 2;
+    private static final byte CUT_AFTER_FEED = 66;
+    private static final byte CUT_FEED_LINES = 3;
+    private static final int MAX_BARCODE_LENGTH = 253;
+    private static final int AMOUNT_COLUMN = 40;
+    private static final String HEADER = "------------------ Begin receipt -------------------";
+    private static final String FOOTER = "------------------ End receipt ---------------------";
+
+    private EscPosReceiptEncoder() {
+    }
+
+    /**
+     * Writes the commands printing the specified receipt.
+     *
+     * @param receipt The receipt to print
+     * @param buffer The buffer to write to
+     * @throws java.nio.BufferOverflowException if the buffer is too small
+     */
+    public static void encode(ReceiptDTO receipt, ByteBuffer buffer) {
+        buffer.put(ESC).put((byte) '@');
+        buffer.put(ESC).put((byte) 't').put(CODE_PAGE_437);
+
+        align(ALIGN_CENTER, buffer);
+        writeText(HEADER, buffer);
+        buffer.put(LF);
+        align(ALIGN_LEFT, buffer);
+        writeText("Time of Sale : ", buffer);
+        writeTime(receipt.saleTime(), buffer);
+        buffer.put(LF).put(LF);
+
+        for (SaleItemDTO lineItem : receipt.items()) {
+            int column = writeText(lineItem.item().name(), buffer);
+            buffer.put((byte) ' ');
+            column += 1 + writeNumber(lineItem.quantity(), buffer);
+            column += writeText(" x ", buffer);
+            column += MoneyFormatter.RECEIPT.writeTo(buffer, lineItem.item().price().toOre());
+            writeAmountColumn(column, lineItem.subtotal().toOre(), buffer);
+        }
+        buffer.put(LF);
+
+        bold(true, buffer);
+        writeAmountColumn(writeText("Total :", buffer), receipt.total().toOre() + receipt.totalVat().toOre(), buffer);
+        bold(false, buffer);
+        writeAmountColumn(writeText("VAT :", buffer), receipt.totalVat().toOre(), buffer);
+        buffer.put(LF);
+        writeAmountColumn(writeText("Cash :", buffer), receipt.paymentAmount().toOre(), buffer);
+        writeAmountColumn(writeText("Change :", buffer), receipt.changeAmount().toOre(), buffer);
+
+        align(ALIGN_CENTER, buffer);
+        if (receipt.saleID() != null && !receipt.saleID().isEmpty()) {
+            buffer.put(LF);
+            writeBarcode(receipt.saleID(), buffer);
+        }
+        writeText(FOOTER, buffer);
+        buffer.put(LF);
+        align(ALIGN_LEFT, buffer);
+        buffer.put(GS).put((byte) 'V').put(CUT_AFTER_FEED).put(CUT_FEED_LINES);
+    }
+
+    private static void align(byte alignment, ByteBuffer buffer) {
+        buffer.put(ESC).put((byte) 'a').put(alignment);
+    }
+
+    private static void bold(boolean on, ByteBuffer buffer) {
+        buffer.put(ESC).put((byte) 'E').put((byte) (on ? 1 : 0));
+    }
+
+    /**
+     * Prints the text as a CODE128 barcode using code set B, with the text
+     * below it. Characters code set B cannot encode are printed as
+     * <code>?</code>, and text that does not fit in one barcode is cut.
+     */
+    private static void writeBarcode(String text, ByteBuffer buffer) {
+        int length = Math.min(text.length(), MAX_BARCODE_LENGTH);
+        buffer.put(GS).put((byte) 'h').put(BARCODE_HEIGHT);
+        buffer.put(GS).put((byte) 'w').put(BARCODE_MODULE_WIDTH);
+        buffer.put(GS).put((byte) 'H').put(BARCODE_TEXT_BELOW);
+        buffer.put(GS).put((byte) 'k').put(BARCODE_CODE128).put((byte) (length + 2));
+        buffer.put((byte) '{').put((byte) 'B');
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            buffer.put(c >= 0x20 && c < 0x7F ? (byte) c : (byte) '?');
+        }
+        buffer.put(LF);
+    }
+
+    /**
+     * Pads with spaces so that the amount ends at the amount column, then
+     * writes the amount and ends the line.
+     */
+    private static void writeAmountColumn(int column, long ore, ByteBuffer buffer) {
+        int spaces = Math.max(1, AMOUNT_COLUMN - column - MoneyFormatter.width(ore));
+        for (int i = 0; i < spaces; i++) {
+            buffer.put((byte) ' ');
+        }
+        MoneyFormatter.RECEIPT.writeTo(buffer, ore);
+        writeText(" SEK", buffer);
+        buffer.put(LF);
+    }
+
+    /**
+     * Writes a non-negative number.
+     *
+     * @return The number of digits written
+     */
+    private static int writeNumber(long number, ByteBuffer buffer) {
+        long divisor = 1;
+        int digits = 1;
+        while (number / divisor >= 10) {
+            divisor *= 10;
+            digits++;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + number / divisor % 10));
+        }
+        return digits;
+    }
+
+    private static void writePadded(int number, ByteBuffer buffer) {
+        if (number < 10) {
+            buffer.put((byte) '0');
+        }
+        writeNumber(number, buffer);
+    }
+
+    private static void writeTime(LocalDateTime time, ByteBuffer buffer) {
+        writeNumber(time.getYear(), buffer);
+        buffer.put((byte) '-');
+        writePadded(time.getMonthValue(), buffer);
+        buffer.put((byte) '-');
+        writePadded(time.getDayOfMonth(), buffer);
+        buffer.put((byte) ' ');
+        writePadded(time.getHour(), buffer);
+        buffer.put((byte) ':');
+        writePadded(time.getMinute(), buffer);
+    }
+
+    /**
+     * Writes the text in code page 437.
+     *
+     * @return The number of characters written
+     */
+    private static int writeText(String text, ByteBuffer buffer) {
+        for (int i = 0; i < text.length(); i++) {
+            buffer.put(toCodePage437(text.charAt(i)));
+        }
+        return text.length();
+    }
+
+    private static byte toCodePage437(char c) {
+        if (c >= 0x20 && c < 0x7F) {
+            return (byte) c;
+        }
+        switch (c) {
+            case 'ü': return (byte) 0x81;
+            case 'é': return (byte) 0x82;
+            case 'ä': return (byte) 0x84;
+            case 'å': return (byte) 0x86;
+            case 'Ä': return (byte) 0x8E;
+            case 'Å': return (byte) 0x8F;
+            case 'É': return (byte) 0x90;
+            case 'ö': return (byte) 0x94;
+            case 'Ö': return (byte) 0x99;
+            case 'Ü': return (byte) 0x9A;
+            default: return (byte) '?';
+        }
+    }
+}
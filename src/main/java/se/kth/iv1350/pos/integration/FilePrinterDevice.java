@@ -0,0 +1,36 @@
+package se.kth.iv1350.pos.integration;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A printer device that appends everything printed to a file, or writes it
+ * to a named pipe read by the real printer. The file is opened for each
+ * write, so a printer that was disconnected works again once it is back.
+ */
+public class FilePrinterDevice implements PrinterDevice {
+    private final Path file;
+
+    /**
+     * Creates a new instance printing to the specified file.
+     *
+     * @param file The file or pipe to write to
+     */
+    public FilePrinterDevice(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public void write(byte[] data) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package se.kth.iv1350.pos.integration;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Approximate, aging access counter used for cache admission decisions.
+ * A count-min sketch with four rows of 4-bit counters, sixteen to a long;
+ * all counters are halved after a fixed number of increments so that old
+ * popularity fades. Thread-safe without locking: counters are updated with
+ * compare-and-set, and an increment racing with aging may be lost, which
+ * only makes the estimate slightly less exact.
+ */
+final class FrequencySketch {
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int COUNTERS_PER_LONG = 16;
+    private static final long HALVING_MASK = 0x7777777777777777L;
+    private static final int[] SEEDS = {0x97cb3127, 0xb4b82e39, 0x1f3c6a93, 0x5a0f2d4b};
+
+    private final AtomicLongArray counters;
+    private final int rowLength;
+    private final int mask;
+    private final int sampleSize;
+    private final AtomicInteger additions = new AtomicInteger();
+
+    /**
+     * Creates a sketch suitable for tracking about the specified number of keys.
+     *
+     * @param expectedKeys The expected number of distinct popular keys
+     */
+    FrequencySketch(int expectedKeys) {
+        int width = Integer.highestOneBit(Math.max(64, expectedKeys * 4) - 1) << 1;
+        this.rowLength = width / COUNTERS_PER_LONG;
+        this.counters = new AtomicLongArray(DEPTH * rowLength);
+        this.mask = width - 1;
+        this.sampleSize = 10 * width;
+    }
+
+    /**
+     * Records one access to the specified key.
+     *
+     * @param key The accessed key
+     */
+    void increment(String key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int row = 0; row < DEPTH; row++) {
+            added |= incrementCounter(row, indexOf(hash, row));
+        }
+        if (added && additions.incrementAndGet() == sampleSize) {
+            age();
+        }
+    }
+
+    /**
+     * Estimates how often the specified key has been accessed recently.
+     *
+     * @param key The key to look up
+     * @return The estimated access count, at most 15
+     */
+    int frequency(String key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            int counter = indexOf(hash, row);
+            long word = counters.get(slotOf(row, counter));
+            frequency = Math.min(frequency, (int) (word >>> shiftOf(counter)) & MAX_COUNT);
+        }
+        return frequency;
+    }
+
+    private boolean incrementCounter(int row, int counter) {
+        int slot = slotOf(row, counter);
+        int shift = shiftOf(counter);
+        while (true) {
+            long word = counters.get(slot);
+            if (((word >>> shift) & MAX_COUNT) == MAX_COUNT) {
+                return false;
+            }
+            if (counters.compareAndSet(slot, word, word + (1L << shift))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Halves all counters. Only the thread whose increment reached the
+     * sample size ages the sketch, so aging never runs twice at once.
+     */
+    private void age() {
+        for (int slot = 0; slot < counters.length(); slot++) {
+            long word;
+            do {
+                word = counters.get(slot);
+            } while (!counters.compareAndSet(slot, word, (word >>> 1) & HALVING_MASK));
+        }
+        additions.addAndGet(-sampleSize / 2);
+    }
+
+    private int slotOf(int row, int counter) {
+        return row * rowLength + counter / COUNTERS_PER_LONG;
+    }
+
+    private static int shiftOf(int counter) {
+        return (counter % COUNTERS_PER_LONG) * 4;
+    }
+
+    private int indexOf(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static int spread(int hash) {
+        hash ^= hash >>> 17;
+        hash *= 0xed5ad4bb;
+        return hash ^ (hash >>> 11);
+    }
+}
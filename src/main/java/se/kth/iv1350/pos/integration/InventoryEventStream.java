@@ -0,0 +1,114 @@
+package se.kth.iv1350.pos.integration;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import se.kth.iv1350.pos.dto.InventoryEventDTO;
+import se.kth.iv1350.pos.util.AsyncLogger;
+
+/**
+ * Delivers inventory events to observers on a dedicated dispatcher thread.
+ * Events are buffered in a bounded queue; when observers fall behind and the
+ * queue is full, publishing blocks until there is room again, so events are
+ * never dropped and memory use stays bounded. Once the stream is closed,
+ * events are discarded instead, so publishing never blocks on a queue that
+ * is no longer drained.
+ */
+final class InventoryEventStream {
+    private static final AsyncLogger LOGGER = AsyncLogger.diagnostics();
+
+    private final BlockingQueue<InventoryEventDTO> events;
+    private final List<InventoryObserver> observers = new CopyOnWriteArrayList<>();
+    private Thread dispatcher;
+    private volatile boolean closed;
+
+    /**
+     * Creates a new stream.
+     *
+     * @param capacity The maximum number of events waiting to be delivered
+     */
+    InventoryEventStream(int capacity) {
+        events = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Adds an observer that is notified of all events published from now on.
+     *
+     * @param observer The observer to add
+     */
+    void addObserver(InventoryObserver observer) {
+        observers.add(observer);
+        startDispatcher();
+    }
+
+    /**
+     * Publishes an event, waiting for room in the queue if it is full. Events
+     * are discarded if there are no observers or the stream is closed.
+     *
+     * @param event The event to publish
+     */
+    void publish(InventoryEventDTO event) {
+        if (closed || observers.isEmpty()) {
+            return;
+        }
+        try {
+            events.put(event);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the number of events waiting to be delivered.
+     *
+     * @return The number of queued events
+     */
+    int getQueuedEventCount() {
+        return events.size();
+    }
+
+    /**
+     * Stops the dispatcher thread. Events still queued are not delivered, and
+     * events published from now on are discarded.
+     */
+    synchronized void close() {
+        closed = true;
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+            dispatcher = null;
+        }
+        // Makes room for publishers that were already waiting
+        events.clear();
+    }
+
+    private synchronized void startDispatcher() {
+        if (closed || dispatcher != null) {
+            return;
+        }
+        dispatcher = new Thread(this::dispatchEvents, "inventory-events");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    private void dispatchEvents() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                InventoryEventDTO event = events.take();
+                for (InventoryObserver observer : observers) {
+                    notifyObserver(observer, event);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Stream closed
+        }
+    }
+
+    private void notifyObserver(InventoryObserver observer, InventoryEventDTO event) {
+        try {
+            observer.stockLevelReached(event);
+        } catch (RuntimeException e) {
+            LOGGER.warning("Inventory observer failed: " + e.getMessage());
+        }
+    }
+}
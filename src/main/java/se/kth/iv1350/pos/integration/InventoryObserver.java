@@ -0,0 +1,16 @@
+package se.kth.iv1350.pos.integration;
+
+import se.kth.iv1350.pos.dto.InventoryEventDTO;
+
+/**
+ * Implemented by classes that shall be notified when items run low or out of stock.
+ */
+public interface InventoryObserver {
+    /**
+     * Called when the stock of an item crosses its threshold. Called on the
+     * event dispatcher thread, not on the thread that changed the stock.
+     *
+     * @param event Describes the item and its remaining stock
+     */
+    void stockLevelReached(InventoryEventDTO event);
+}
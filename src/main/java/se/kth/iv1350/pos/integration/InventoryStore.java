@@ -0,0 +1,272 @@
+package se.kth.iv1350.pos.integration;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import se.kth.iv1350.pos.util.AsyncLogger;
+
+/**
+ * Persists inventory quantities with write-behind. Changed quantities are
+ * queued in memory and written in batches by a background flusher to an
+ * append-only log, where each line holds <code>sequence;itemID;quantity</code>.
+ * When the log grows large, all quantities are written to a checkpoint file
+ * and the log is started over. Recovery reads the checkpoint and replays the
+ * log records written after it. A batch that could not be written is kept
+ * and written again by the next flush, so a failed write loses no change.
+ */
+final class InventoryStore {
+    private static final AsyncLogger LOGGER = AsyncLogger.diagnostics();
+    private static final String FIELD_SEPARATOR = ";";
+
+    private final Path checkpointFile;
+    private final Path logFile;
+    private final int checkpointThreshold;
+    private final Queue<QuantityChange> pendingChanges = new ConcurrentLinkedQueue<>();
+
+    private final Map<String, Integer> persistedQuantities = new HashMap<>();
+    private final List<QuantityChange> unwrittenChanges = new ArrayList<>();
+    private long lastSequence;
+    private long failedWritePosition = -1;
+    private int recordsSinceCheckpoint;
+    private FileChannel log;
+    private ScheduledExecutorService flusher;
+
+    /**
+     * Creates a new store using the specified files.
+     *
+     * @param checkpointFile The file holding the last checkpoint
+     * @param logFile The log of changes made after the last checkpoint
+     * @param checkpointThreshold The number of logged changes that triggers a checkpoint
+     */
+    InventoryStore(Path checkpointFile, Path logFile, int checkpointThreshold) {
+        this.checkpointFile = checkpointFile;
+        this.logFile = logFile;
+        this.checkpointThreshold = checkpointThreshold;
+    }
+
+    /**
+     * Rebuilds the persisted quantities from the checkpoint and the log, and
+     * opens the log for appending. Must be called before any change is recorded.
+     *
+     * @return The persisted quantities, mapped by item identifier
+     * @throws IOException if the files could not be read or opened
+     */
+    synchronized Map<String, Integer> recover() throws IOException {
+        long checkpointSequence = readCheckpoint();
+        lastSequence = checkpointSequence;
+
+        if (Files.exists(logFile)) {
+            try (BufferedReader reader = Files.newBufferedReader(logFile, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    replayLogRecord(line, checkpointSequence);
+                }
+            }
+        }
+
+        log = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                               StandardOpenOption.APPEND);
+        return new HashMap<>(persistedQuantities);
+    }
+
+    /**
+     * Records a new quantity of an item. Returns immediately, the change is
+     * written by the background flusher. Changes of the same item must be
+     * recorded in the order they were made.
+     *
+     * @param itemID The item identifier
+     * @param quantity The new quantity of the item
+     */
+    void recordQuantity(String itemID, int quantity) {
+        pendingChanges.add(new QuantityChange(itemID, quantity));
+    }
+
+    /**
+     * Starts flushing recorded changes periodically on a background thread.
+     *
+     * @param flushIntervalMillis The time between two flushes, in milliseconds
+     */
+    synchronized void start(long flushIntervalMillis) {
+        if (flusher != null) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "inventory-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushAndReportFailure,
+                flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes all recorded changes to the log as one batch, and writes a
+     * checkpoint if enough changes have been logged since the last one.
+     * Changes are only taken as persisted once the log has been forced to
+     * disk. If writing fails, the batch is written again by the next flush.
+     *
+     * @throws IOException if the log or checkpoint could not be written
+     */
+    synchronized void flush() throws IOException {
+        QuantityChange change;
+        while ((change = pendingChanges.poll()) != null) {
+            unwrittenChanges.add(change);
+        }
+
+        if (!unwrittenChanges.isEmpty()) {
+            writeBatch();
+        }
+
+        if (recordsSinceCheckpoint >= checkpointThreshold) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Stops the background flusher, writes all remaining changes and closes the log.
+     *
+     * @throws IOException if the remaining changes could not be written
+     */
+    synchronized void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdown();
+            flusher = null;
+        }
+        if (log != null) {
+            flush();
+            log.close();
+            log = null;
+        }
+    }
+
+    private void writeBatch() throws IOException {
+        StringBuilder batch = new StringBuilder();
+        long sequence = lastSequence;
+        for (QuantityChange change : unwrittenChanges) {
+            sequence++;
+            batch.append(sequence).append(FIELD_SEPARATOR)
+                 .append(change.itemID).append(FIELD_SEPARATOR)
+                 .append(change.quantity).append('\n');
+        }
+
+        if (!log.isOpen()) {
+            // Closed by an interrupted write
+            log = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                   StandardOpenOption.APPEND);
+        }
+        if (failedWritePosition >= 0) {
+            // Drops what the failed write left, it is written again below
+            log.truncate(failedWritePosition);
+            failedWritePosition = -1;
+        }
+        long position = log.size();
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(batch.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                log.write(buffer);
+            }
+            log.force(false);
+        } catch (IOException e) {
+            failedWritePosition = position;
+            throw e;
+        }
+
+        for (QuantityChange change : unwrittenChanges) {
+            persistedQuantities.put(change.itemID, change.quantity);
+        }
+        lastSequence = sequence;
+        recordsSinceCheckpoint += unwrittenChanges.size();
+        unwrittenChanges.clear();
+    }
+
+    private void checkpoint() throws IOException {
+        Path tempFile = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            writer.write(Long.toString(lastSequence));
+            writer.newLine();
+            for (Map.Entry<String, Integer> entry : persistedQuantities.entrySet()) {
+                writer.write(entry.getKey() + FIELD_SEPARATOR + entry.getValue());
+                writer.newLine();
+            }
+        }
+        Files.move(tempFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        // Records up to lastSequence are skipped at recovery, so a crash
+        // before the truncation is harmless
+        log.truncate(0);
+        recordsSinceCheckpoint = 0;
+    }
+
+    private long readCheckpoint() throws IOException {
+        if (!Files.exists(checkpointFile)) {
+            return 0;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(checkpointFile, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (header == null) {
+                return 0;
+            }
+            long sequence = Long.parseLong(header.trim());
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(FIELD_SEPARATOR);
+                persistedQuantities.put(fields[0], Integer.parseInt(fields[1]));
+            }
+            return sequence;
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Malformed inventory checkpoint " + checkpointFile, e);
+        }
+    }
+
+    private void replayLogRecord(String line, long checkpointSequence) {
+        String[] fields = line.split(FIELD_SEPARATOR);
+        if (fields.length != 3) {
+            return; // Torn write at the end of the log
+        }
+        try {
+            long sequence = Long.parseLong(fields[0]);
+            int quantity = Integer.parseInt(fields[2]);
+            if (sequence > checkpointSequence) {
+                persistedQuantities.put(fields[1], quantity);
+                lastSequence = Math.max(lastSequence, sequence);
+                recordsSinceCheckpoint++;
+            }
+        } catch (NumberFormatException e) {
+            // Torn write at the end of the log
+        }
+    }
+
+    private void flushAndReportFailure() {
+        try {
+            flush();
+        } catch (IOException e) {
+            LOGGER.warning("Failed to write inventory changes: " + e.getMessage());
+        }
+    }
+
+    private static final class QuantityChange {
+        private final String itemID;
+        private final int quantity;
+
+        private QuantityChange(String itemID, int quantity) {
+            this.itemID = itemID;
+            this.quantity = quantity;
+        }
+    }
+}
@@ -1,14 +1,38 @@
 package se.kth.iv1350.pos.integration;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import se.kth.iv1350.pos.dto.InventoryEventDTO;
 import se.kth.iv1350.pos.model.SaleLineItem;
+import se.kth.iv1350.pos.util.AsyncLogger;
 
 /**
  * Responsible for inventory management operations.
  * Separates inventory concerns from item information concerns.
+ * Sales in progress take soft reservations on the units they scan, which are
+ * turned into stock decrements on payment, released when the sale is
+ * abandoned, or released by a background reaper when they expire.
+ * When a decrease takes the stock of an item to or below its threshold,
+ * observers are notified asynchronously.
  */
 public class InventorySystem {
+    private static final AsyncLogger LOGGER = AsyncLogger.diagnostics();
+    private static final long RESERVATION_EXPIRY_MINUTES = 15;
+    private static final long REAPER_PERIOD_SECONDS = 30;
+    private static final int DEFAULT_LOW_STOCK_THRESHOLD = 10;
+    private static final int EVENT_QUEUE_CAPACITY = 1024;
+
     private final ItemRegistry itemRegistry;
+    private final ReservationTable reservations =
+            new ReservationTable(TimeUnit.MINUTES.toNanos(RESERVATION_EXPIRY_MINUTES));
+    private final Map<String, Integer> lowStockThresholds = new ConcurrentHashMap<>();
+    private final InventoryEventStream events = new InventoryEventStream(EVENT_QUEUE_CAPACITY);
+    private ScheduledExecutorService reservationReaper;
+    private volatile boolean reaperStarted;
 
     /**
      * Creates a new instance with a reference to the item registry.
@@ -17,6 +41,80 @@ public class InventorySystem {
      */
     public InventorySystem(ItemRegistry itemRegistry) {
         this.itemRegistry = itemRegistry;
+        itemRegistry.setStockChangeListener(this::checkStockLevel);
+    }
+
+    /**
+     * Adds an observer that is notified when items run low or out of stock.
+     *
+     * @param observer The observer to add
+     */
+    public void addInventoryObserver(InventoryObserver observer) {
+        events.addObserver(observer);
+    }
+
+    /**
+     * Sets the stock level at or below which an item is considered low in stock.
+     * Items without a threshold of their own use a default of ten units.
+     *
+     * @param itemID The item identifier
+     * @param threshold The low-stock threshold
+     */
+    public void setLowStockThreshold(String itemID, int threshold) {
+        lowStockThresholds.put(itemID, threshold);
+    }
+
+    /**
+     * Reserves units of an item for a sale in progress, if enough units are
+     * in stock that are not already reserved by other sales.
+     *
+     * @param saleID The identifier of the sale making the reservation
+     * @param itemID The item to reserve
+     * @param quantity The number of units to reserve
+     * @return true if the units were reserved, false if not enough units were available
+     */
+    public boolean reserveItem(String saleID, String itemID, int quantity) {
+        if (!reaperStarted) {
+            // Only the first reservation takes the lock
+            startReservationReaper();
+        }
+        return reservations.reserve(saleID, itemID, quantity,
+                                    itemRegistry::getInventoryQuantity, System.nanoTime());
+    }
+
+    /**
+     * Checks if sufficient units of an item are in stock and not reserved by
+     * any sale in progress.
+     *
+     * @param itemID The item identifier
+     * @param quantity The quantity to check
+     * @return true if sufficient quantity is available
+     */
+    public boolean isItemAvailable(String itemID, int quantity) {
+        return itemRegistry.getInventoryQuantity(itemID) - reservations.getReserved(itemID) >= quantity;
+    }
+
+    /**
+     * Releases all reservations of a sale that was abandoned.
+     *
+     * @param saleID The identifier of the abandoned sale
+     */
+    public void releaseReservations(String saleID) {
+        reservations.release(saleID);
+    }
+
+    /**
+     * Updates inventory based on the items of a paid sale, and releases the
+     * reservations of that sale since they are now settled.
+     *
+     * @param saleID The identifier of the paid sale
+     * @param items The items sold
+     * @return true if all inventory updates were successful
+     */
+    public boolean updateInventory(String saleID, List<SaleLineItem> items) {
+        boolean allSuccessful = updateInventory(items);
+        reservations.release(saleID);
+        return allSuccessful;
     }
 
     /**
@@ -28,7 +126,7 @@ public class InventorySystem {
     public boolean updateInventory(List<SaleLineItem> items) {
         boolean allSuccessful = true;
 
-        System.out.println("Updating inventory for completed sale...");
+        LOGGER.info("Updating inventory for completed sale...");
 
         for (SaleLineItem item : items) {
             String itemID = item.getItem().itemID();
@@ -38,7 +136,7 @@ public class InventorySystem {
 
             if (!success) {
                 allSuccessful = false;
-                System.out.println("Warning: Failed to update inventory for item: " + itemID);
+                LOGGER.warning("Failed to update inventory for item: " + itemID);
             }
         }
 
@@ -47,13 +145,65 @@ public class InventorySystem {
         return allSuccessful;
     }
 
+    /**
+     * Stops the background reaper of expired reservations and the delivery
+     * of inventory events.
+     */
+    public synchronized void shutdown() {
+        events.close();
+        if (reservationReaper != null) {
+            reservationReaper.shutdown();
+            reservationReaper = null;
+        }
+    }
+
+    /**
+     * Releases all reservations that have expired at the specified time.
+     *
+     * @param now The current time, as given by {@link System#nanoTime()}
+     * @return The number of sales whose reservations were released
+     */
+    int releaseExpiredReservations(long now) {
+        return reservations.releaseExpired(now);
+    }
+
+    private synchronized void startReservationReaper() {
+        if (reaperStarted) {
+            return;
+        }
+        reaperStarted = true;
+        reservationReaper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "reservation-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reservationReaper.scheduleWithFixedDelay(() -> releaseExpiredReservations(System.nanoTime()),
+                REAPER_PERIOD_SECONDS, REAPER_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Publishes an event if a decrease crossed the threshold of the item.
+     * Only the quantities before and after the decrease are compared, so the
+     * check takes constant time and each crossing is reported exactly once.
+     */
+    private void checkStockLevel(String itemID, int previousQuantity, int remainingQuantity) {
+        int threshold = lowStockThresholds.getOrDefault(itemID, DEFAULT_LOW_STOCK_THRESHOLD);
+        if (remainingQuantity == 0 && previousQuantity > 0) {
+            events.publish(new InventoryEventDTO(itemID, InventoryEventDTO.Type.OUT_OF_STOCK,
+                                                 remainingQuantity, threshold));
+        } else if (remainingQuantity <= threshold && previousQuantity > threshold) {
+            events.publish(new InventoryEventDTO(itemID, InventoryEventDTO.Type.LOW_STOCK,
+                                                 remainingQuantity, threshold));
+        }
+    }
+
     private boolean decreaseInventoryQuantity(String itemID, int quantity) {
         // In a real implementation, this would update a database
         // For this implementation, we delegate to the item registry
         boolean success = itemRegistry.decreaseInventoryQuantity(itemID, quantity);
 
         if (success) {
-            System.out.println("Decreased inventory quantity of item " + itemID + " by " + quantity + " units.");
+            LOGGER.info("Decreased inventory quantity of item " + itemID + " by " + quantity + " units.");
         }
 
         return success;
@@ -61,9 +211,9 @@ public class InventorySystem {
 
     private void logUpdateResult(boolean allSuccessful) {
         if (allSuccessful) {
-            System.out.println("Inventory successfully updated for all items");
+            LOGGER.info("Inventory successfully updated for all items");
         } else {
-            System.out.println("Some inventory updates failed. Manual verification required.");
+            LOGGER.info("Some inventory updates failed. Manual verification required.");
         }
     }
 }
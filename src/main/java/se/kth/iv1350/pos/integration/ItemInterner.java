@@ -0,0 +1,57 @@
+package se.kth.iv1350.pos.integration;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import se.kth.iv1350.pos.dto.ItemDTO;
+
+/**
+ * Makes equal items share one canonical instance, so that items reloaded
+ * with an unchanged catalog, or fetched again from a backend, do not create
+ * new copies in sales and receipts, and can be compared by identity.
+ * The canonical instances are only weakly referenced, so an item disappears
+ * from the interner once no catalog, cache or sale refers to it.
+ */
+final class ItemInterner {
+    private static final ItemInterner SHARED = new ItemInterner();
+
+    private final Map<ItemDTO, WeakReference<ItemDTO>> canonicalItems = new WeakHashMap<>();
+
+    /**
+     * Gets the interner shared by all catalogs of the program.
+     *
+     * @return The shared interner
+     */
+    static ItemInterner shared() {
+        return SHARED;
+    }
+
+    /**
+     * Gets the canonical instance of an item.
+     *
+     * @param item The item
+     * @return An item equal to the specified one, the same instance for all
+     *         equal items; <code>null</code> if the item is <code>null</code>
+     */
+    synchronized ItemDTO intern(ItemDTO item) {
+        if (item == null) {
+            return null;
+        }
+        WeakReference<ItemDTO> reference = canonicalItems.get(item);
+        ItemDTO canonical = reference != null ? reference.get() : null;
+        if (canonical == null) {
+            canonicalItems.put(item, new WeakReference<>(item));
+            canonical = item;
+        }
+        return canonical;
+    }
+
+    /**
+     * Gets the number of canonical items still referenced.
+     *
+     * @return The number of interned items
+     */
+    synchronized int size() {
+        return canonicalItems.size();
+    }
+}
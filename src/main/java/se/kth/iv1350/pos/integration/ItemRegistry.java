@@ -1,44 +1,251 @@
 package se.kth.iv1350.pos.integration;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import se.kth.iv1350.pos.dto.CacheStatisticsDTO;
 import se.kth.iv1350.pos.dto.ItemDTO;
+import se.kth.iv1350.pos.dto.ItemFilterStatisticsDTO;
 import se.kth.iv1350.pos.util.Amount;
 
 /**
  * Contains operations related to item information.
  * Focused on finding items and their properties, not inventory management.
+ * The catalog is held as an immutable snapshot that is replaced as a whole
+ * when the catalog is reloaded, so lookups never wait for a reload.
+ * Optionally, items not held locally are looked up in a cached remote catalog.
  */
 public class ItemRegistry {
-    private final Map<String, ItemDTO> items = new HashMap<>();
-    private final Map<String, Integer> inventory = new HashMap<>();
+    private static final int INITIAL_STOCK = 50;
+
+    private final Map<String, Integer> inventory = new ConcurrentHashMap<>();
+    private final Object reloadLock = new Object();
+    private final CachedCatalog remoteCatalog;
+
+    private volatile CatalogSnapshot catalog;
+    private volatile InventoryStore inventoryStore;
+    private volatile StockChangeListener stockChangeListener;
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder rejectedLookups = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
 
     /**
      * Creates a new instance and initializes with test items.
      */
     public ItemRegistry() {
-        loadTestItemCatalog();
+        remoteCatalog = null;
+        catalog = new CatalogSnapshot(1, loadTestItemCatalog());
+        initializeTestInventory();
+    }
+
+    /**
+     * Creates a new instance that looks up items in the specified remote
+     * catalog. Items published locally, for example through catalog deltas,
+     * take precedence over the remote catalog.
+     *
+     * @param remoteCatalog The cached remote catalog to look up items in
+     */
+    public ItemRegistry(CachedCatalog remoteCatalog) {
+        this.remoteCatalog = remoteCatalog;
+        catalog = new CatalogSnapshot(1, new HashMap<>(), remoteCatalog.getItemIDs());
         initializeTestInventory();
     }
 
     /**
-     * Searches for an item with the specified identifier.
+     * Searches for an item with the specified identifier. Identifiers that are
+     * certainly not in the catalog, such as misreads and foreign barcodes, are
+     * rejected by a Bloom filter without touching the catalog.
      *
      * @param itemID The item identifier
      * @return The item DTO or null if not found
      */
     public ItemDTO findItem(String itemID) {
-        return items.get(itemID);
+        CatalogSnapshot current = catalog;
+        lookups.increment();
+        if (!current.getItemFilter().mightContain(itemID)) {
+            rejectedLookups.increment();
+            return null;
+        }
+
+        ItemDTO item = current.getItem(itemID);
+        if (item == null && remoteCatalog != null) {
+            item = remoteCatalog.findItem(itemID);
+        }
+        if (item == null) {
+            falsePositives.increment();
+        }
+        return item;
     }
 
     /**
-     * Checks if sufficient quantity of an item is available.
+     * Loads the specified item into the cache in front of the remote catalog,
+     * without counting it in the lookup, filter or cache statistics.
+     *
+     * @param itemID The item identifier
+     * @return <code>true</code> if the item was found and is now cached
+     */
+    boolean preloadItem(String itemID) {
+        return remoteCatalog != null && remoteCatalog.preload(itemID) != null;
+    }
+
+    /**
+     * Tells whether items are looked up in a cached remote catalog, which is
+     * the only lookup structure that needs warming up.
+     *
+     * @return <code>true</code> if a remote catalog is used
+     */
+    boolean hasRemoteCatalog() {
+        return remoteCatalog != null;
+    }
+
+    /**
+     * Searches for many items at once. All identifiers are looked up in the
+     * same catalog version, even if the catalog is reloaded meanwhile.
+     *
+     * @param itemIDs The item identifiers
+     * @return The found items by identifier, without the identifiers that were not found
+     */
+    public Map<String, ItemDTO> findItems(Collection<String> itemIDs) {
+        CatalogSnapshot current = catalog;
+        lookups.add(itemIDs.size());
+        Map<String, ItemDTO> found = new HashMap<>();
+        for (String itemID : itemIDs) {
+            if (!current.getItemFilter().mightContain(itemID)) {
+                rejectedLookups.increment();
+                continue;
+            }
+
+            ItemDTO item = current.getItem(itemID);
+            if (item == null && remoteCatalog != null) {
+                item = remoteCatalog.findItem(itemID);
+            }
+            if (item == null) {
+                falsePositives.increment();
+            } else {
+                found.put(itemID, item);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Gets the metrics of the cache in front of the remote catalog.
+     *
+     * @return The cache statistics, or null if no remote catalog is used
+     */
+    public CacheStatisticsDTO getCacheStatistics() {
+        if (remoteCatalog == null) {
+            return null;
+        }
+        return remoteCatalog.getStatistics();
+    }
+
+    /**
+     * Gets metrics about how well unknown item identifiers are filtered out
+     * before reaching the catalog.
+     *
+     * @return The current filter statistics
+     */
+    public ItemFilterStatisticsDTO getItemFilterStatistics() {
+        long rejected = rejectedLookups.sum();
+        long passedUnknown = falsePositives.sum();
+        long unknown = rejected + passedUnknown;
+        double observedRate = unknown == 0 ? 0.0 : (double) passedUnknown / unknown;
+
+        return new ItemFilterStatisticsDTO(
+            lookups.sum(),
+            rejected,
+            passedUnknown,
+            observedRate,
+            catalog.getItemFilter().expectedFalsePositiveRate()
+        );
+    }
+
+    /**
+     * Gets the version of the catalog currently used for lookups. The version
+     * is increased every time a new catalog is published.
+     *
+     * @return The current catalog version
+     */
+    public long getCatalogVersion() {
+        return catalog.getVersion();
+    }
+
+    /**
+     * Reloads the catalog from the specified file and publishes it. Lookups
+     * running during the reload use the previous catalog, and items already
+     * returned by {@link #findItem(String)} are never changed. Items that were
+     * not in the catalog before are stocked like the initial ones, the stock
+     * of known items is kept.
+     *
+     * @param catalogFile The catalog file to load, see {@link CatalogFile}
+     * @return The version of the published catalog
+     * @throws IOException if the file could not be read, the current catalog is kept
+     */
+    public long reloadCatalog(Path catalogFile) throws IOException {
+        Map<String, ItemDTO> items = CatalogFile.read(catalogFile);
+        synchronized (reloadLock) {
+            return publishCatalog(items);
+        }
+    }
+
+    /**
+     * Reloads the catalog from the specified file on a background thread.
+     *
+     * @param catalogFile The catalog file to load, see {@link CatalogFile}
+     * @return A future completed with the version of the published catalog,
+     *         or exceptionally if the file could not be read
+     */
+    public CompletableFuture<Long> reloadCatalogInBackground(Path catalogFile) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return reloadCatalog(catalogFile);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Reads the identifiers of the items known by the remote catalog again,
+     * so that items added to the backend since the last catalog version pass
+     * the unknown-item filter. A new catalog version is only published if
+     * the identifiers have changed.
+     *
+     * @return The version of the current catalog
+     */
+    public long refreshRemoteItemIDs() {
+        if (remoteCatalog == null) {
+            return catalog.getVersion();
+        }
+        synchronized (reloadLock) {
+            Set<String> remoteItemIDs = remoteCatalog.getItemIDs();
+            if (remoteItemIDs.equals(catalog.getRemoteItemIDs())) {
+                return catalog.getVersion();
+            }
+            return publishCatalog(catalog.getItems(), remoteItemIDs);
+        }
+    }
+
+    /**
+     * Checks if sufficient quantity of an item is in stock, not taking units
+     * reserved by sales in progress into account. This is package-private as
+     * other layers shall use {@link InventorySystem#isItemAvailable(String, int)},
+     * which does.
      *
      * @param itemID The item identifier
      * @param quantity The quantity to check
-     * @return true if sufficient quantity is available
+     * @return true if sufficient quantity is in stock
      */
-    public boolean isItemAvailable(String itemID, int quantity) {
+    boolean isItemAvailable(String itemID, int quantity) {
         Integer available = inventory.get(itemID);
         return available != null && available >= quantity;
     }
@@ -52,49 +259,169 @@ public class ItemRegistry {
      * @return true if successful, false otherwise
      */
     boolean decreaseInventoryQuantity(String itemID, int quantity) {
-        Integer currentQuantity = inventory.get(itemID);
+        boolean[] decreased = new boolean[1];
+        int[] previousQuantity = new int[1];
+        int[] remainingQuantity = new int[1];
+        inventory.computeIfPresent(itemID, (id, currentQuantity) -> {
+            if (currentQuantity < quantity) {
+                return currentQuantity;
+            }
+            decreased[0] = true;
+            int remaining = currentQuantity - quantity;
+            previousQuantity[0] = currentQuantity;
+            remainingQuantity[0] = remaining;
+            InventoryStore store = inventoryStore;
+            if (store != null) {
+                // Recorded while the entry is locked, so changes of one item
+                // reach the store in the order they were made
+                store.recordQuantity(id, remaining);
+            }
+            return remaining;
+        });
+        StockChangeListener listener = stockChangeListener;
+        if (decreased[0] && listener != null) {
+            listener.stockDecreased(itemID, previousQuantity[0], remainingQuantity[0]);
+        }
+        return decreased[0];
+    }
+
+    /**
+     * Sets the listener that is told about every decrease of stock.
+     * This is package-private as it should only be called by InventorySystem.
+     *
+     * @param listener The listener, or <code>null</code> to remove the current one
+     */
+    void setStockChangeListener(StockChangeListener listener) {
+        stockChangeListener = listener;
+    }
+
+    /**
+     * Makes the inventory persistent. The quantities held by the store replace
+     * the initial ones, and every later change is recorded in the store.
+     * This is package-private as it should only be called by RegistryCreator.
+     *
+     * @param store The store holding the persisted inventory
+     * @throws IOException if the persisted inventory could not be recovered
+     */
+    void useInventoryStore(InventoryStore store) throws IOException {
+        inventory.putAll(store.recover());
+        inventoryStore = store;
+    }
+
+    /**
+     * Gets the number of units of an item in stock.
+     * This is package-private as it should only be called by InventorySystem.
+     *
+     * @param itemID The item identifier
+     * @return The number of units in stock, zero for unknown items
+     */
+    int getInventoryQuantity(String itemID) {
+        return inventory.getOrDefault(itemID, 0);
+    }
 
-        if (currentQuantity == null || currentQuantity < quantity) {
-            return false;
+    /**
+     * Applies a batch of incremental catalog changes. The changes are applied
+     * to a copy of the current catalog, which is then published as one new
+     * version, so lookups see either none or all of the batch.
+     *
+     * @param deltas The changes to apply, in order
+     * @return The version of the published catalog
+     */
+    long applyCatalogDeltas(List<CatalogDelta> deltas) {
+        synchronized (reloadLock) {
+            if (deltas.isEmpty()) {
+                return catalog.getVersion();
+            }
+            Map<String, ItemDTO> items = new HashMap<>(catalog.getItems());
+            for (CatalogDelta delta : deltas) {
+                delta.applyTo(items);
+            }
+            return publishCatalog(items);
         }
+    }
 
-        inventory.put(itemID, currentQuantity - quantity);
-        return true;
+    /**
+     * Gets the catalog snapshot currently used for lookups.
+     *
+     * @return The current catalog snapshot
+     */
+    CatalogSnapshot getCatalogSnapshot() {
+        return catalog;
+    }
+
+    /**
+     * Publishes the specified items together with the identifiers currently
+     * known by the remote catalog. Must be called holding the reload lock.
+     */
+    private long publishCatalog(Map<String, ItemDTO> items) {
+        Set<String> remoteItemIDs = remoteCatalog == null ? catalog.getRemoteItemIDs() : remoteCatalog.getItemIDs();
+        return publishCatalog(items, remoteItemIDs);
     }
 
-    private void loadTestItemCatalog() {
+    /**
+     * Builds a new snapshot, including its unknown-item filter, and publishes
+     * it with a single reference swap. Items new to the inventory are stocked
+     * before they can be found. Must be called holding the reload lock.
+     */
+    private long publishCatalog(Map<String, ItemDTO> items, Set<String> remoteItemIDs) {
+        CatalogSnapshot next = new CatalogSnapshot(catalog.getVersion() + 1, items, remoteItemIDs);
+        stockNewItems(next);
+        catalog = next;
+        return next.getVersion();
+    }
+
+    private Map<String, ItemDTO> loadTestItemCatalog() {
+        Map<String, ItemDTO> items = new HashMap<>();
+
         // Food items (12% VAT)
         items.put("1", new ItemDTO("1",
                 "Kellogg's Cornflakes",
                 "500g, whole grain, fortified with vitamins",
-                new Amount(10.0), 0.12));
+                Amount.of(10.0), 0.12));
 
         items.put("2", new ItemDTO("2",
                 "Barilla Pasta",
                 "500g, spaghetti, bronze cut",
-                new Amount(15.0), 0.12));
+                Amount.of(15.0), 0.12));
 
         items.put("3", new ItemDTO("3",
                 "Arla Milk",
                 "1L, organic whole milk, pasteurized",
-                new Amount(22.0), 0.12));
+                Amount.of(22.0), 0.12));
 
         // Other items (25% VAT)
         items.put("4", new ItemDTO("4",
                 "Wasa Crispbread",
                 "275g, whole grain, low sugar",
-                new Amount(30.0), 0.25));
+                Amount.of(30.0), 0.25));
 
         items.put("5", new ItemDTO("5",
                 "Fazer Chocolate",
                 "200g, milk chocolate, Finnish quality",
-                new Amount(75.0), 0.25));
+                Amount.of(75.0), 0.25));
+
+        return items;
     }
 
     private void initializeTestInventory() {
         // Initialize test inventory with 50 of each item
-        for (String itemID : items.keySet()) {
-            inventory.put(itemID, 50);
+        stockNewItems(catalog);
+    }
+
+    private void stockNewItems(CatalogSnapshot snapshot) {
+        for (String itemID : snapshot.getItems().keySet()) {
+            inventory.putIfAbsent(itemID, INITIAL_STOCK);
+        }
+        for (String itemID : snapshot.getRemoteItemIDs()) {
+            inventory.putIfAbsent(itemID, INITIAL_STOCK);
         }
     }
+
+    /**
+     * Told about each decrease of stock, with the quantities just before and
+     * after it, after the inventory entry has been released.
+     */
+    interface StockChangeListener {
+        void stockDecreased(String itemID, int previousQuantity, int remainingQuantity);
+    }
 }
@@ -0,0 +1,22 @@
+package se.kth.iv1350.pos.integration;
+
+import java.io.IOException;
+import java.util.List;
+import se.kth.iv1350.pos.dto.LedgerEntryDTO;
+
+/**
+ * The endpoint of the external ledger where sales are booked. Entries are
+ * sent in batches. The ledger must ignore an entry whose idempotency key it
+ * has already booked, which makes it safe to send a batch again after a
+ * failure.
+ */
+public interface LedgerEndpoint {
+    /**
+     * Books a batch of entries.
+     *
+     * @param entries The entries to book
+     * @throws IOException if the ledger could not be reached. Some entries
+     *         may have been booked anyway, so the batch shall be sent again.
+     */
+    void post(List<LedgerEntryDTO> entries) throws IOException;
+}
@@ -1,40 +1,113 @@
 package se.kth.iv1350.pos.integration;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.time.format.DateTimeFormatter;
 import se.kth.iv1350.pos.dto.ReceiptDTO;
 import se.kth.iv1350.pos.dto.SaleItemDTO;
+import se.kth.iv1350.pos.dto.SpoolStatisticsDTO;
 import se.kth.iv1350.pos.util.Amount;
+import se.kth.iv1350.pos.util.MoneyFormatter;
 
 /**
  * Represents the printer, used for printing receipts.
+ * Receipts are either written directly to the console as text, in order
+ * with the rest of the console output and regardless of the log level, or
+ * spooled to a printer device as ESC/POS commands, in which case printing never waits for
+ * the device.
  */
 public class Printer {
+    private static final int MAX_RECEIPTS_PER_WRITE = 16;
+    private static final long RETRY_DELAY_MILLIS = 1000;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5000;
+    private static final int INITIAL_ENCODING_BUFFER_SIZE = 4096;
+
     private final int AMOUNT_COLUMN = 40; // Column for right-aligned amounts
+    private final ReceiptSpooler spooler;
+    private ByteBuffer encodingBuffer;
 
     /**
-     * Creates a new instance.
+     * Creates a new instance that writes receipts to the console.
      */
     public Printer() {
-        // Would initialize printer hardware in a real implementation
+        spooler = null;
+    }
+
+    /**
+     * Creates a new instance that spools receipts to the specified device.
+     * Receipts are printed in the order they were spooled, and printed again
+     * if the device fails.
+     *
+     * @param device The printer device to print on
+     */
+    public Printer(PrinterDevice device) {
+        spooler = new ReceiptSpooler(device, MAX_RECEIPTS_PER_WRITE, RETRY_DELAY_MILLIS);
     }
 
     /**
-     * Prints the specified receipt.
+     * Prints the specified receipt. When printing on a device, the receipt
+     * is queued and this method returns without waiting for the device.
      *
      * @param receiptDTO The receipt data to print
      */
     public void printReceipt(ReceiptDTO receiptDTO) {
+        if (spooler != null) {
+            spooler.spool(encodeReceipt(receiptDTO));
+            return;
+        }
         System.out.println("Printing receipt...");
         System.out.println(formatReceipt(receiptDTO));
     }
 
+    /**
+     * Gets the metrics of the receipt spool.
+     *
+     * @return The spool statistics, or null if receipts are written to the console
+     */
+    public SpoolStatisticsDTO getSpoolStatistics() {
+        return spooler == null ? null : spooler.getStatistics();
+    }
+
+    /**
+     * Waits a few seconds at most for spooled receipts to be printed, then
+     * stops spooling.
+     */
+    public void shutdown() {
+        if (spooler != null) {
+            spooler.close(SHUTDOWN_TIMEOUT_MILLIS);
+        }
+    }
+
+    /**
+     * Encodes the receipt as ESC/POS commands in a direct buffer that is
+     * kept between receipts and grown when a receipt does not fit.
+     */
+    private synchronized byte[] encodeReceipt(ReceiptDTO receiptDTO) {
+        if (encodingBuffer == null) {
+            encodingBuffer = ByteBuffer.allocateDirect(INITIAL_ENCODING_BUFFER_SIZE);
+        }
+        while (true) {
+            encodingBuffer.clear();
+            try {
+                EscPosReceiptEncoder.encode(receiptDTO, encodingBuffer);
+                break;
+            } catch (BufferOverflowException e) {
+                encodingBuffer = ByteBuffer.allocateDirect(encodingBuffer.capacity() * 2);
+            }
+        }
+        encodingBuffer.flip();
+        byte[] encoded = new byte[encodingBuffer.remaining()];
+        encodingBuffer.get(encoded);
+        return encoded;
+    }
+
     /**
      * Formats the receipt data into a printable string.
      *
      * @param receiptDTO The receipt data to format
      * @return A formatted receipt string
      */
-    private String formatReceipt(ReceiptDTO receiptDTO) {
+    String formatReceipt(ReceiptDTO receiptDTO) {
         StringBuilder receipt = new StringBuilder();
 
         appendReceiptHeader(receipt, receiptDTO);
@@ -53,48 +126,54 @@ public class Printer {
 
     private void appendItemDetails(StringBuilder receipt, ReceiptDTO receiptDTO) {
         for (SaleItemDTO lineItem : receiptDTO.items()) {
-            String leftSide = String.format("%s %d x %s",
-                    lineItem.item().name(),
-                    lineItem.quantity(),
-                    formatAmount(lineItem.item().price()));
-            receipt.append(formatLineWithAmount(leftSide, lineItem.subtotal())).append("\n");
+            int lineStart = receipt.length();
+            receipt.append(lineItem.item().name()).append(' ').append(lineItem.quantity()).append(" x ");
+            MoneyFormatter.RECEIPT.appendTo(receipt, lineItem.item().price());
+            appendAmountColumn(receipt, lineStart, lineItem.subtotal());
         }
         receipt.append("\n");
     }
 
     private void appendTotals(StringBuilder receipt, ReceiptDTO receiptDTO) {
         Amount totalWithVat = receiptDTO.total().add(receiptDTO.totalVat());
-        receipt.append(formatLineWithAmount("Total :", totalWithVat)).append("\n");
-        receipt.append(formatLineWithAmount("VAT :", receiptDTO.totalVat())).append("\n\n");
+        appendLineWithAmount(receipt, "Total :", totalWithVat);
+        appendLineWithAmount(receipt, "VAT :", receiptDTO.totalVat());
+        receipt.append("\n");
     }
 
     private void appendPaymentDetails(StringBuilder receipt, ReceiptDTO receiptDTO) {
-        receipt.append(formatLineWithAmount("Cash :", receiptDTO.paymentAmount())).append("\n");
-        receipt.append(formatLineWithAmount("Change :", receiptDTO.changeAmount())).append("\n");
+        appendLineWithAmount(receipt, "Cash :", receiptDTO.paymentAmount());
+        appendLineWithAmount(receipt, "Change :", receiptDTO.changeAmount());
     }
 
     private void appendReceiptFooter(StringBuilder receipt) {
         receipt.append("------------------ End receipt ---------------------");
     }
 
-    private String formatLineWithAmount(String leftText, Amount amount) {
-        StringBuilder line = new StringBuilder(leftText);
-        String amountStr = formatAmount(amount);
+    private void appendLineWithAmount(StringBuilder receipt, String leftText, Amount amount) {
+        int lineStart = receipt.length();
+        receipt.append(leftText);
+        appendAmountColumn(receipt, lineStart, amount);
+    }
 
-        int spacesNeeded = AMOUNT_COLUMN - line.length() - amountStr.length();
-        if (spacesNeeded < 1) spacesNeeded = 1;
+    /**
+     * Pads the line started at <code>lineStart</code> with spaces so that the
+     * amount ends at the amount column, then appends the amount and ends the line.
+     */
+    private void appendAmountColumn(StringBuilder receipt, int lineStart, Amount amount) {
+        String amountStr = MoneyFormatter.RECEIPT.format(amount);
 
-        line.append(" ".repeat(spacesNeeded)).append(amountStr).append(" SEK");
+        int spacesNeeded = AMOUNT_COLUMN - (receipt.length() - lineStart) - amountStr.length();
+        if (spacesNeeded < 1) spacesNeeded = 1;
 
-        return line.toString();
+        for (int i = 0; i < spacesNeeded; i++) {
+            receipt.append(' ');
+        }
+        receipt.append(amountStr).append(" SEK\n");
     }
 
     private String formatDateTime(java.time.LocalDateTime dateTime) {
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
         return dateTime.format(formatter);
     }
-
-    private String formatAmount(Amount amount) {
-        return String.format("%.2f", amount.getValue().doubleValue()).replace('.', ':');
-    }
 }
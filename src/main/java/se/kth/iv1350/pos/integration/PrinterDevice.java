@@ -0,0 +1,17 @@
+package se.kth.iv1350.pos.integration;
+
+import java.io.IOException;
+
+/**
+ * A receipt printer, such as a serial printer or a file or pipe standing in
+ * for one. Writing may be slow, since it waits for the paper feed.
+ */
+public interface PrinterDevice {
+    /**
+     * Writes data to the printer, returning when it has all been written.
+     *
+     * @param data The bytes to print
+     * @throws IOException if the printer failed, in which case any part of the data may have been printed
+     */
+    void write(byte[] data) throws IOException;
+}
@@ -0,0 +1,283 @@
+package se.kth.iv1350.pos.integration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import se.kth.iv1350.pos.dto.ReceiptDTO;
+import se.kth.iv1350.pos.dto.SaleItemDTO;
+import se.kth.iv1350.pos.util.Amount;
+import se.kth.iv1350.pos.util.AsyncLogger;
+
+/**
+ * Exports e-receipts to an outbox directory, from where they are sent to
+ * customers. Every receipt is rendered as JSON and as a one-page PDF on a
+ * pool of background threads, so exporting never delays the payment.
+ * The parts of both formats that are the same for every receipt are built
+ * once. Each file is written under a temporary name and then atomically
+ * moved into place, so readers of the outbox never see a partial receipt.
+ */
+public class ReceiptExporter {
+    private static final AsyncLogger LOGGER = AsyncLogger.diagnostics();
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String JSON_SUFFIX = ".json";
+    private static final String PDF_SUFFIX = ".pdf";
+
+    private static final String JSON_SALE_ID = "{\"saleID\":";
+    private static final String JSON_SALE_TIME = ",\"saleTime\":\"";
+    private static final String JSON_ITEMS = "\",\"items\":[";
+    private static final String JSON_ITEM_ID = "{\"itemID\":";
+    private static final String JSON_NAME = ",\"name\":";
+    private static final String JSON_QUANTITY = ",\"quantity\":";
+    private static final String JSON_UNIT_PRICE = ",\"unitPrice\":";
+    private static final String JSON_VAT_RATE = ",\"vatRate\":";
+    private static final String JSON_SUBTOTAL = ",\"subtotal\":";
+    private static final String JSON_VAT = ",\"vat\":";
+    private static final String JSON_ITEM_TOTAL = ",\"total\":";
+    private static final String JSON_TOTAL = "],\"total\":";
+    private static final String JSON_TOTAL_VAT = ",\"totalVat\":";
+    private static final String JSON_TOTAL_WITH_VAT = ",\"totalWithVat\":";
+    private static final String JSON_PAID = ",\"paid\":";
+    private static final String JSON_CHANGE = ",\"change\":";
+
+    private static final int PDF_FONT_SIZE = 10;
+    private static final int PDF_LINE_HEIGHT = 14;
+    private static final int PDF_LEFT_MARGIN = 40;
+    private static final int PDF_AMOUNT_COLUMN = 360;
+    private static final int PDF_PAGE_WIDTH = 420;
+    private static final int PDF_TOP_MARGIN = 30;
+    private static final int PDF_BOTTOM_MARGIN = 30;
+    private static final byte[] PDF_HEADER = ascii("%PDF-1.4\n"
+            + "1 0 obj\n<< /Type /Catalog /Pages 2 0 R >>\nendobj\n"
+            + "2 0 obj\n<< /Type /Pages /Kids [3 0 R] /Count 1 >>\nendobj\n");
+    private static final byte[] PDF_FONT = ascii("4 0 obj\n<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica"
+            + " /Encoding /WinAnsiEncoding >>\nendobj\n");
+    private static final int PDF_CATALOG_OFFSET = indexOf(PDF_HEADER, "1 0 obj");
+    private static final int PDF_PAGES_OFFSET = indexOf(PDF_HEADER, "2 0 obj");
+    private static final int PDF_OBJECT_COUNT = 5;
+
+    private final Path outbox;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a new exporter writing to the specified outbox directory,
+     * which is created if needed.
+     *
+     * @param outbox The directory receipts are exported to
+     * @param threadCount The number of threads rendering receipts
+     * @throws IOException if the outbox could not be created
+     */
+    public ReceiptExporter(Path outbox, int threadCount) throws IOException {
+        this.outbox = outbox;
+        Files.createDirectories(outbox);
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threadCount, task -> {
+            Thread thread = new Thread(task, "receipt-exporter-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Exports the specified receipt in the background. The files are named
+     * after the sale, or get a random name if the receipt has no sale identifier.
+     *
+     * @param receipt The receipt to export
+     * @return Completes when both files are in the outbox, or exceptionally if the export failed
+     */
+    public CompletableFuture<Void> export(ReceiptDTO receipt) {
+        String name = receipt.saleID() != null ? receipt.saleID() : UUID.randomUUID().toString();
+        return CompletableFuture.runAsync(() -> {
+            try {
+                publish(name + JSON_SUFFIX, renderJson(receipt).getBytes(StandardCharsets.UTF_8));
+                publish(name + PDF_SUFFIX, renderPdf(receipt));
+            } catch (IOException e) {
+                LOGGER.warning("Failed to export receipt " + name + ": " + e.getMessage());
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Waits for the exports in progress to complete, for at most a few
+     * seconds, and stops the export threads.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOGGER.warning("Receipt export did not finish in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Renders the receipt as a single JSON object. Amounts are numbers with
+     * two decimals.
+     *
+     * @param receipt The receipt to render
+     * @return The JSON text
+     */
+    static String renderJson(ReceiptDTO receipt) {
+        StringBuilder json = new StringBuilder(512);
+        json.append(JSON_SALE_ID);
+        appendJsonString(receipt.saleID(), json);
+        json.append(JSON_SALE_TIME).append(receipt.saleTime()).append(JSON_ITEMS);
+        for (int i = 0; i < receipt.items().size(); i++) {
+            SaleItemDTO line = receipt.items().get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(JSON_ITEM_ID);
+            appendJsonString(line.item().itemID(), json);
+            json.append(JSON_NAME);
+            appendJsonString(line.item().name(), json);
+            json.append(JSON_QUANTITY).append(line.quantity());
+            appendJsonAmount(JSON_UNIT_PRICE, line.item().price(), json);
+            json.append(JSON_VAT_RATE).append(line.item().vatRate().toBigDecimal().toPlainString());
+            appendJsonAmount(JSON_SUBTOTAL, line.subtotal(), json);
+            appendJsonAmount(JSON_VAT, line.vatAmount(), json);
+            appendJsonAmount(JSON_ITEM_TOTAL, line.totalWithVat(), json);
+            json.append('}');
+        }
+        appendJsonAmount(JSON_TOTAL, receipt.total(), json);
+        appendJsonAmount(JSON_TOTAL_VAT, receipt.totalVat(), json);
+        appendJsonAmount(JSON_TOTAL_WITH_VAT, receipt.total().add(receipt.totalVat()), json);
+        appendJsonAmount(JSON_PAID, receipt.paymentAmount(), json);
+        appendJsonAmount(JSON_CHANGE, receipt.changeAmount(), json);
+        return json.append('}').toString();
+    }
+
+    /**
+     * Renders the receipt as a PDF with a single page, tall enough for all
+     * lines, using the Helvetica font every PDF reader has.
+     *
+     * @param receipt The receipt to render
+     * @return The PDF file
+     */
+    static byte[] renderPdf(ReceiptDTO receipt) {
+        int lineCount = receipt.items().size() + 8;
+        int pageHeight = PDF_TOP_MARGIN + lineCount * PDF_LINE_HEIGHT + PDF_BOTTOM_MARGIN;
+        StringBuilder content = new StringBuilder(1024);
+        content.append("BT\n/F1 ").append(PDF_FONT_SIZE).append(" Tf\n");
+        int y = pageHeight - PDF_TOP_MARGIN;
+        y = appendPdfLine(content, y, "Receipt " + (receipt.saleID() != null ? receipt.saleID() : ""), null);
+        y = appendPdfLine(content, y, "Time of Sale: " + receipt.saleTime().withNano(0), null);
+        y -= PDF_LINE_HEIGHT;
+        for (SaleItemDTO line : receipt.items()) {
+            y = appendPdfLine(content, y, line.item().name() + " " + line.quantity() + " x "
+                              + line.item().price().getValue().toPlainString(), line.subtotal());
+        }
+        y -= PDF_LINE_HEIGHT;
+        y = appendPdfLine(content, y, "Total", receipt.total().add(receipt.totalVat()));
+        y = appendPdfLine(content, y, "VAT", receipt.totalVat());
+        y = appendPdfLine(content, y, "Cash", receipt.paymentAmount());
+        appendPdfLine(content, y, "Change", receipt.changeAmount());
+        content.append("ET\n");
+        byte[] stream = content.toString().getBytes(StandardCharsets.ISO_8859_1);
+
+        ByteArrayOutputStream pdf = new ByteArrayOutputStream(PDF_HEADER.length + stream.length + 512);
+        int[] offsets = new int[PDF_OBJECT_COUNT + 1];
+        pdf.writeBytes(PDF_HEADER);
+        offsets[1] = PDF_CATALOG_OFFSET;
+        offsets[2] = PDF_PAGES_OFFSET;
+        offsets[3] = pdf.size();
+        pdf.writeBytes(ascii("3 0 obj\n<< /Type /Page /Parent 2 0 R /MediaBox [0 0 " + PDF_PAGE_WIDTH + " "
+                             + pageHeight + "] /Resources << /Font << /F1 4 0 R >> >> /Contents 5 0 R >>\n"
+                             + "endobj\n"));
+        offsets[4] = pdf.size();
+        pdf.writeBytes(PDF_FONT);
+        offsets[5] = pdf.size();
+        pdf.writeBytes(ascii("5 0 obj\n<< /Length " + stream.length + " >>\nstream\n"));
+        pdf.writeBytes(stream);
+        pdf.writeBytes(ascii("\nendstream\nendobj\n"));
+
+        int xrefOffset = pdf.size();
+        StringBuilder trailer = new StringBuilder(256);
+        trailer.append("xref\n0 ").append(PDF_OBJECT_COUNT + 1).append("\n0000000000 65535 f \n");
+        for (int i = 1; i <= PDF_OBJECT_COUNT; i++) {
+            trailer.append(String.format("%010d 00000 n \n", offsets[i]));
+        }
+        trailer.append("trailer\n<< /Size ").append(PDF_OBJECT_COUNT + 1).append(" /Root 1 0 R >>\n")
+               .append("startxref\n").append(xrefOffset).append("\n%%EOF\n");
+        pdf.writeBytes(ascii(trailer.toString()));
+        return pdf.toByteArray();
+    }
+
+    private void publish(String fileName, byte[] content) throws IOException {
+        Path tempFile = outbox.resolve(fileName + TEMP_SUFFIX);
+        Files.write(tempFile, content);
+        Files.move(tempFile, outbox.resolve(fileName), StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int appendPdfLine(StringBuilder content, int y, String text, Amount amount) {
+        appendPdfText(content, PDF_LEFT_MARGIN, y, text);
+        if (amount != null) {
+            appendPdfText(content, PDF_AMOUNT_COLUMN, y, amount.getValue().toPlainString() + " SEK");
+        }
+        return y - PDF_LINE_HEIGHT;
+    }
+
+    /**
+     * Places a text string at the specified position. Characters outside
+     * the WinAnsi encoding are written as <code>?</code>.
+     */
+    private static void appendPdfText(StringBuilder content, int x, int y, String text) {
+        content.append("1 0 0 1 ").append(x).append(' ').append(y).append(" Tm (");
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '(' || c == ')' || c == '\\') {
+                content.append('\\').append(c);
+            } else if (c < 0x20 || c > 0xFF) {
+                content.append('?');
+            } else {
+                content.append(c);
+            }
+        }
+        content.append(") Tj\n");
+    }
+
+    private static void appendJsonAmount(String field, Amount amount, StringBuilder json) {
+        json.append(field).append(amount.getValue().toPlainString());
+    }
+
+    private static void appendJsonString(String value, StringBuilder json) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    private static int indexOf(byte[] bytes, String text) {
+        return new String(bytes, StandardCharsets.US_ASCII).indexOf(text);
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
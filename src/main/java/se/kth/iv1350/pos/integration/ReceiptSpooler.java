@@ -0,0 +1,156 @@
+package se.kth.iv1350.pos.integration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import se.kth.iv1350.pos.dto.SpoolStatisticsDTO;
+import se.kth.iv1350.pos.util.AsyncLogger;
+
+/**
+ * Spools receipts for one printer device. Receipts are queued by the caller
+ * and printed by a dedicated drain thread, so a slow device never delays the
+ * sale. Receipts that queued up while the device was busy are sent to the
+ * device in one write. If the device fails, the whole batch is kept in the
+ * spool and printed again after a delay, so a receipt may be printed twice
+ * but is never lost.
+ */
+final class ReceiptSpooler {
+    private static final AsyncLogger LOGGER = AsyncLogger.diagnostics();
+
+    private final PrinterDevice device;
+    private final int maxBatchSize;
+    private final long retryDelayMillis;
+    private final BlockingQueue<byte[]> spool = new LinkedBlockingQueue<>();
+    private final AtomicInteger queuedReceipts = new AtomicInteger();
+    private final AtomicInteger maxQueuedReceipts = new AtomicInteger();
+    private final AtomicLong printedReceipts = new AtomicLong();
+    private final AtomicLong deviceWrites = new AtomicLong();
+    private final AtomicLong failedWrites = new AtomicLong();
+    private final Thread drainer;
+
+    /**
+     * Creates a new spooler and starts its drain thread.
+     *
+     * @param device The device to print on
+     * @param maxBatchSize The maximum number of receipts sent in one write
+     * @param retryDelayMillis The time to wait before printing again after a device failure
+     */
+    ReceiptSpooler(PrinterDevice device, int maxBatchSize, long retryDelayMillis) {
+        this.device = device;
+        this.maxBatchSize = maxBatchSize;
+        this.retryDelayMillis = retryDelayMillis;
+        drainer = new Thread(this::drainSpool, "receipt-spooler");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * Queues a receipt for printing and returns immediately.
+     *
+     * @param receipt The bytes of the receipt
+     */
+    void spool(byte[] receipt) {
+        int queued = queuedReceipts.incrementAndGet();
+        maxQueuedReceipts.accumulateAndGet(queued, Math::max);
+        spool.add(receipt);
+    }
+
+    /**
+     * Gets the metrics of this spool.
+     *
+     * @return The current statistics
+     */
+    SpoolStatisticsDTO getStatistics() {
+        return new SpoolStatisticsDTO(queuedReceipts.get(), maxQueuedReceipts.get(), printedReceipts.get(),
+                                      deviceWrites.get(), failedWrites.get());
+    }
+
+    /**
+     * Waits until all queued receipts have been printed.
+     *
+     * @param timeoutMillis The maximum time to wait
+     * @return true if the spool is empty, false if the time ran out first
+     * @throws InterruptedException if interrupted while waiting
+     */
+    boolean awaitEmpty(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (queuedReceipts) {
+            while (queuedReceipts.get() > 0) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return false;
+                }
+                queuedReceipts.wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Waits for the queued receipts to be printed, for at most the specified
+     * time, and stops the drain thread. Receipts still queued are not printed.
+     *
+     * @param timeoutMillis The maximum time to wait for the spool to drain
+     */
+    void close(long timeoutMillis) {
+        try {
+            if (!awaitEmpty(timeoutMillis)) {
+                LOGGER.warning(queuedReceipts.get() + " spooled receipts were not printed");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drainer.interrupt();
+    }
+
+    private void drainSpool() {
+        List<byte[]> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (true) {
+                if (batch.isEmpty()) {
+                    batch.add(spool.take());
+                }
+                spool.drainTo(batch, maxBatchSize - batch.size());
+                if (print(batch)) {
+                    receiptsPrinted(batch.size());
+                    batch.clear();
+                } else {
+                    Thread.sleep(retryDelayMillis);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Spooler closed
+        }
+    }
+
+    private boolean print(List<byte[]> batch) {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        for (byte[] receipt : batch) {
+            data.writeBytes(receipt);
+        }
+        try {
+            deviceWrites.incrementAndGet();
+            device.write(data.toByteArray());
+            return true;
+        } catch (IOException e) {
+            failedWrites.incrementAndGet();
+            LOGGER.warning("Printer failed, " + batch.size() + " receipts will be printed again: "
+                           + e.getMessage());
+            return false;
+        }
+    }
+
+    private void receiptsPrinted(int count) {
+        printedReceipts.addAndGet(count);
+        synchronized (queuedReceipts) {
+            queuedReceipts.addAndGet(-count);
+            queuedReceipts.notifyAll();
+        }
+    }
+}
@@ -1,24 +1,114 @@
 package se.kth.iv1350.pos.integration;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import se.kth.iv1350.pos.util.AsyncLogger;
+
 /**
  * Creates all registry classes, providing a single access point
  * to all external systems.
  */
 public class RegistryCreator {
+    private static final AsyncLogger LOGGER = AsyncLogger.diagnostics();
+    private static final String CATALOG_FILE = "catalog.txt";
+    private static final String CATALOG_DELTA_FILE = "catalog-delta.log";
+    private static final String HOTNESS_FILE = "hotness.txt";
+    private static final String INVENTORY_CHECKPOINT_FILE = "inventory.checkpoint";
+    private static final String INVENTORY_LOG_FILE = "inventory.log";
+    private static final int INVENTORY_CHECKPOINT_THRESHOLD = 10_000;
+    private static final long INVENTORY_FLUSH_MILLIS = 200;
+    private static final String SALE_JOURNAL_DIRECTORY = "journal";
+    private static final String LANE_ID = "lane-1";
+    private static final String RECEIPT_OUTBOX_DIRECTORY = "outbox";
+    private static final String ACCOUNTING_OUTBOX_FILE = "accounting-outbox.log";
+    private static final String PRINTER_DEVICE_FILE = "printer.prn";
+    private static final int CATALOG_COMPACTION_THRESHOLD = 1000;
+    private static final long CATALOG_POLL_SECONDS = 5;
+    private static final int WARM_UP_ITEM_COUNT = 200;
+    private static final int WARM_UP_THREADS = 8;
+    private static final long CACHE_WEIGHT_BYTES = 16L * 1024 * 1024;
+    private static final long PRICE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
     private final ItemRegistry itemRegistry;
     private final DiscountRegistry discountRegistry;
-    private final AccountingSystem accountingSystem;
     private final Printer printer;
     private final InventorySystem inventorySystem;
 
+    private final AccountingSystem accountingSystem;
+    private final Path dataDirectory;
+    private CatalogDeltaFeed catalogDeltaFeed;
+    private InventoryStore inventoryStore;
+    private SaleJournal saleJournal;
+    private ReceiptExporter receiptExporter;
+
     /**
      * Creates a new instance and initializes all system interfaces.
+     * Nothing is read from or written to disk.
      */
     public RegistryCreator() {
-        itemRegistry = new ItemRegistry();
+        this(new ItemRegistry(), null, new AccountingSystem());
+    }
+
+    /**
+     * Creates a new instance that keeps its files in the specified directory.
+     * The catalog is loaded from <code>catalog.txt</code> if that file exists,
+     * changes appended to <code>catalog-delta.log</code> are applied continuously,
+     * and the most sold items listed in <code>hotness.txt</code> are preloaded.
+     * Inventory changes are written behind to <code>inventory.log</code> and
+     * recovered from there, and from <code>inventory.checkpoint</code>, at startup.
+     * The sale in progress is journaled in the <code>journal</code> directory,
+     * e-receipts are exported to the <code>outbox</code> directory, and sales
+     * waiting to be booked in the ledger are kept in <code>accounting-outbox.log</code>.
+     * Receipts are printed as ESC/POS commands to <code>printer.prn</code>,
+     * which may be a file or a named pipe read by the receipt printer.
+     *
+     * @param dataDirectory The directory holding the files of the system
+     * @throws IOException if the files could not be read
+     */
+    public RegistryCreator(Path dataDirectory) throws IOException {
+        this(new ItemRegistry(), dataDirectory);
+    }
+
+    /**
+     * Creates a new instance that looks up items in the specified catalog
+     * backend and keeps its files in the specified directory.
+     *
+     * @param dataDirectory The directory holding the files of the system
+     * @param catalogBackend The central catalog to look up items in
+     * @throws IOException if the files could not be read
+     */
+    public RegistryCreator(Path dataDirectory, CatalogBackend catalogBackend) throws IOException {
+        this(new ItemRegistry(new CachedCatalog(catalogBackend, CACHE_WEIGHT_BYTES, PRICE_TTL_MILLIS)),
+             dataDirectory);
+    }
+
+    /**
+     * Starts all systems keeping files in the data directory. If starting
+     * fails, everything already started is stopped before the failure is
+     * passed on, so no background thread is left without an owner.
+     */
+    private RegistryCreator(ItemRegistry itemRegistry, Path dataDirectory) throws IOException {
+        this(itemRegistry, dataDirectory, openAccountingSystem(dataDirectory));
+        try {
+            startUp();
+        } catch (IOException | RuntimeException e) {
+            stop();
+            throw e;
+        }
+    }
+
+    private RegistryCreator(ItemRegistry itemRegistry, Path dataDirectory, AccountingSystem accountingSystem) {
+        this.itemRegistry = itemRegistry;
+        this.dataDirectory = dataDirectory;
+        this.accountingSystem = accountingSystem;
         discountRegistry = new DiscountRegistry();
-        accountingSystem = new AccountingSystem();
-        printer = new Printer();
+        if (dataDirectory == null) {
+            printer = new Printer();
+        } else {
+            printer = new Printer(new FilePrinterDevice(dataDirectory.resolve(PRINTER_DEVICE_FILE)));
+        }
         inventorySystem = new InventorySystem(itemRegistry);
     }
 
@@ -66,4 +156,103 @@ public class RegistryCreator {
     public InventorySystem getInventorySystem() {
         return inventorySystem;
     }
+
+    /**
+     * Gets the journal of the sale in progress.
+     *
+     * @return The sale journal, or <code>null</code> if nothing is kept on disk
+     */
+    public SaleJournal getSaleJournal() {
+        return saleJournal;
+    }
+
+    /**
+     * Gets the exporter of e-receipts.
+     *
+     * @return The receipt exporter, or <code>null</code> if nothing is kept on disk
+     */
+    public ReceiptExporter getReceiptExporter() {
+        return receiptExporter;
+    }
+
+    /**
+     * Stops all background work and saves the state that shall survive a
+     * restart, such as the sales frequencies used for warming up the catalog.
+     * Returns when all log messages have been written.
+     */
+    public void shutdown() {
+        stop();
+        if (dataDirectory != null) {
+            try {
+                CatalogWarmer.updateHotnessFile(dataDirectory.resolve(HOTNESS_FILE),
+                                                accountingSystem.getItemSalesFrequency());
+            } catch (IOException e) {
+                LOGGER.warning("Failed to save item sales frequencies: " + e.getMessage());
+            }
+        }
+        LOGGER.flush();
+    }
+
+    /**
+     * Stops everything that has been started, which may be only part of the
+     * systems if starting up failed.
+     */
+    private void stop() {
+        inventorySystem.shutdown();
+        printer.shutdown();
+        accountingSystem.shutdown();
+        if (catalogDeltaFeed != null) {
+            catalogDeltaFeed.stop();
+        }
+        if (saleJournal != null) {
+            saleJournal.close();
+        }
+        if (receiptExporter != null) {
+            receiptExporter.shutdown();
+        }
+        if (inventoryStore != null) {
+            try {
+                inventoryStore.close();
+            } catch (IOException e) {
+                LOGGER.warning("Failed to save inventory changes: " + e.getMessage());
+            }
+        }
+    }
+
+    private static AccountingSystem openAccountingSystem(Path dataDirectory) throws IOException {
+        Files.createDirectories(dataDirectory);
+        return new AccountingSystem(dataDirectory.resolve(ACCOUNTING_OUTBOX_FILE), new SimulatedLedger());
+    }
+
+    private void startUp() throws IOException {
+        Path catalogFile = dataDirectory.resolve(CATALOG_FILE);
+        if (Files.exists(catalogFile)) {
+            itemRegistry.reloadCatalog(catalogFile);
+        }
+        catalogDeltaFeed = new CatalogDeltaFeed(itemRegistry, catalogFile,
+                dataDirectory.resolve(CATALOG_DELTA_FILE), CATALOG_COMPACTION_THRESHOLD);
+        catalogDeltaFeed.poll();
+        catalogDeltaFeed.start(CATALOG_POLL_SECONDS, TimeUnit.SECONDS);
+
+        inventoryStore = new InventoryStore(dataDirectory.resolve(INVENTORY_CHECKPOINT_FILE),
+                dataDirectory.resolve(INVENTORY_LOG_FILE), INVENTORY_CHECKPOINT_THRESHOLD);
+        itemRegistry.useInventoryStore(inventoryStore);
+        inventoryStore.start(INVENTORY_FLUSH_MILLIS);
+
+        saleJournal = new SaleJournal(dataDirectory.resolve(SALE_JOURNAL_DIRECTORY), LANE_ID, itemRegistry);
+        receiptExporter = new ReceiptExporter(dataDirectory.resolve(RECEIPT_OUTBOX_DIRECTORY),
+                                              Runtime.getRuntime().availableProcessors());
+
+        warmUpCatalog();
+    }
+
+    private void warmUpCatalog() throws IOException {
+        CatalogWarmer warmer = new CatalogWarmer(itemRegistry, WARM_UP_THREADS);
+        try {
+            warmer.warmUp(CatalogWarmer.readHotnessFile(dataDirectory.resolve(HOTNESS_FILE)),
+                          WARM_UP_ITEM_COUNT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
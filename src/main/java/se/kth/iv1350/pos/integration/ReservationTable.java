@@ -0,0 +1,119 @@
+package se.kth.iv1350.pos.integration;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+/**
+ * Keeps track of soft inventory reservations made by sales in progress.
+ * Reservations of one sale are updated atomically, and the total reserved
+ * quantity of each item is kept alongside, so availability checks never scan
+ * the table. Reservations not touched for a while are considered abandoned
+ * and can be released by a periodic sweep.
+ */
+final class ReservationTable {
+    private final Map<String, Integer> reservedPerItem = new ConcurrentHashMap<>();
+    private final Map<String, SaleReservation> reservationsPerSale = new ConcurrentHashMap<>();
+    private final long expiryNanos;
+
+    /**
+     * Creates a new, empty table.
+     *
+     * @param expiryNanos The time after its last change when a sale's reservation expires
+     */
+    ReservationTable(long expiryNanos) {
+        this.expiryNanos = expiryNanos;
+    }
+
+    /**
+     * Reserves units of an item for a sale, if enough unreserved units are in stock.
+     *
+     * @param saleID The sale making the reservation
+     * @param itemID The item to reserve
+     * @param quantity The number of units to reserve
+     * @param stock Gives the number of units in stock of an item
+     * @param now The current time, in nanoseconds
+     * @return true if the units were reserved, false if not enough units were available
+     */
+    boolean reserve(String saleID, String itemID, int quantity, ToIntFunction<String> stock, long now) {
+        boolean[] reserved = new boolean[1];
+        reservationsPerSale.compute(saleID, (id, reservation) -> {
+            SaleReservation current = reservation != null ? reservation : new SaleReservation();
+            reservedPerItem.compute(itemID, (item, total) -> {
+                int alreadyReserved = total == null ? 0 : total;
+                if (stock.applyAsInt(item) - alreadyReserved < quantity) {
+                    return total;
+                }
+                reserved[0] = true;
+                return alreadyReserved + quantity;
+            });
+            if (reserved[0]) {
+                current.quantities.merge(itemID, quantity, Integer::sum);
+            }
+            current.expiresAt = now + expiryNanos;
+            return current.quantities.isEmpty() ? null : current;
+        });
+        return reserved[0];
+    }
+
+    /**
+     * Releases all reservations of a sale.
+     *
+     * @param saleID The sale whose reservations shall be released
+     * @return The released quantities, mapped by item identifier
+     */
+    Map<String, Integer> release(String saleID) {
+        SaleReservation reservation = reservationsPerSale.remove(saleID);
+        if (reservation == null) {
+            return new HashMap<>();
+        }
+        subtractFromTotals(reservation);
+        return reservation.quantities;
+    }
+
+    /**
+     * Releases all reservations that have expired.
+     *
+     * @param now The current time, in nanoseconds
+     * @return The number of sales whose reservations were released
+     */
+    int releaseExpired(long now) {
+        int released = 0;
+        for (String saleID : reservationsPerSale.keySet()) {
+            SaleReservation[] expired = new SaleReservation[1];
+            reservationsPerSale.computeIfPresent(saleID, (id, reservation) -> {
+                if (now - reservation.expiresAt < 0) {
+                    return reservation;
+                }
+                expired[0] = reservation;
+                return null;
+            });
+            if (expired[0] != null) {
+                subtractFromTotals(expired[0]);
+                released++;
+            }
+        }
+        return released;
+    }
+
+    /**
+     * Gets the number of reserved units of an item, over all sales.
+     *
+     * @param itemID The item identifier
+     * @return The number of reserved units
+     */
+    int getReserved(String itemID) {
+        return reservedPerItem.getOrDefault(itemID, 0);
+    }
+
+    private void subtractFromTotals(SaleReservation reservation) {
+        reservation.quantities.forEach((itemID, quantity) ->
+                reservedPerItem.computeIfPresent(itemID, (id, total) -> total > quantity ? total - quantity : null));
+    }
+
+    private static final class SaleReservation {
+        private final Map<String, Integer> quantities = new HashMap<>();
+        private long expiresAt;
+    }
+}
@@ -0,0 +1,186 @@
+package se.kth.iv1350.pos.integration;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A change of a sale, as stored in the sale event log. Every event is
+ * encoded as a record of {@link #RECORD_SIZE} bytes, so a log can be read by
+ * stepping through it without any framing or copying. The sequence number is
+ * written last, and a record with sequence number zero has not been written:
+ * <pre>
+ *  0  long   sequence number
+ *  8  byte   event type
+ *  9  byte   length of the identifier, in bytes
+ * 12  int    quantity
+ * 16  long   amount in öre, or the sale time in epoch milliseconds
+ * 24  int    VAT rate in basis points
+ * 28  byte[] identifier, UTF-8, at most 36 bytes
+ * </pre>
+ */
+public final class SaleEvent {
+    static final int RECORD_SIZE = 64;
+    static final int MAX_ID_BYTES = 36;
+
+    private static final int TYPE_OFFSET = 8;
+    private static final int ID_LENGTH_OFFSET = 9;
+    private static final int QUANTITY_OFFSET = 12;
+    private static final int AMOUNT_OFFSET = 16;
+    private static final int VAT_OFFSET = 24;
+    private static final int ID_OFFSET = 28;
+
+    /**
+     * The kinds of sale events.
+     */
+    public enum Type {
+        SALE_STARTED, ITEM_ADDED, DISCOUNT_APPLIED, PAYMENT_RECEIVED
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final String id;
+    private final int quantity;
+    private final long amount;
+    private final int vatBasisPoints;
+
+    /**
+     * Creates a new event.
+     *
+     * @param sequence The sequence number of the event in the journal
+     * @param type The kind of event
+     * @param id The sale, item or customer identifier, depending on the type
+     * @param quantity The item quantity, zero if not used
+     * @param amount The amount in öre, or the sale time in epoch milliseconds
+     * @param vatBasisPoints The VAT rate in basis points, zero if not used
+     * @throws IllegalArgumentException if the identifier does not fit in a record
+     */
+    SaleEvent(long sequence, Type type, String id, int quantity, long amount, int vatBasisPoints) {
+        if (id.getBytes(StandardCharsets.UTF_8).length > MAX_ID_BYTES) {
+            throw new IllegalArgumentException("Identifier too long for the sale journal: " + id);
+        }
+        this.sequence = sequence;
+        this.type = type;
+        this.id = id;
+        this.quantity = quantity;
+        this.amount = amount;
+        this.vatBasisPoints = vatBasisPoints;
+    }
+
+    /**
+     * Reads the event stored at the specified position. The position of the
+     * buffer is not changed.
+     *
+     * @param buffer The buffer holding the record
+     * @param offset The position of the first byte of the record
+     * @return The event
+     */
+    static SaleEvent readFrom(ByteBuffer buffer, int offset) {
+        byte[] id = new byte[buffer.get(offset + ID_LENGTH_OFFSET)];
+        buffer.get(offset + ID_OFFSET, id);
+        return new SaleEvent(buffer.getLong(offset),
+                             Type.values()[buffer.get(offset + TYPE_OFFSET)],
+                             new String(id, StandardCharsets.UTF_8),
+                             buffer.getInt(offset + QUANTITY_OFFSET),
+                             buffer.getLong(offset + AMOUNT_OFFSET),
+                             buffer.getInt(offset + VAT_OFFSET));
+    }
+
+    /**
+     * Reads only the sequence number of the record stored at the specified position.
+     *
+     * @param buffer The buffer holding the record
+     * @param offset The position of the first byte of the record
+     * @return The sequence number, zero if no record has been written there
+     */
+    static long readSequence(ByteBuffer buffer, int offset) {
+        return buffer.getLong(offset);
+    }
+
+    /**
+     * Writes this event as one record at the current position of the buffer.
+     *
+     * @param buffer The buffer to write to, with room for a record
+     */
+    void writeTo(ByteBuffer buffer) {
+        int offset = buffer.position();
+        writeTo(buffer, offset);
+        buffer.position(offset + RECORD_SIZE);
+    }
+
+    /**
+     * Writes this event as one record at the specified position, without
+     * changing the position of the buffer. The sequence number is written
+     * after all other fields.
+     *
+     * @param buffer The buffer to write to
+     * @param offset The position of the first byte of the record
+     */
+    void writeTo(ByteBuffer buffer, int offset) {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        buffer.put(offset + TYPE_OFFSET, (byte) type.ordinal());
+        buffer.put(offset + ID_LENGTH_OFFSET, (byte) idBytes.length);
+        buffer.putShort(offset + ID_LENGTH_OFFSET + 1, (short) 0);
+        buffer.putInt(offset + QUANTITY_OFFSET, quantity);
+        buffer.putLong(offset + AMOUNT_OFFSET, amount);
+        buffer.putInt(offset + VAT_OFFSET, vatBasisPoints);
+        buffer.put(offset + ID_OFFSET, idBytes);
+        for (int i = ID_OFFSET + idBytes.length; i < RECORD_SIZE; i++) {
+            buffer.put(offset + i, (byte) 0);
+        }
+        buffer.putLong(offset, sequence);
+    }
+
+    /**
+     * Gets the sequence number of this event in the log.
+     *
+     * @return The sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets the kind of this event.
+     *
+     * @return The event type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Gets the sale, item or customer identifier, depending on the type.
+     *
+     * @return The identifier
+     */
+    public String getID() {
+        return id;
+    }
+
+    /**
+     * Gets the item quantity.
+     *
+     * @return The quantity, zero if not used
+     */
+    public int getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Gets the amount in öre, or the sale time in epoch milliseconds.
+     *
+     * @return The amount
+     */
+    public long getAmount() {
+        return amount;
+    }
+
+    /**
+     * Gets the VAT rate in basis points.
+     *
+     * @return The VAT rate, zero if not used
+     */
+    public int getVatBasisPoints() {
+        return vatBasisPoints;
+    }
+}
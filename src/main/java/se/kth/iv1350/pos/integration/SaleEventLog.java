@@ -0,0 +1,293 @@
+package se.kth.iv1350.pos.integration;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * An append-only log of sale events, kept in memory-mapped segment files of
+ * fixed size. Appending copies a record into the mapped segment, so no
+ * system call is made per event, and the records survive a crash of the
+ * program. The oldest segments are deleted as new ones are started, which
+ * makes the segments a ring of bounded size.
+ * There is one writer per log. Any number of {@link Tailer}s can follow the
+ * log from other threads without locks: the writer publishes a record by
+ * updating a volatile sequence number after the record is complete.
+ * The record with sequence number <code>n</code> is always found at slot
+ * <code>(n - 1) % recordsPerSegment</code> of segment <code>(n - 1) / recordsPerSegment</code>.
+ */
+public final class SaleEventLog {
+    private static final String SEGMENT_SUFFIX = ".segment";
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final int retainedSegments;
+    private final Map<Long, MappedByteBuffer> segments = new ConcurrentHashMap<>();
+
+    private MappedByteBuffer currentSegment;
+    private long currentSegmentIndex;
+    private volatile long firstSequence = 1;
+    private volatile long lastSequence;
+
+    /**
+     * Opens the log in the specified directory, creating it if needed. The
+     * end of the log is found by looking for the first unwritten record, so
+     * a record that was only partly written before a crash is overwritten.
+     *
+     * @param directory The directory holding the segment files
+     * @param recordsPerSegment The number of records in a segment
+     * @param retainedSegments The number of segments kept, including the one being written
+     * @throws IOException if the segments could not be opened
+     */
+    SaleEventLog(Path directory, int recordsPerSegment, int retainedSegments) throws IOException {
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.retainedSegments = retainedSegments;
+        Files.createDirectories(directory);
+
+        TreeSet<Long> existing = listSegments();
+        while (existing.size() > retainedSegments) {
+            Files.deleteIfExists(segmentFile(existing.pollFirst()));
+        }
+        if (existing.isEmpty()) {
+            existing.add(0L);
+        }
+        for (long index : existing) {
+            segments.put(index, mapSegment(index));
+        }
+        currentSegmentIndex = existing.last();
+        currentSegment = segments.get(currentSegmentIndex);
+        firstSequence = existing.first() * recordsPerSegment + 1;
+        lastSequence = currentSegmentIndex * recordsPerSegment + findWrittenRecords(currentSegment);
+    }
+
+    /**
+     * Appends an event to the log. Must only be called by the single writer.
+     *
+     * @param type The kind of event
+     * @param id The sale, item or customer identifier, depending on the type
+     * @param quantity The item quantity, zero if not used
+     * @param amount The amount in öre, or the sale time in epoch milliseconds
+     * @param vatBasisPoints The VAT rate in basis points, zero if not used
+     * @return The sequence number of the appended event
+     * @throws IOException if a new segment could not be started
+     * @throws IllegalArgumentException if the identifier does not fit in a record
+     */
+    long append(SaleEvent.Type type, String id, int quantity, long amount, int vatBasisPoints)
+            throws IOException {
+        long sequence = lastSequence + 1;
+        SaleEvent event = new SaleEvent(sequence, type, id, quantity, amount, vatBasisPoints);
+        long segmentIndex = segmentIndexOf(sequence);
+        if (segmentIndex != currentSegmentIndex) {
+            startSegment(segmentIndex);
+        }
+        event.writeTo(currentSegment, slotOffsetOf(sequence));
+        lastSequence = sequence;
+        return sequence;
+    }
+
+    /**
+     * Reads the event with the specified sequence number.
+     *
+     * @param sequence The sequence number
+     * @return The event, or <code>null</code> if it is not in the log
+     */
+    SaleEvent read(long sequence) {
+        if (sequence < firstSequence || sequence > lastSequence) {
+            return null;
+        }
+        MappedByteBuffer segment = segments.get(segmentIndexOf(sequence));
+        return segment == null ? null : SaleEvent.readFrom(segment, slotOffsetOf(sequence));
+    }
+
+    /**
+     * Creates a tailer that follows the log, starting after the last event
+     * published so far.
+     *
+     * @return The new tailer
+     */
+    public Tailer newTailer() {
+        return new Tailer(lastSequence + 1);
+    }
+
+    /**
+     * Creates a tailer that follows the log, starting at the oldest event
+     * still kept.
+     *
+     * @return The new tailer
+     */
+    public Tailer newTailerFromStart() {
+        return new Tailer(firstSequence);
+    }
+
+    /**
+     * Gets the sequence number of the oldest event still kept.
+     *
+     * @return The first sequence number
+     */
+    public long getFirstSequence() {
+        return firstSequence;
+    }
+
+    /**
+     * Gets the sequence number of the last published event.
+     *
+     * @return The last sequence number, zero if the log is empty
+     */
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Writes the segment being appended to to the disk.
+     */
+    void force() {
+        currentSegment.force();
+    }
+
+    private void startSegment(long segmentIndex) throws IOException {
+        currentSegment.force();
+        MappedByteBuffer segment = mapSegment(segmentIndex);
+        segments.put(segmentIndex, segment);
+        currentSegment = segment;
+        currentSegmentIndex = segmentIndex;
+
+        long oldestKept = segmentIndex - retainedSegments + 1;
+        if (oldestKept > 0 && segments.containsKey(oldestKept - 1)) {
+            firstSequence = oldestKept * recordsPerSegment + 1;
+            // Tailers still reading the dropped segment keep their mapping
+            segments.remove(oldestKept - 1);
+            Files.deleteIfExists(segmentFile(oldestKept - 1));
+        }
+    }
+
+    private int findWrittenRecords(MappedByteBuffer segment) {
+        int low = 0;
+        int high = recordsPerSegment;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (SaleEvent.readSequence(segment, middle * SaleEvent.RECORD_SIZE) != 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private MappedByteBuffer mapSegment(long index) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentFile(index), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                               (long) recordsPerSegment * SaleEvent.RECORD_SIZE);
+        }
+    }
+
+    private TreeSet<Long> listSegments() throws IOException {
+        TreeSet<Long> indexes = new TreeSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                indexes.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        return indexes;
+    }
+
+    private Path segmentFile(long index) {
+        return directory.resolve(String.format("%010d", index) + SEGMENT_SUFFIX);
+    }
+
+    private long segmentIndexOf(long sequence) {
+        return (sequence - 1) / recordsPerSegment;
+    }
+
+    private int slotOffsetOf(long sequence) {
+        return (int) ((sequence - 1) % recordsPerSegment) * SaleEvent.RECORD_SIZE;
+    }
+
+    /**
+     * Follows a sale event log from another thread than the writer, for
+     * example to feed accounting, inventory or analytics. A tailer is used by
+     * one thread at a time; each thread following the log needs its own.
+     */
+    public final class Tailer {
+        private long nextSequence;
+        private long missedEvents;
+        private long segmentIndex = -1;
+        private MappedByteBuffer segment;
+
+        private Tailer(long nextSequence) {
+            this.nextSequence = nextSequence;
+        }
+
+        /**
+         * Hands the events published since the last poll to the handler, in order.
+         *
+         * @param handler Called once for each event
+         * @param maxEvents The maximum number of events to hand over
+         * @return The number of events handed over
+         */
+        public int poll(Consumer<SaleEvent> handler, int maxEvents) {
+            long published = lastSequence;
+            int handled = 0;
+            while (handled < maxEvents && nextSequence <= published) {
+                if (!locate(nextSequence)) {
+                    continue;
+                }
+                handler.accept(SaleEvent.readFrom(segment, slotOffsetOf(nextSequence)));
+                nextSequence++;
+                handled++;
+            }
+            return handled;
+        }
+
+        /**
+         * Gets the sequence number of the next event this tailer will read.
+         *
+         * @return The next sequence number
+         */
+        public long getNextSequence() {
+            return nextSequence;
+        }
+
+        /**
+         * Gets the number of events that were dropped from the log before
+         * this tailer could read them.
+         *
+         * @return The number of missed events
+         */
+        public long getMissedEventCount() {
+            return missedEvents;
+        }
+
+        /**
+         * Makes the segment holding the specified event current. If that
+         * segment is gone, skips ahead to the oldest event still kept.
+         */
+        private boolean locate(long sequence) {
+            long index = segmentIndexOf(sequence);
+            if (index == segmentIndex) {
+                return true;
+            }
+            MappedByteBuffer found = segments.get(index);
+            if (found == null || sequence < firstSequence) {
+                long resumeAt = Math.max(sequence + 1, firstSequence);
+                missedEvents += resumeAt - sequence;
+                nextSequence = resumeAt;
+                return false;
+            }
+            segmentIndex = index;
+            segment = found;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package se.kth.iv1350.pos.integration;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import se.kth.iv1350.pos.dto.ItemDTO;
+import se.kth.iv1350.pos.model.Sale;
+import se.kth.iv1350.pos.model.SaleLineItem;
+import se.kth.iv1350.pos.util.Amount;
+import se.kth.iv1350.pos.util.AsyncLogger;
+import se.kth.iv1350.pos.util.VatRate;
+
+/**
+ * Records every change of the sale in progress at one lane as a fixed-size
+ * event in the memory-mapped event log of the lane, so that a sale
+ * interrupted by a crash can be rebuilt after a restart. Recording an event
+ * copies it into the mapped log, without a system call.
+ * Every now and then, the state of the sale is written as a snapshot, which
+ * keeps recovery fast for large baskets. Recovery steps back from the end of
+ * the log to the start of the last sale, or to the last snapshot, and
+ * replays the events from there.
+ * Journal failures are reported but never stop the sale.
+ */
+public class SaleJournal {
+    private static final AsyncLogger LOGGER = AsyncLogger.diagnostics();
+    private static final int DEFAULT_SNAPSHOT_INTERVAL = 64;
+    private static final int RECORDS_PER_SEGMENT = 1 << 16;
+    private static final int RETAINED_SEGMENTS = 16;
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private final SaleEventLog log;
+    private final Path snapshotFile;
+    private final ItemRegistry itemRegistry;
+    private final int snapshotInterval;
+
+    private Sale journaledSale;
+    private int eventsSinceSnapshot;
+
+    /**
+     * Creates a new journal for the specified lane.
+     *
+     * @param directory The directory holding the journals of all lanes
+     * @param laneID The identifier of the lane
+     * @param itemRegistry Used to look up item descriptions when rebuilding a sale
+     * @throws IOException if the journal could not be opened
+     */
+    public SaleJournal(Path directory, String laneID, ItemRegistry itemRegistry) throws IOException {
+        this(directory, laneID, itemRegistry, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    SaleJournal(Path directory, String laneID, ItemRegistry itemRegistry, int snapshotInterval)
+            throws IOException {
+        this.log = new SaleEventLog(directory.resolve(laneID), RECORDS_PER_SEGMENT, RETAINED_SEGMENTS);
+        this.snapshotFile = directory.resolve(laneID + ".snapshot");
+        this.itemRegistry = itemRegistry;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * Gets the event log of the lane, which can be followed by other parts
+     * of the system through {@link SaleEventLog#newTailer()}.
+     *
+     * @return The event log
+     */
+    public SaleEventLog getEventLog() {
+        return log;
+    }
+
+    /**
+     * Rebuilds the sale that was in progress when the program stopped.
+     *
+     * @return The interrupted sale, or <code>null</code> if the last sale was paid
+     */
+    public synchronized Sale recover() {
+        try {
+            ReplayResult snapshot = new ReplayResult(null);
+            if (Files.exists(snapshotFile)) {
+                try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+                    snapshot = replaySnapshot(channel);
+                }
+            }
+
+            Sale sale = snapshot.sale;
+            long replayFrom = findLastSaleStart(snapshot.lastSequence);
+            if (replayFrom > 0) {
+                sale = null;
+            } else {
+                replayFrom = snapshot.lastSequence + 1;
+            }
+            for (long sequence = replayFrom; sequence <= log.getLastSequence(); sequence++) {
+                SaleEvent event = log.read(sequence);
+                if (event != null) {
+                    sale = apply(event, sale);
+                }
+            }
+            journaledSale = sale;
+            return sale;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warning("Failed to recover the interrupted sale: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Records that a new sale was started. Whatever was journaled for the
+     * previous sale is no longer used for recovery.
+     *
+     * @param sale The new sale
+     */
+    public synchronized void saleStarted(Sale sale) {
+        journaledSale = sale;
+        eventsSinceSnapshot = 0;
+        record(SaleEvent.Type.SALE_STARTED, sale.getSaleID(), 0, toEpochMillis(sale.getSaleTime()), 0);
+    }
+
+    /**
+     * Records that an item was added to the sale in progress.
+     *
+     * @param item The added item, with the price it was sold for
+     * @param quantity The added quantity
+     */
+    public synchronized void itemAdded(ItemDTO item, int quantity) {
+        record(SaleEvent.Type.ITEM_ADDED, item.itemID(), quantity,
+               item.price().toOre(), item.vatRate().getBasisPoints());
+    }
+
+    /**
+     * Records that a discount was applied to the sale in progress.
+     *
+     * @param customerID The customer receiving the discount
+     * @param discountAmount The discount amount
+     */
+    public synchronized void discountApplied(String customerID, Amount discountAmount) {
+        record(SaleEvent.Type.DISCOUNT_APPLIED, customerID, 0, discountAmount.toOre(), 0);
+    }
+
+    /**
+     * Records that the sale in progress was paid, which completes it.
+     *
+     * @param paidAmount The amount paid by the customer
+     */
+    public synchronized void paymentReceived(Amount paidAmount) {
+        String saleID = journaledSale != null ? journaledSale.getSaleID() : "";
+        record(SaleEvent.Type.PAYMENT_RECEIVED, saleID, 0, paidAmount.toOre(), 0);
+        journaledSale = null;
+    }
+
+    /**
+     * Closes the journal, writing the event log to the disk. Journaled events
+     * are kept for the next start.
+     */
+    public synchronized void close() {
+        log.force();
+    }
+
+    private void record(SaleEvent.Type type, String id, int quantity, long amount, int vatBasisPoints) {
+        try {
+            log.append(type, id, quantity, amount, vatBasisPoints);
+            eventsSinceSnapshot++;
+            if (eventsSinceSnapshot >= snapshotInterval && journaledSale != null) {
+                writeSnapshot();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            reportFailure(e);
+        }
+    }
+
+    /**
+     * Writes the current state of the sale as a sequence of events, all with
+     * the sequence number of the last journaled event. Only log records after
+     * that number are applied on top of the snapshot at recovery.
+     */
+    private void writeSnapshot() throws IOException {
+        long lastSequence = log.getLastSequence();
+        ByteBuffer snapshot = ByteBuffer.allocate(
+                (journaledSale.getItems().size() + 2) * SaleEvent.RECORD_SIZE);
+        saleStartedEvent(lastSequence, journaledSale).writeTo(snapshot);
+        for (SaleLineItem lineItem : journaledSale.getItems()) {
+            itemAddedEvent(lastSequence, lineItem.getItem(), lineItem.getQuantity()).writeTo(snapshot);
+        }
+        if (journaledSale.getCustomerID() != null) {
+            new SaleEvent(lastSequence, SaleEvent.Type.DISCOUNT_APPLIED, journaledSale.getCustomerID(), 0,
+                          journaledSale.getDiscountAmount().toOre(), 0).writeTo(snapshot);
+        }
+        snapshot.flip();
+
+        Path tempFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (snapshot.hasRemaining()) {
+                channel.write(snapshot);
+            }
+        }
+        Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        eventsSinceSnapshot = 0;
+    }
+
+    /**
+     * Applies the records of a snapshot file, in order, read directly from
+     * the mapped file.
+     */
+    private ReplayResult replaySnapshot(FileChannel channel) throws IOException {
+        ReplayResult result = new ReplayResult(null);
+        long completeSize = channel.size() - channel.size() % SaleEvent.RECORD_SIZE;
+        if (completeSize == 0) {
+            return result;
+        }
+        MappedByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, 0, completeSize);
+        for (int offset = 0; offset < completeSize; offset += SaleEvent.RECORD_SIZE) {
+            SaleEvent event = SaleEvent.readFrom(records, offset);
+            result.sale = apply(event, result.sale);
+            result.lastSequence = event.getSequence();
+        }
+        return result;
+    }
+
+    /**
+     * Steps back from the end of the log to the start of the last sale.
+     *
+     * @return The sequence number of the start event, or zero if the last
+     *         sale started before the snapshot or is no longer in the log
+     */
+    private long findLastSaleStart(long snapshotSequence) {
+        long stopAt = Math.max(log.getFirstSequence(), snapshotSequence + 1);
+        for (long sequence = log.getLastSequence(); sequence >= stopAt; sequence--) {
+            SaleEvent event = log.read(sequence);
+            if (event != null && event.getType() == SaleEvent.Type.SALE_STARTED) {
+                return sequence;
+            }
+        }
+        return 0;
+    }
+
+    private Sale apply(SaleEvent event, Sale sale) {
+        switch (event.getType()) {
+            case SALE_STARTED:
+                return new Sale(event.getID(),
+                                LocalDateTime.ofInstant(Instant.ofEpochMilli(event.getAmount()), ZONE));
+            case ITEM_ADDED:
+                if (sale != null) {
+                    sale.addItem(rebuildItem(event), event.getQuantity());
+                }
+                return sale;
+            case DISCOUNT_APPLIED:
+                if (sale != null) {
+                    sale.applyDiscount(event.getID(), Amount.ofOre(event.getAmount()));
+                }
+                return sale;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Recreates the item with the price and VAT rate it was scanned with,
+     * which may differ from the current catalog.
+     */
+    private ItemDTO rebuildItem(SaleEvent event) {
+        Amount price = Amount.ofOre(event.getAmount());
+        VatRate vatRate = VatRate.ofBasisPoints(event.getVatBasisPoints());
+        ItemDTO known = itemRegistry.findItem(event.getID());
+        if (known == null) {
+            return ItemInterner.shared().intern(new ItemDTO(event.getID(), event.getID(), "", price, vatRate));
+        }
+        if (known.price().equals(price) && known.vatRate().equals(vatRate)) {
+            return known;
+        }
+        return ItemInterner.shared().intern(
+                new ItemDTO(known.itemID(), known.name(), known.description(), price, vatRate));
+    }
+
+    private static SaleEvent saleStartedEvent(long sequence, Sale sale) {
+        return new SaleEvent(sequence, SaleEvent.Type.SALE_STARTED, sale.getSaleID(), 0,
+                             toEpochMillis(sale.getSaleTime()), 0);
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZONE).toInstant().toEpochMilli();
+    }
+
+    private static SaleEvent itemAddedEvent(long sequence, ItemDTO item, int quantity) {
+        return new SaleEvent(sequence, SaleEvent.Type.ITEM_ADDED, item.itemID(), quantity,
+                             item.price().toOre(), item.vatRate().getBasisPoints());
+    }
+
+    private static void reportFailure(Exception e) {
+        LOGGER.warning("Failed to journal sale event: " + e.getMessage());
+    }
+
+    private static final class ReplayResult {
+        private Sale sale;
+        private long lastSequence;
+
+        private ReplayResult(Sale sale) {
+            this.sale = sale;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package se.kth.iv1350.pos.integration;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import se.kth.iv1350.pos.dto.ItemDTO;
+
+/**
+ * Local stand-in for a slow central catalog service. Every fetch is delayed
+ * by a fixed latency and counted, which makes caching effects observable.
+ */
+public class SimulatedCatalogBackend implements CatalogBackend {
+    private final Map<String, ItemDTO> items = new ConcurrentHashMap<>();
+    private final long latencyMillis;
+    private final AtomicLong fetchCount = new AtomicLong();
+
+    /**
+     * Creates a new instance serving the specified items.
+     *
+     * @param items The items served by the backend
+     * @param latencyMillis The simulated latency of each fetch, in milliseconds
+     */
+    public SimulatedCatalogBackend(Map<String, ItemDTO> items, long latencyMillis) {
+        this.items.putAll(items);
+        this.latencyMillis = latencyMillis;
+    }
+
+    @Override
+    public ItemDTO fetchItem(String itemID) {
+        fetchCount.incrementAndGet();
+        simulateLatency();
+        return items.get(itemID);
+    }
+
+    @Override
+    public Set<String> getItemIDs() {
+        return Collections.unmodifiableSet(new HashSet<>(items.keySet()));
+    }
+
+    /**
+     * Adds or replaces an item, simulating a change in the central catalog.
+     *
+     * @param item The new item data
+     */
+    public void updateItem(ItemDTO item) {
+        items.put(item.itemID(), item);
+    }
+
+    /**
+     * Gets the number of fetches served so far.
+     *
+     * @return The number of fetches
+     */
+    public long getFetchCount() {
+        return fetchCount.get();
+    }
+
+    private void simulateLatency() {
+        if (latencyMillis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
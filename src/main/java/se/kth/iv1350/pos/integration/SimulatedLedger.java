@@ -0,0 +1,91 @@
+package se.kth.iv1350.pos.integration;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import se.kth.iv1350.pos.dto.LedgerEntryDTO;
+import se.kth.iv1350.pos.util.Amount;
+import se.kth.iv1350.pos.util.MoneyAccumulator;
+
+/**
+ * Local stand-in for the external ledger. Entries are booked in memory,
+ * once per idempotency key, and entries sent again are counted as
+ * duplicates. The ledger can be made unavailable to simulate an outage.
+ */
+public class SimulatedLedger implements LedgerEndpoint {
+    private final Map<String, LedgerEntryDTO> bookedEntries = new LinkedHashMap<>();
+    private volatile boolean available = true;
+    private long postCount;
+    private long duplicateCount;
+
+    /**
+     * Creates a new, empty ledger.
+     */
+    public SimulatedLedger() {
+    }
+
+    @Override
+    public synchronized void post(List<LedgerEntryDTO> entries) throws IOException {
+        if (!available) {
+            throw new IOException("The ledger is not available");
+        }
+        postCount++;
+        for (LedgerEntryDTO entry : entries) {
+            if (bookedEntries.putIfAbsent(entry.idempotencyKey(), entry) != null) {
+                duplicateCount++;
+            }
+        }
+    }
+
+    /**
+     * Makes the ledger available or unavailable. Posts to an unavailable
+     * ledger fail.
+     *
+     * @param available true if the ledger shall accept posts
+     */
+    public void setAvailable(boolean available) {
+        this.available = available;
+    }
+
+    /**
+     * Gets the number of booked entries.
+     *
+     * @return The number of distinct entries booked
+     */
+    public synchronized int getBookedEntryCount() {
+        return bookedEntries.size();
+    }
+
+    /**
+     * Gets the total revenue of all booked entries, including VAT.
+     *
+     * @return The booked revenue
+     */
+    public synchronized Amount getBookedRevenue() {
+        MoneyAccumulator revenue = new MoneyAccumulator();
+        for (LedgerEntryDTO entry : bookedEntries.values()) {
+            revenue.add(entry.totalWithVat());
+        }
+        return revenue.toAmount();
+    }
+
+    /**
+     * Gets the number of successful posts, each holding one batch.
+     *
+     * @return The number of posts
+     */
+    public synchronized long getPostCount() {
+        return postCount;
+    }
+
+    /**
+     * Gets the number of entries that were sent again after being booked,
+     * and were ignored.
+     *
+     * @return The number of ignored duplicates
+     */
+    public synchronized long getDuplicateCount() {
+        return duplicateCount;
+    }
+}
@@ -12,7 +12,7 @@ public class CashRegister {
      * Creates a new instance with an initial balance of zero.
      */
     public CashRegister() {
-        this.balance = new Amount();
+        this.balance = Amount.zero();
     }
 
     /**
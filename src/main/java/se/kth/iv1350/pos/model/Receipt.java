@@ -15,6 +15,7 @@ public class Receipt {
     private final Amount totalAmount;
     private final Amount totalVat;
     private final LocalDateTime saleTime;
+    private final String saleID;
     private final Amount paymentAmount;
     private final Amount changeAmount;
 
@@ -31,6 +32,7 @@ public class Receipt {
         this.totalAmount = sale.calculateTotal();
         this.totalVat = sale.calculateTotalVat();
         this.saleTime = sale.getSaleTime();
+        this.saleID = sale.getSaleID();
         this.paymentAmount = paymentAmount;
         this.changeAmount = changeAmount;
     }
@@ -71,6 +73,15 @@ public class Receipt {
         return saleTime;
     }
 
+    /**
+     * Gets the identifier of the sale this receipt is for.
+     *
+     * @return The sale identifier
+     */
+    public String getSaleID() {
+        return saleID;
+    }
+
     /**
      * Gets the payment amount.
      *
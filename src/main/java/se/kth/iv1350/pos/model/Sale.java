@@ -1,29 +1,99 @@
 package se.kth.iv1350.pos.model;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import se.kth.iv1350.pos.dto.ItemDTO;
+import se.kth.iv1350.pos.dto.SaleItemDTO;
 import se.kth.iv1350.pos.util.Amount;
+import se.kth.iv1350.pos.util.MoneyAccumulator;
+import se.kth.iv1350.pos.util.VatRate;
 
 /**
  * Represents a single sale transaction.
  * Focuses on core sale data and calculations only.
+ * A sale can be reset and reused for the next sale at the same lane, which
+ * keeps its line container. Item lists handed out before a reset stop
+ * working, so stale references to the old sale are detected when used.
+ * <p>
+ * The lines are kept in parallel arrays, with the net amount of each line in
+ * öre and its VAT rate in basis points, so totals are computed with integer
+ * arithmetic only. VAT is rounded to whole öre either once per line or once
+ * for the whole receipt, see {@link VatRounding}. Line items are only created
+ * when the lines are read through {@link #getItems()}.
+ * <p>
+ * Totals of very large sales, such as wholesale baskets with thousands of
+ * lines, are summed in parallel on the common fork/join pool. Smaller sales
+ * are summed on the calling thread, where splitting the work would cost more
+ * than it saves. Both ways give exactly the same result, since all sums are
+ * integer sums.
  */
 public class Sale {
-    private final List<SaleLineItem> items;
-    private final LocalDateTime saleTime;
+    private static final int INITIAL_CAPACITY = 8;
+    private static final int ALL_RATES = -1;
+    private static final int PARALLEL_THRESHOLD = 8192;
+    private static final int LINES_PER_TASK = 2048;
+
+    private ItemDTO[] lineItems = new ItemDTO[INITIAL_CAPACITY];
+    private int[] quantities = new int[INITIAL_CAPACITY];
+    private long[] netOre = new long[INITIAL_CAPACITY];
+    private int[] vatBasisPoints = new int[INITIAL_CAPACITY];
+    private int lineCount;
+    private long vatBasisPointProductSum;
+    private VatRounding vatRounding = VatRounding.PER_LINE;
+    private int parallelThreshold = PARALLEL_THRESHOLD;
+    private String saleID;
+    private LocalDateTime saleTime;
     private Amount discountAmount;
     private String customerID;
+    private int generation;
+    private ItemsView itemsView;
 
     /**
      * Creates a new sale instance.
      */
     public Sale() {
-        this.items = new ArrayList<>();
-        this.saleTime = LocalDateTime.now();
-        this.discountAmount = new Amount();
+        this(UUID.randomUUID().toString(), LocalDateTime.now());
+    }
+
+    /**
+     * Recreates an empty sale that was started earlier, for example when an
+     * interrupted sale is rebuilt after a restart.
+     *
+     * @param saleID The identifier of the sale
+     * @param saleTime The time when the sale was started
+     */
+    public Sale(String saleID, LocalDateTime saleTime) {
+        this.saleID = saleID;
+        this.saleTime = saleTime;
+        this.discountAmount = Amount.zero();
+        this.itemsView = new ItemsView(generation);
+    }
+
+    /**
+     * Clears this sale so that it can be used for a new sale. The new sale
+     * gets a new identifier and start time. Lists returned by
+     * {@link #getItems()} before the reset throw
+     * <code>IllegalStateException</code> when used afterwards; line items and
+     * DTOs created before the reset are not affected.
+     */
+    public void reset() {
+        Arrays.fill(lineItems, 0, lineCount, null);
+        lineCount = 0;
+        vatBasisPointProductSum = 0;
+        saleID = UUID.randomUUID().toString();
+        saleTime = LocalDateTime.now();
+        discountAmount = Amount.zero();
+        customerID = null;
+        generation++;
+        itemsView = new ItemsView(generation);
     }
 
     /**
@@ -31,24 +101,72 @@ public class Sale {
      *
      * @param itemDTO The item to add
      * @param quantity The quantity to add
+     * @return The added units with their net amount and the VAT they add to
+     *         the sale, rounded the way this sale currently rounds VAT
      */
-    public void addItem(ItemDTO itemDTO, int quantity) {
-        SaleLineItem existingItem = findItem(itemDTO.itemID());
+    public SaleItemDTO addItem(ItemDTO itemDTO, int quantity) {
+        int line = findLine(itemDTO);
+
+        if (line < 0) {
+            line = addLine(itemDTO);
+        }
+        ItemDTO lineItem = lineItems[line];
+        long addedNetOre = unitNetOre(lineItem) * quantity;
+        long oldProduct = Math.multiplyExact(netOre[line], vatBasisPoints[line]);
+        quantities[line] += quantity;
+        netOre[line] += addedNetOre;
+        long newProduct = Math.multiplyExact(netOre[line], vatBasisPoints[line]);
+        long oldSum = vatBasisPointProductSum;
+        vatBasisPointProductSum = Math.addExact(oldSum, newProduct - oldProduct);
 
-        if (existingItem != null) {
-            existingItem.incrementQuantity(quantity);
-        } else {
-            items.add(new SaleLineItem(itemDTO, quantity));
+        long addedVatOre = vatRounding == VatRounding.PER_LINE
+                ? VatRate.roundBasisPointProduct(newProduct) - VatRate.roundBasisPointProduct(oldProduct)
+                : VatRate.roundBasisPointProduct(vatBasisPointProductSum) - VatRate.roundBasisPointProduct(oldSum);
+        return new SaleItemDTO(lineItem, quantity, Amount.ofOre(addedNetOre), Amount.ofOre(addedVatOre),
+                               Amount.ofOre(addedNetOre + addedVatOre));
+    }
+
+    /**
+     * Tells whether the sale has a line for the specified item.
+     *
+     * @param itemID The item identifier
+     * @return true if the item has been added to this sale
+     */
+    public boolean containsItem(String itemID) {
+        for (int line = 0; line < lineCount; line++) {
+            if (lineItems[line].itemID().equals(itemID)) {
+                return true;
+            }
         }
+        return false;
+    }
+
+    /**
+     * Sets where VAT is rounded to whole öre. The rounding applies to all
+     * totals calculated from now on, including those of lines already added.
+     *
+     * @param vatRounding Where VAT is rounded
+     */
+    public void setVatRounding(VatRounding vatRounding) {
+        this.vatRounding = vatRounding;
+    }
+
+    /**
+     * Gets where VAT is rounded to whole öre.
+     *
+     * @return Where VAT is rounded
+     */
+    public VatRounding getVatRounding() {
+        return vatRounding;
     }
 
     /**
      * Gets all sale line items (as an unmodifiable list for safety).
      *
-     * @return An unmodifiable view of the items list
+     * @return An unmodifiable view of the items list, valid until this sale is reset
      */
     public List<SaleLineItem> getItems() {
-        return Collections.unmodifiableList(items);
+        return itemsView;
     }
 
     /**
@@ -57,11 +175,7 @@ public class Sale {
      * @return The total price without VAT
      */
     public Amount calculateTotal() {
-        Amount total = new Amount();
-        for (SaleLineItem item : items) {
-            total = total.add(item.getSubtotal());
-        }
-        return total;
+        return sumLines(ALL_RATES).net.toAmount();
     }
 
     /**
@@ -70,11 +184,33 @@ public class Sale {
      * @return The total VAT
      */
     public Amount calculateTotalVat() {
-        Amount totalVat = new Amount();
-        for (SaleLineItem item : items) {
-            totalVat = totalVat.add(item.getVatAmount());
+        return Amount.ofOre(sumLines(ALL_RATES).roundedVat());
+    }
+
+    /**
+     * Calculates the VAT of this sale grouped by VAT rate, as shown on a
+     * receipt.
+     *
+     * @return The VAT amount for each VAT rate in the sale, ordered by rate
+     */
+    public Map<VatRate, Amount> calculateVatByRate() {
+        int[] rates = new int[lineCount];
+        int rateCount = 0;
+        for (int line = 0; line < lineCount; line++) {
+            int group = 0;
+            while (group < rateCount && rates[group] != vatBasisPoints[line]) {
+                group++;
+            }
+            if (group == rateCount) {
+                rates[rateCount++] = vatBasisPoints[line];
+            }
         }
-        return totalVat;
+
+        Map<VatRate, Amount> vatByRate = new TreeMap<>();
+        for (int group = 0; group < rateCount; group++) {
+            vatByRate.put(VatRate.ofBasisPoints(rates[group]), Amount.ofOre(sumLines(rates[group]).roundedVat()));
+        }
+        return vatByRate;
     }
 
     /**
@@ -83,7 +219,8 @@ public class Sale {
      * @return The total price with VAT and after discounts
      */
     public Amount calculateTotalWithVat() {
-        Amount total = calculateTotal().add(calculateTotalVat());
+        LineSums sums = sumLines(ALL_RATES);
+        Amount total = sums.net.addOre(sums.roundedVat()).toAmount();
         return total.subtract(discountAmount);
     }
 
@@ -107,6 +244,15 @@ public class Sale {
         return discountAmount;
     }
 
+    /**
+     * Gets the identifier of this sale, which is unique across all lanes.
+     *
+     * @return The sale identifier
+     */
+    public String getSaleID() {
+        return saleID;
+    }
+
     /**
      * Gets the sale time.
      *
@@ -136,12 +282,157 @@ public class Sale {
         return new Receipt(this, paymentAmount, changeAmount);
     }
 
-    private SaleLineItem findItem(String itemID) {
-        for (SaleLineItem item : items) {
-            if (item.getItem().itemID().equals(itemID)) {
-                return item;
+    private int findLine(ItemDTO itemDTO) {
+        // Catalog items are shared instances, so a rescanned item usually
+        // matches by identity without comparing identifiers
+        for (int line = 0; line < lineCount; line++) {
+            if (lineItems[line] == itemDTO || lineItems[line].itemID().equals(itemDTO.itemID())) {
+                return line;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds an empty line at the end, growing the arrays if they are full.
+     */
+    private int addLine(ItemDTO itemDTO) {
+        if (lineCount == lineItems.length) {
+            int capacity = lineItems.length * 2;
+            lineItems = Arrays.copyOf(lineItems, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+            netOre = Arrays.copyOf(netOre, capacity);
+            vatBasisPoints = Arrays.copyOf(vatBasisPoints, capacity);
+        }
+        lineItems[lineCount] = itemDTO;
+        quantities[lineCount] = 0;
+        netOre[lineCount] = 0;
+        vatBasisPoints[lineCount] = itemDTO.vatRate().getBasisPoints();
+        return lineCount++;
+    }
+
+    private static long unitNetOre(ItemDTO item) {
+        return item.price().toOre();
+    }
+
+    /**
+     * Sets the number of lines from which totals are summed in parallel.
+     * Only used by tests, to compare the parallel and sequential sums.
+     */
+    void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Sums the lines with the specified rate, or all lines, in parallel if
+     * there are enough lines.
+     */
+    private LineSums sumLines(int onlyBasisPoints) {
+        if (lineCount < parallelThreshold) {
+            return sumLines(0, lineCount, onlyBasisPoints);
+        }
+        return ForkJoinPool.commonPool().invoke(new LineSumTask(0, lineCount, onlyBasisPoints));
+    }
+
+    /**
+     * Sums the lines in the specified range. Net amounts times basis points
+     * are exact, so VAT is not rounded until the chosen rounding point.
+     */
+    private LineSums sumLines(int fromLine, int toLine, int onlyBasisPoints) {
+        LineSums sums = new LineSums();
+        for (int line = fromLine; line < toLine; line++) {
+            if (onlyBasisPoints != ALL_RATES && vatBasisPoints[line] != onlyBasisPoints) {
+                continue;
+            }
+            sums.net.addOre(netOre[line]);
+            long basisPointProduct = Math.multiplyExact(netOre[line], vatBasisPoints[line]);
+            sums.vat = Math.addExact(sums.vat, vatRounding == VatRounding.PER_LINE
+                    ? VatRate.roundBasisPointProduct(basisPointProduct) : basisPointProduct);
+        }
+        return sums;
+    }
+
+    /**
+     * The net amount and VAT of a range of lines. The VAT is in öre when
+     * rounding per line, and in öre times basis points when rounding per
+     * receipt.
+     */
+    private final class LineSums {
+        private final MoneyAccumulator net = new MoneyAccumulator();
+        private long vat;
+
+        private LineSums combine(LineSums other) {
+            net.combine(other.net);
+            vat = Math.addExact(vat, other.vat);
+            return this;
+        }
+
+        private long roundedVat() {
+            return vatRounding == VatRounding.PER_LINE ? vat : VatRate.roundBasisPointProduct(vat);
+        }
+    }
+
+    /**
+     * Sums a range of lines by splitting it in halves until the parts are
+     * small enough to be summed directly. Tasks only live while the sum is
+     * computed and are never serialized.
+     */
+    @SuppressWarnings("serial")
+    private final class LineSumTask extends RecursiveTask<LineSums> {
+        private final int fromLine;
+        private final int toLine;
+        private final int onlyBasisPoints;
+
+        private LineSumTask(int fromLine, int toLine, int onlyBasisPoints) {
+            this.fromLine = fromLine;
+            this.toLine = toLine;
+            this.onlyBasisPoints = onlyBasisPoints;
+        }
+
+        @Override
+        protected LineSums compute() {
+            if (toLine - fromLine <= LINES_PER_TASK) {
+                return sumLines(fromLine, toLine, onlyBasisPoints);
+            }
+            int middle = (fromLine + toLine) >>> 1;
+            LineSumTask firstHalf = new LineSumTask(fromLine, middle, onlyBasisPoints);
+            firstHalf.fork();
+            LineSums secondHalf = new LineSumTask(middle, toLine, onlyBasisPoints).compute();
+            return firstHalf.join().combine(secondHalf);
+        }
+    }
+
+    /**
+     * An unmodifiable view of the lines that refuses to be used once the
+     * sale has been reset. Each read creates a line item holding the line
+     * as it is at that moment.
+     */
+    private final class ItemsView extends AbstractList<SaleLineItem> implements RandomAccess {
+        private final int viewGeneration;
+
+        private ItemsView(int viewGeneration) {
+            this.viewGeneration = viewGeneration;
+        }
+
+        @Override
+        public SaleLineItem get(int index) {
+            checkGeneration();
+            if (index < 0 || index >= lineCount) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + lineCount);
+            }
+            return new SaleLineItem(lineItems[index], quantities[index]);
+        }
+
+        @Override
+        public int size() {
+            checkGeneration();
+            return lineCount;
+        }
+
+        private void checkGeneration() {
+            if (viewGeneration != generation) {
+                throw new IllegalStateException("The sale has been reset, its old items are no longer available");
             }
         }
-        return null;
     }
 }
@@ -40,12 +40,12 @@ public class SaleLineItem {
     }
 
     /**
-     * Gets the VAT amount for this line item.
+     * Gets the VAT amount for this line item, rounded once for the whole line.
      *
      * @return The VAT amount
      */
     public Amount getVatAmount() {
-        return calculateVatAmount().multiply(quantity);
+        return item.vatRate().vatOn(getSubtotal());
     }
 
     /**
@@ -54,7 +54,7 @@ public class SaleLineItem {
      * @return The total with VAT
      */
     public Amount getTotalWithVat() {
-        return getPriceWithVat().multiply(quantity);
+        return getSubtotal().add(getVatAmount());
     }
 
     /**
@@ -74,12 +74,4 @@ public class SaleLineItem {
     public int getQuantity() {
         return quantity;
     }
-
-    private Amount calculateVatAmount() {
-        return item.price().multiply(item.vatRate());
-    }
-
-    private Amount getPriceWithVat() {
-        return item.price().add(calculateVatAmount());
-    }
 }
@@ -39,7 +39,8 @@ public class SaleProcessor {
             sale.calculateTotalVat(),
             sale.getDiscountAmount(),
             sale.calculateTotalWithVat(),
-            sale.getSaleTime()
+            sale.getSaleTime(),
+            sale.getSaleID()
         );
     }
 
@@ -71,7 +72,8 @@ public class SaleProcessor {
             receipt.getTotalVat(),
             receipt.getPaymentAmount(),
             receipt.getChangeAmount(),
-            receipt.getSaleTime()
+            receipt.getSaleTime(),
+            receipt.getSaleID()
         );
     }
 }
@@ -0,0 +1,17 @@
+package se.kth.iv1350.pos.model;
+
+/**
+ * Where VAT is rounded to whole öre when the VAT of a sale is calculated.
+ */
+public enum VatRounding {
+    /**
+     * The VAT of each line is rounded, and the rounded amounts are added up.
+     * The total VAT always equals the sum of the VAT shown on the lines.
+     */
+    PER_LINE,
+    /**
+     * The exact VAT of all lines is added up and rounded once, which keeps
+     * the total closest to the exact VAT of the whole sale.
+     */
+    PER_RECEIPT
+}
@@ -6,6 +6,8 @@ import se.kth.iv1350.pos.view.View;
 
 /**
  * Contains the main method. Performs all startup of the application.
+ * Diagnostics of the integration layer are written to <code>pos.log</code>
+ * in the working directory, see {@link se.kth.iv1350.pos.util.AsyncLogger#diagnostics()}.
  */
 public class Main {
     /**
@@ -15,9 +17,13 @@ public class Main {
      */
     public static void main(String[] args) {
         RegistryCreator creator = new RegistryCreator();
-        Controller controller = new Controller(creator);
-        View view = new View(controller);
+        try {
+            Controller controller = new Controller(creator);
+            View view = new View(controller);
 
-        view.runFakeExecution();
+            view.runFakeExecution();
+        } finally {
+            creator.shutdown();
+        }
     }
 }
@@ -2,11 +2,29 @@ package se.kth.iv1350.pos.util;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.Locale;
 
 /**
  * Represents an immutable amount of money.
+ * <p>
+ * The static factories return shared instances for zero and for every
+ * amount from zero up to a bound, by default 100 kronor, so that common
+ * amounts allocate nothing once they have been used. The bound is given in
+ * öre by the system property <code>se.kth.iv1350.pos.cachedAmountOre</code>.
+ * Amounts are equal if their values are, whether shared or not.
  */
 public final class Amount {
+    /**
+     * The system property giving the number of öre values that are shared.
+     */
+    public static final String CACHED_ORE_PROPERTY = "se.kth.iv1350.pos.cachedAmountOre";
+
+    private static final int DEFAULT_CACHED_ORE = 100_00;
+    private static final int SCALE = 2;
+    private static final Amount[] CACHE = new Amount[Math.max(1, Integer.getInteger(CACHED_ORE_PROPERTY,
+                                                                                     DEFAULT_CACHED_ORE))];
+    private static final Amount ZERO = ofOre(0);
+
     private final BigDecimal value;
 
     /**
@@ -15,7 +33,7 @@ public final class Amount {
      * @param value The amount to represent
      */
     public Amount(BigDecimal value) {
-        this.value = value.setScale(2, RoundingMode.HALF_UP);
+        this.value = value.setScale(SCALE, RoundingMode.HALF_UP);
     }
 
     /**
@@ -31,7 +49,65 @@ public final class Amount {
      * Creates a new instance with zero value.
      */
     public Amount() {
-        this(0.0);
+        this(BigDecimal.ZERO);
+    }
+
+    /**
+     * Gets the shared zero amount.
+     *
+     * @return Zero
+     */
+    public static Amount zero() {
+        return ZERO;
+    }
+
+    /**
+     * Gets an amount given in öre, shared if it is a common amount.
+     *
+     * @param ore The amount in öre
+     * @return The amount
+     */
+    public static Amount ofOre(long ore) {
+        if (ore < 0 || ore >= CACHE.length) {
+            return new Amount(BigDecimal.valueOf(ore, SCALE));
+        }
+        Amount cached = CACHE[(int) ore];
+        if (cached == null) {
+            // Amounts are immutable, so a race at most creates the amount twice
+            cached = new Amount(BigDecimal.valueOf(ore, SCALE));
+            CACHE[(int) ore] = cached;
+        }
+        return cached;
+    }
+
+    /**
+     * Gets the specified amount, rounded half up to whole öre, shared if it
+     * is a common amount.
+     *
+     * @param value The amount
+     * @return The amount
+     */
+    public static Amount of(BigDecimal value) {
+        BigDecimal scaled = value.setScale(SCALE, RoundingMode.HALF_UP);
+        if (scaled.signum() < 0 || scaled.precision() > 18) {
+            return new Amount(scaled);
+        }
+        long ore = scaled.unscaledValue().longValue();
+        if (ore >= CACHE.length) {
+            return new Amount(scaled);
+        }
+        return ofOre(ore);
+    }
+
+    /**
+     * Gets the specified amount, rounded half up to whole öre, shared if it
+     * is a common amount.
+     *
+     * @param value The amount
+     * @return The amount
+     */
+    public static Amount of(double value) {
+        return of(BigDecimal.valueOf(value));
     }
 
     /**
@@ -41,7 +117,7 @@ public final class Amount {
      * @return The sum
      */
     public Amount add(Amount other) {
-        return new Amount(this.value.add(other.value));
+        return of(this.value.add(other.value));
     }
 
     /**
@@ -51,7 +127,17 @@ public final class Amount {
      * @return The difference
      */
     public Amount subtract(Amount other) {
-        return new Amount(this.value.subtract(other.value));
+        return of(this.value.subtract(other.value));
+    }
+
+    /**
+     * Multiplies this amount by a whole number, which is exact.
+     *
+     * @param factor The factor to multiply by
+     * @return The product
+     */
+    public Amount multiply(int factor) {
+        return of(this.value.multiply(BigDecimal.valueOf(factor)));
     }
 
     /**
@@ -61,7 +147,7 @@ public final class Amount {
      * @return The product
      */
     public Amount multiply(double factor) {
-        return new Amount(this.value.multiply(BigDecimal.valueOf(factor)));
+        return of(this.value.multiply(BigDecimal.valueOf(factor)));
     }
 
     /**
@@ -73,6 +159,16 @@ public final class Amount {
         return value;
     }
 
+    /**
+     * Gets this amount as a whole number of öre.
+     *
+     * @return The amount in öre
+     * @throws ArithmeticException if the amount does not fit in a long
+     */
+    public long toOre() {
+        return value.unscaledValue().longValueExact();
+    }
+
     /**
      * Checks if this amount is positive.
      *
@@ -84,7 +180,7 @@ public final class Amount {
 
     @Override
     public String toString() {
-        return String.format("%.2f SEK", value.doubleValue());
+        return MoneyFormatter.forLocale(Locale.getDefault(Locale.Category.FORMAT)).format(this) + " SEK";
     }
 
     @Override
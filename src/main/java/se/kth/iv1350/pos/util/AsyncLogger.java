@@ -0,0 +1,330 @@
+package se.kth.iv1350.pos.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes log messages on a dedicated writer thread, so that threads logging
+ * a message never wait for the console or the disk. Messages are buffered in
+ * a bounded queue and written in batches through one buffer. When the queue
+ * is full, a message is either dropped or the logging thread waits for room,
+ * depending on the overflow policy. Messages below the minimum level are
+ * discarded before they are queued.
+ * <p>
+ * The diagnostics of the whole program go to one shared logger appending to
+ * a log file, see {@link #diagnostics()}, so they never interleave with what
+ * the program shows on the console.
+ */
+public final class AsyncLogger {
+    private static final String LOG_FILE_PROPERTY = "pos.logFile";
+    private static final String DEFAULT_LOG_FILE = "pos.log";
+    private static final int DIAGNOSTICS_QUEUE_CAPACITY = 8192;
+    private static final int BATCH_SIZE = 256;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The importance of a log message.
+     */
+    public enum Level {
+        DEBUG(""), INFO(""), WARNING("Warning: ");
+
+        private final String prefix;
+
+        Level(String prefix) {
+            this.prefix = prefix;
+        }
+    }
+
+    /**
+     * What to do with a message when the queue is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * The message is dropped and counted, the logging thread does not wait.
+         */
+        DROP,
+        /**
+         * The logging thread waits for room in the queue, no message is lost.
+         */
+        BLOCK
+    }
+
+    private final BlockingQueue<Entry> entries;
+    private final WritableByteChannel channel;
+    private final OverflowPolicy overflowPolicy;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final AtomicLong droppedMessages = new AtomicLong();
+    private final Thread writer;
+    private volatile Level minimumLevel;
+    private long reportedDroppedMessages;
+
+    /**
+     * Creates a new logger writing to the specified channel.
+     *
+     * @param channel The channel to write to
+     * @param minimumLevel The lowest level of messages that are written
+     * @param capacity The maximum number of messages waiting to be written
+     * @param overflowPolicy What to do with a message when the queue is full
+     */
+    public AsyncLogger(WritableByteChannel channel, Level minimumLevel, int capacity,
+                       OverflowPolicy overflowPolicy) {
+        this.channel = channel;
+        this.minimumLevel = minimumLevel;
+        this.overflowPolicy = overflowPolicy;
+        this.entries = new ArrayBlockingQueue<>(capacity);
+        writer = new Thread(this::writeEntries, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Creates a new logger appending to the specified file.
+     *
+     * @param file The log file, created if it does not exist
+     * @param minimumLevel The lowest level of messages that are written
+     * @param capacity The maximum number of messages waiting to be written
+     * @param overflowPolicy What to do with a message when the queue is full
+     * @return The new logger
+     * @throws IOException if the file could not be opened
+     */
+    public static AsyncLogger toFile(Path file, Level minimumLevel, int capacity,
+                                     OverflowPolicy overflowPolicy) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                               StandardOpenOption.APPEND);
+        return new AsyncLogger(channel, minimumLevel, capacity, overflowPolicy);
+    }
+
+    /**
+     * Gets the logger shared by the whole program for diagnostics, which
+     * appends to the file given by {@link #diagnosticsFile()}. It never drops
+     * messages. If the file cannot be opened, messages are written to
+     * <code>System.err</code> instead.
+     *
+     * @return The diagnostics logger
+     */
+    public static AsyncLogger diagnostics() {
+        return DiagnosticsHolder.DIAGNOSTICS;
+    }
+
+    /**
+     * Gets the file the diagnostics logger appends to. It is named by the
+     * system property <code>pos.logFile</code>, and is <code>pos.log</code>
+     * in the working directory by default.
+     *
+     * @return The diagnostics log file
+     */
+    public static Path diagnosticsFile() {
+        return Path.of(System.getProperty(LOG_FILE_PROPERTY, DEFAULT_LOG_FILE));
+    }
+
+    /**
+     * Sets the lowest level of messages that are written from now on.
+     *
+     * @param minimumLevel The new minimum level
+     */
+    public void setMinimumLevel(Level minimumLevel) {
+        this.minimumLevel = minimumLevel;
+    }
+
+    /**
+     * Checks if messages of the specified level are written, which lets
+     * callers skip building messages that would be discarded.
+     *
+     * @param level The level to check
+     * @return true if messages of the level are written
+     */
+    public boolean isEnabled(Level level) {
+        return level.compareTo(minimumLevel) >= 0;
+    }
+
+    /**
+     * Logs a message of the specified level.
+     *
+     * @param level The level of the message
+     * @param message The message, written on a line of its own
+     */
+    public void log(Level level, String message) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        enqueue(new Entry(level, message, null));
+    }
+
+    /**
+     * Logs a debug message.
+     *
+     * @param message The message
+     */
+    public void debug(String message) {
+        log(Level.DEBUG, message);
+    }
+
+    /**
+     * Logs an informational message.
+     *
+     * @param message The message
+     */
+    public void info(String message) {
+        log(Level.INFO, message);
+    }
+
+    /**
+     * Logs a warning, which is written with a <code>Warning: </code> prefix.
+     *
+     * @param message The message
+     */
+    public void warning(String message) {
+        log(Level.WARNING, message);
+    }
+
+    /**
+     * Waits until all messages logged before this call have been written.
+     */
+    public void flush() {
+        CountDownLatch written = new CountDownLatch(1);
+        try {
+            entries.put(new Entry(null, null, written));
+            written.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the number of messages dropped because the queue was full.
+     *
+     * @return The number of dropped messages
+     */
+    public long getDroppedMessageCount() {
+        return droppedMessages.get();
+    }
+
+    /**
+     * Writes all messages logged so far, stops the writer thread and closes
+     * the channel. Messages logged afterwards are lost.
+     */
+    public void close() {
+        flush();
+        writer.interrupt();
+        try {
+            writer.join();
+            channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.err.println("Warning: Failed to close log: " + e.getMessage());
+        }
+    }
+
+    private void enqueue(Entry entry) {
+        if (overflowPolicy == OverflowPolicy.DROP) {
+            if (!entries.offer(entry)) {
+                droppedMessages.incrementAndGet();
+            }
+            return;
+        }
+        try {
+            entries.put(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeEntries() {
+        List<Entry> batch = new ArrayList<>(BATCH_SIZE);
+        try {
+            while (true) {
+                batch.add(entries.take());
+                entries.drainTo(batch, BATCH_SIZE - 1);
+                for (Entry entry : batch) {
+                    if (entry.written != null) {
+                        writeBuffer();
+                        entry.written.countDown();
+                    } else {
+                        append(entry.level.prefix + entry.message + System.lineSeparator());
+                    }
+                }
+                reportDroppedMessages();
+                writeBuffer();
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // Logger closed
+        }
+    }
+
+    private void reportDroppedMessages() {
+        long dropped = droppedMessages.get();
+        if (dropped != reportedDroppedMessages) {
+            append(Level.WARNING.prefix + (dropped - reportedDroppedMessages)
+                   + " log messages were dropped" + System.lineSeparator());
+            reportedDroppedMessages = dropped;
+        }
+    }
+
+    private void append(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > buffer.remaining()) {
+            writeBuffer();
+        }
+        if (bytes.length > buffer.capacity()) {
+            write(ByteBuffer.wrap(bytes));
+        } else {
+            buffer.put(bytes);
+        }
+    }
+
+    private void writeBuffer() {
+        buffer.flip();
+        write(buffer);
+        buffer.clear();
+    }
+
+    private void write(ByteBuffer bytes) {
+        try {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        } catch (IOException e) {
+            System.err.println("Warning: Failed to write log: " + e.getMessage());
+        }
+    }
+
+    private static final class Entry {
+        private final Level level;
+        private final String message;
+        private final CountDownLatch written;
+
+        private Entry(Level level, String message, CountDownLatch written) {
+            this.level = level;
+            this.message = message;
+            this.written = written;
+        }
+    }
+
+    private static final class DiagnosticsHolder {
+        private static final AsyncLogger DIAGNOSTICS = openDiagnostics();
+
+        private static AsyncLogger openDiagnostics() {
+            try {
+                return toFile(diagnosticsFile(), Level.INFO, DIAGNOSTICS_QUEUE_CAPACITY, OverflowPolicy.BLOCK);
+            } catch (IOException e) {
+                System.err.println("Warning: Failed to open log file, logging to the console: " + e.getMessage());
+                return new AsyncLogger(Channels.newChannel(System.err), Level.INFO,
+                                       DIAGNOSTICS_QUEUE_CAPACITY, OverflowPolicy.BLOCK);
+            }
+        }
+    }
+}
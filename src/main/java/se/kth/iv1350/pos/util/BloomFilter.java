@@ -0,0 +1,112 @@
+package se.kth.iv1350.pos.util;
+
+import java.util.Collection;
+
+/**
+ * Compact probabilistic set of strings. A negative answer from
+ * {@link #mightContain(String)} is always correct, a positive answer is
+ * wrong with roughly the configured false-positive probability.
+ * Instances are immutable once created and can be shared between threads.
+ */
+public final class BloomFilter {
+    private static final double LN2 = Math.log(2);
+
+    private final long[] bits;
+    private final int bitCount;
+    private final int hashCount;
+    private final int elementCount;
+
+    private BloomFilter(int bitCount, int hashCount, int elementCount) {
+        this.bits = new long[(bitCount + 63) >>> 6];
+        this.bitCount = bitCount;
+        this.hashCount = hashCount;
+        this.elementCount = elementCount;
+    }
+
+    /**
+     * Creates a filter containing all the specified keys, sized for the
+     * specified false-positive probability.
+     *
+     * @param keys The keys the filter shall contain
+     * @param falsePositiveRate The wanted false-positive probability, between 0 and 1
+     * @return A filter containing all the keys
+     */
+    public static BloomFilter of(Collection<String> keys, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False-positive rate must be between 0 and 1: "
+                    + falsePositiveRate);
+        }
+        int expected = Math.max(1, keys.size());
+        int bitCount = (int) Math.max(64, Math.ceil(-expected * Math.log(falsePositiveRate) / (LN2 * LN2)));
+        int hashCount = (int) Math.max(1, Math.round((double) bitCount / expected * LN2));
+
+        BloomFilter filter = new BloomFilter(bitCount, hashCount, keys.size());
+        for (String key : keys) {
+            filter.put(key);
+        }
+        return filter;
+    }
+
+    /**
+     * Checks if the specified key may be contained in this filter.
+     *
+     * @param key The key to check
+     * @return false if the key is certainly not contained, true if it probably is
+     */
+    public boolean mightContain(String key) {
+        long hash = hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the false-positive probability expected from the size of this
+     * filter and the number of keys it holds.
+     *
+     * @return The expected false-positive probability
+     */
+    public double expectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashCount * elementCount / bitCount), hashCount);
+    }
+
+    /**
+     * Gets the number of bits used by this filter.
+     *
+     * @return The size of the filter in bits
+     */
+    public int getBitCount() {
+        return bitCount;
+    }
+
+    private void put(String key) {
+        long hash = hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private static long hash64(String key) {
+        // FNV-1a over the chars, finished with the murmur3 mixing step
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,120 @@
+package se.kth.iv1350.pos.util;
+
+import java.util.stream.Collector;
+
+/**
+ * Sums amounts of money as a whole number of öre, without creating an
+ * <code>Amount</code> for every step. The sum is turned into an
+ * <code>Amount</code> once, at the end. An accumulator is mutable and not
+ * thread safe, so it is meant to be used by one thread and not handed out.
+ * Parallel sums use one accumulator per thread and {@link #combine combine}
+ * them, as done by {@link #summing()}.
+ * <p>
+ * A sum too large for a <code>long</code> of öre throws
+ * <code>ArithmeticException</code> instead of overflowing.
+ */
+public final class MoneyAccumulator {
+    private long ore;
+
+    /**
+     * Creates a new accumulator holding zero.
+     */
+    public MoneyAccumulator() {
+    }
+
+    /**
+     * Adds an amount.
+     *
+     * @param amount The amount to add
+     * @return This accumulator
+     */
+    public MoneyAccumulator add(Amount amount) {
+        return addOre(amount.toOre());
+    }
+
+    /**
+     * Adds an amount given in öre.
+     *
+     * @param amount The amount to add, in öre
+     * @return This accumulator
+     */
+    public MoneyAccumulator addOre(long amount) {
+        ore = Math.addExact(ore, amount);
+        return this;
+    }
+
+    /**
+     * Adds the price of the specified quantity of an item.
+     *
+     * @param price The price of one unit
+     * @param quantity The number of units
+     * @return This accumulator
+     */
+    public MoneyAccumulator addProduct(Amount price, int quantity) {
+        return addOre(Math.multiplyExact(price.toOre(), quantity));
+    }
+
+    /**
+     * Adds the VAT on the specified quantity of an item, rounded once for
+     * all units, the way the VAT of a sale line is rounded.
+     *
+     * @param price The price of one unit, excluding VAT
+     * @param rate The VAT rate of the item
+     * @param quantity The number of units
+     * @return This accumulator
+     */
+    public MoneyAccumulator addVat(Amount price, VatRate rate, int quantity) {
+        return addOre(rate.vatOnOre(Math.multiplyExact(price.toOre(), quantity)));
+    }
+
+    /**
+     * Adds the sum of another accumulator, which is left unchanged.
+     *
+     * @param other The accumulator to add
+     * @return This accumulator
+     */
+    public MoneyAccumulator combine(MoneyAccumulator other) {
+        return addOre(other.ore);
+    }
+
+    /**
+     * Sets the sum back to zero, so that the accumulator can be reused.
+     */
+    public void reset() {
+        ore = 0;
+    }
+
+    /**
+     * Gets the sum in öre.
+     *
+     * @return The sum, in öre
+     */
+    public long getOre() {
+        return ore;
+    }
+
+    /**
+     * Gets the sum as an amount.
+     *
+     * @return The sum
+     */
+    public Amount toAmount() {
+        return Amount.ofOre(ore);
+    }
+
+    /**
+     * Gets a collector summing amounts, which can be used with parallel
+     * streams.
+     *
+     * @return A collector giving the sum of the amounts
+     */
+    public static Collector<Amount, MoneyAccumulator, Amount> summing() {
+        return Collector.of(MoneyAccumulator::new, MoneyAccumulator::add, MoneyAccumulator::combine,
+                            MoneyAccumulator::toAmount, Collector.Characteristics.UNORDERED);
+    }
+
+    @Override
+    public String toString() {
+        return toAmount().toString();
+    }
+}
@@ -0,0 +1,190 @@
+package se.kth.iv1350.pos.util;
+
+import java.nio.ByteBuffer;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Formats amounts of money as kronor and two decimals of öre, such as
+ * <code>12:50</code>, without thousands separators and without going through
+ * <code>double</code>. Digits are written straight into a
+ * <code>StringBuilder</code> or <code>ByteBuffer</code> supplied by the
+ * caller. Formatted strings of everyday amounts are cached, so formatting
+ * them again creates no objects.
+ * <p>
+ * Formatters are thread safe and shared, one for each decimal separator.
+ */
+public final class MoneyFormatter {
+    private static final int CACHE_SIZE = 10_000;
+    private static final Map<Character, MoneyFormatter> BY_SEPARATOR = new ConcurrentHashMap<>();
+    private static final Map<Locale, MoneyFormatter> BY_LOCALE = new ConcurrentHashMap<>();
+
+    /**
+     * The formatter used on receipts and the display, which separates kronor
+     * and öre with a colon.
+     */
+    public static final MoneyFormatter RECEIPT = withSeparator(':');
+
+    private final char decimalSeparator;
+    private final String[] smallAmounts = new String[CACHE_SIZE];
+    private final String[] wholeKronor = new String[CACHE_SIZE];
+
+    private MoneyFormatter(char decimalSeparator) {
+        this.decimalSeparator = decimalSeparator;
+    }
+
+    /**
+     * Gets the formatter using the specified decimal separator.
+     *
+     * @param decimalSeparator The character between kronor and öre
+     * @return The formatter
+     */
+    public static MoneyFormatter withSeparator(char decimalSeparator) {
+        return BY_SEPARATOR.computeIfAbsent(decimalSeparator, MoneyFormatter::new);
+    }
+
+    /**
+     * Gets the formatter using the decimal separator of the specified locale.
+     *
+     * @param locale The locale
+     * @return The formatter
+     */
+    public static MoneyFormatter forLocale(Locale locale) {
+        return BY_LOCALE.computeIfAbsent(locale,
+                key -> withSeparator(DecimalFormatSymbols.getInstance(key).getDecimalSeparator()));
+    }
+
+    /**
+     * Gets the decimal separator of this formatter.
+     *
+     * @return The character between kronor and öre
+     */
+    public char getDecimalSeparator() {
+        return decimalSeparator;
+    }
+
+    /**
+     * Formats an amount.
+     *
+     * @param amount The amount to format
+     * @return The formatted amount, for example <code>12:50</code>
+     */
+    public String format(Amount amount) {
+        if (!fitsInLong(amount)) {
+            return amount.getValue().toPlainString().replace('.', decimalSeparator);
+        }
+        return format(amount.toOre());
+    }
+
+    /**
+     * Formats an amount given in öre. Amounts below 100 kronor, and whole
+     * kronor below 10 000, which covers most prices and payments, are only
+     * formatted the first time.
+     *
+     * @param ore The amount in öre
+     * @return The formatted amount, for example <code>12:50</code>
+     */
+    public String format(long ore) {
+        String[] cache;
+        int index;
+        if (ore >= 0 && ore < CACHE_SIZE) {
+            cache = smallAmounts;
+            index = (int) ore;
+        } else if (ore >= 0 && ore < CACHE_SIZE * 100L && ore % 100 == 0) {
+            cache = wholeKronor;
+            index = (int) (ore / 100);
+        } else {
+            return appendTo(new StringBuilder(24), ore).toString();
+        }
+        String formatted = cache[index];
+        if (formatted == null) {
+            // Strings are immutable, so a race at most formats the amount twice
+            formatted = appendTo(new StringBuilder(12), ore).toString();
+            cache[index] = formatted;
+        }
+        return formatted;
+    }
+
+    /**
+     * Appends a formatted amount to the specified builder.
+     *
+     * @param builder The builder to append to
+     * @param amount The amount to format
+     * @return The builder
+     */
+    public StringBuilder appendTo(StringBuilder builder, Amount amount) {
+        if (!fitsInLong(amount)) {
+            return builder.append(format(amount));
+        }
+        return appendTo(builder, amount.toOre());
+    }
+
+    /**
+     * Appends a formatted amount given in öre to the specified builder.
+     *
+     * @param builder The builder to append to
+     * @param ore The amount in öre
+     * @return The builder
+     */
+    public StringBuilder appendTo(StringBuilder builder, long ore) {
+        if (ore < 0) {
+            builder.append('-');
+        }
+        long fraction = Math.abs(ore % 100);
+        return builder.append(Math.abs(ore / 100))
+                      .append(decimalSeparator)
+                      .append((char) ('0' + fraction / 10))
+                      .append((char) ('0' + fraction % 10));
+    }
+
+    /**
+     * Writes a formatted amount given in öre as ASCII into the specified
+     * buffer. A separator outside ASCII is written as <code>?</code>.
+     *
+     * @param buffer The buffer to write to
+     * @param ore The amount in öre
+     * @return The number of bytes written, which is {@link #width(long)}
+     * @throws java.nio.BufferOverflowException if the buffer is too small
+     */
+    public int writeTo(ByteBuffer buffer, long ore) {
+        int start = buffer.position();
+        if (ore < 0) {
+            buffer.put((byte) '-');
+        }
+        long kronor = Math.abs(ore / 100);
+        long divisor = 1;
+        while (kronor / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + kronor / divisor % 10));
+        }
+        long fraction = Math.abs(ore % 100);
+        buffer.put(decimalSeparator < 0x80 ? (byte) decimalSeparator : (byte) '?');
+        buffer.put((byte) ('0' + fraction / 10));
+        buffer.put((byte) ('0' + fraction % 10));
+        return buffer.position() - start;
+    }
+
+    /**
+     * Counts the characters of a formatted amount, for aligning columns.
+     *
+     * @param ore The amount in öre
+     * @return The number of characters
+     */
+    public static int width(long ore) {
+        int width = ore < 0 ? 4 : 3;
+        long kronor = Math.abs(ore / 100);
+        do {
+            width++;
+            kronor /= 10;
+        } while (kronor > 0);
+        return width;
+    }
+
+    private static boolean fitsInLong(Amount amount) {
+        return amount.getValue().unscaledValue().bitLength() < Long.SIZE;
+    }
+}
@@ -0,0 +1,158 @@
+package se.kth.iv1350.pos.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Represents an immutable VAT rate, held exactly as a whole number of basis
+ * points, where 10 000 basis points is 100%. VAT is calculated with integer
+ * arithmetic on whole öre and rounded once, half up, to whole öre, so
+ * amounts never pass through <code>double</code>.
+ */
+public final class VatRate implements Comparable<VatRate> {
+    private static final int BASIS_POINTS_PER_UNIT = 10_000;
+    private static final int BASIS_POINTS_PER_PERCENT = 100;
+    private static final VatRate[] SWEDISH_RATES = {
+        new VatRate(0), new VatRate(600), new VatRate(1200), new VatRate(2500)
+    };
+
+    private final int basisPoints;
+
+    private VatRate(int basisPoints) {
+        this.basisPoints = basisPoints;
+    }
+
+    /**
+     * Gets the VAT rate with the specified number of basis points.
+     *
+     * @param basisPoints The rate in basis points, for example 1200 for 12%
+     * @return The VAT rate
+     * @throws IllegalArgumentException if the rate is negative
+     */
+    public static VatRate ofBasisPoints(int basisPoints) {
+        if (basisPoints < 0) {
+            throw new IllegalArgumentException("VAT rate must not be negative: " + basisPoints);
+        }
+        for (VatRate rate : SWEDISH_RATES) {
+            if (rate.basisPoints == basisPoints) {
+                return rate;
+            }
+        }
+        return new VatRate(basisPoints);
+    }
+
+    /**
+     * Gets the VAT rate closest to the specified fraction, rounded to whole
+     * basis points.
+     *
+     * @param rate The rate as a fraction, for example 0.12 for 12%
+     * @return The VAT rate
+     * @throws IllegalArgumentException if the rate is negative
+     */
+    public static VatRate of(double rate) {
+        return ofBasisPoints((int) Math.round(rate * BASIS_POINTS_PER_UNIT));
+    }
+
+    /**
+     * Parses a VAT rate written as a decimal fraction, such as <code>0.12</code>,
+     * without going through <code>double</code>.
+     *
+     * @param rate The rate as a decimal fraction
+     * @return The VAT rate
+     * @throws NumberFormatException if the text is not a decimal number
+     * @throws IllegalArgumentException if the rate is negative
+     */
+    public static VatRate parse(String rate) {
+        return ofBasisPoints(new BigDecimal(rate).movePointRight(4).setScale(0, RoundingMode.HALF_UP)
+                                                 .intValueExact());
+    }
+
+    /**
+     * Gets this rate in basis points.
+     *
+     * @return The number of basis points
+     */
+    public int getBasisPoints() {
+        return basisPoints;
+    }
+
+    /**
+     * Gets this rate as an exact decimal fraction.
+     *
+     * @return The rate, for example 0.12 for 12%
+     */
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(basisPoints, 4).stripTrailingZeros();
+    }
+
+    /**
+     * Gets this rate as a fraction, for displays and formats that need a
+     * floating-point number. Not to be used for calculations.
+     *
+     * @return The rate, for example 0.12 for 12%
+     */
+    public double toDouble() {
+        return (double) basisPoints / BASIS_POINTS_PER_UNIT;
+    }
+
+    /**
+     * Calculates the VAT on a net amount given in öre.
+     *
+     * @param netOre The net amount in öre
+     * @return The VAT in öre, rounded half up
+     */
+    public long vatOnOre(long netOre) {
+        return roundBasisPointProduct(netOre * basisPoints);
+    }
+
+    /**
+     * Calculates the VAT on a net amount.
+     *
+     * @param net The net amount
+     * @return The VAT, rounded half up to whole öre
+     */
+    public Amount vatOn(Amount net) {
+        return Amount.ofOre(vatOnOre(net.toOre()));
+    }
+
+    /**
+     * Divides a sum of öre times basis points by 10 000, rounding half up,
+     * away from zero. Used to round a sum of exact VAT products once.
+     *
+     * @param oreTimesBasisPoints The exact VAT in units of 1/10 000 öre
+     * @return The VAT in whole öre
+     */
+    public static long roundBasisPointProduct(long oreTimesBasisPoints) {
+        long half = BASIS_POINTS_PER_UNIT / 2;
+        if (oreTimesBasisPoints >= 0) {
+            return (oreTimesBasisPoints + half) / BASIS_POINTS_PER_UNIT;
+        }
+        return -((-oreTimesBasisPoints + half) / BASIS_POINTS_PER_UNIT);
+    }
+
+    @Override
+    public int compareTo(VatRate other) {
+        return Integer.compare(basisPoints, other.basisPoints);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof VatRate)) {
+            return false;
+        }
+        return basisPoints == ((VatRate) obj).basisPoints;
+    }
+
+    @Override
+    public int hashCode() {
+        return basisPoints;
+    }
+
+    /**
+     * Formats this rate as a percentage, such as <code>12%</code> or <code>12.5%</code>.
+     */
+    @Override
+    public String toString() {
+        return BigDecimal.valueOf(basisPoints, 2).stripTrailingZeros().toPlainString() + "%";
+    }
+}
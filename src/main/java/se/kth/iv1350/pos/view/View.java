@@ -6,6 +6,7 @@ import se.kth.iv1350.pos.dto.ItemRegistrationDTO;
 import se.kth.iv1350.pos.dto.PaymentDTO;
 import se.kth.iv1350.pos.dto.SaleDTO;
 import se.kth.iv1350.pos.util.Amount;
+import se.kth.iv1350.pos.util.MoneyFormatter;
 
 /**
  * This class represents the view of the POS system.
@@ -62,7 +63,7 @@ public class View {
     }
 
     private void processPayment() {
-        Amount paymentAmount = new Amount(100);
+        Amount paymentAmount = Amount.of(100);
         printActionHeader("Customer pays " + paymentAmount + ":");
 
         PaymentDTO paymentResult = controller.processPayment(paymentAmount);
@@ -76,7 +77,10 @@ public class View {
     private void scanItem(String itemID, int quantity) {
         ItemRegistrationDTO result = controller.enterItem(itemID, quantity);
 
-        if (result != null) {
+        if (result != null && result.isOutOfStock()) {
+            System.out.println("Not enough units of item with ID " + itemID + " left in stock!");
+            System.out.println();
+        } else if (result != null) {
             displayItemInfo(result.item());
 
             if (result.isDuplicate()) {
@@ -94,7 +98,7 @@ public class View {
         System.out.println("Item ID : " + item.itemID());
         System.out.println("Item name : " + item.name());
         System.out.println("Item cost : " + formatAmount(item.price()) + " SEK");
-        System.out.println("VAT : " + (int)(item.vatRate() * 100) + "%");
+        System.out.println("VAT : " + item.vatRate());
         System.out.println("Item description : " + item.description());
         System.out.println();
     }
@@ -106,7 +110,7 @@ public class View {
     }
 
     private String formatAmount(Amount amount) {
-        return String.format("%.2f", amount.getValue().doubleValue()).replace('.', ':');
+        return MoneyFormatter.RECEIPT.format(amount);
     }
 
     private void printActionHeader(String action) {
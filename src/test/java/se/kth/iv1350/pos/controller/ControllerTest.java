@@ -3,27 +3,43 @@ package se.kth.iv1350.pos.controller;
 import static org.junit.Assert.*;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import se.kth.iv1350.pos.dto.BatchRegistrationDTO;
+import se.kth.iv1350.pos.dto.ItemEntryDTO;
 import se.kth.iv1350.pos.dto.ItemRegistrationDTO;
 import se.kth.iv1350.pos.dto.PaymentDTO;
 import se.kth.iv1350.pos.dto.SaleDTO;
+import se.kth.iv1350.pos.dto.SaleItemDTO;
+import se.kth.iv1350.pos.integration.InventorySystem;
 import se.kth.iv1350.pos.integration.RegistryCreator;
+import se.kth.iv1350.pos.model.VatRounding;
 import se.kth.iv1350.pos.util.Amount;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
 
 /**
  * Tests the Controller class, which coordinates all operations in the
  * Point-of-Sale system.
  */
 public class ControllerTest {
+    private RegistryCreator creator;
     private Controller controller;
 
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     /**
      * Sets up a new controller before each test.
      */
     @Before
     public void setUp() {
-        RegistryCreator creator = new RegistryCreator();
+        creator = new RegistryCreator();
         controller = new Controller(creator);
     }
 
@@ -32,6 +48,7 @@ public class ControllerTest {
      */
     @After
     public void tearDown() {
+        creator.shutdown();
         controller = null;
     }
 
@@ -98,6 +115,53 @@ public class ControllerTest {
                      0, expectedTotal.compareTo(actualTotal));
     }
 
+    /**
+     * Tests entering a batch of items, with a duplicate and an unknown item.
+     */
+    @Test
+    public void testEnterItems() {
+        controller.startNewSale();
+
+        BatchRegistrationDTO result = controller.enterItems(Arrays.asList(
+                new ItemEntryDTO("1", 1), new ItemEntryDTO("999", 1),
+                new ItemEntryDTO("2", 1), new ItemEntryDTO("1", 2)));
+
+        assertEquals("Duplicates should be merged", 2, result.enteredItems().size());
+        assertEquals("Merged quantity should be summed", 3, result.enteredItems().get(0).quantity());
+        assertEquals("Unknown item should be reported", Arrays.asList("999"), result.unknownItemIDs());
+        // Total should be 3 * 11.2 + 16.8 = 50.4
+        assertEquals("Running total should cover the whole batch",
+                     new Amount(50.4), result.runningTotal());
+        assertEquals("Sale should match the batch", result.runningTotal(), controller.endSale().totalWithVat());
+    }
+
+    /**
+     * Tests that the VAT of batch lines follows the VAT rounding of the sale.
+     */
+    @Test
+    public void testEnterItemsWithVatRoundedPerReceipt() {
+        controller.setVatRounding(VatRounding.PER_RECEIPT);
+        controller.startNewSale();
+
+        BatchRegistrationDTO result = controller.enterItems(Arrays.asList(
+                new ItemEntryDTO("1", 3), new ItemEntryDTO("2", 1)));
+
+        Amount lineVat = Amount.zero();
+        for (SaleItemDTO line : result.enteredItems()) {
+            lineVat = lineVat.add(line.vatAmount());
+        }
+        assertEquals("Line VAT should add up to the running VAT", result.runningVat(), lineVat);
+    }
+
+    /**
+     * Tests that a batch cannot be entered without an active sale.
+     */
+    @Test
+    public void testEnterItemsWithoutActiveSale() {
+        assertNull("Batch should be rejected without an active sale",
+                   controller.enterItems(Arrays.asList(new ItemEntryDTO("1", 1))));
+    }
+
     /**
      * Tests ending a sale and getting the final total.
      */
@@ -178,4 +242,156 @@ public class ControllerTest {
         PaymentDTO result = controller.processPayment(new Amount(100.0));
         assertNull("Result should be null when no sale has been started", result);
     }
+
+    /**
+     * Tests that scanned units are reserved against other lanes until the
+     * sale is abandoned.
+     */
+    @Test
+    public void testScannedItemsAreReserved() {
+        InventorySystem inventory = creator.getInventorySystem();
+        Controller otherLane = new Controller(creator);
+
+        controller.startNewSale();
+        controller.enterItem("5", 48);
+        assertFalse("Units scanned on one lane should not be available to others",
+                    inventory.isItemAvailable("5", 3));
+
+        otherLane.startNewSale();
+        otherLane.enterItem("5", 2);
+        assertFalse("No units should be left", inventory.isItemAvailable("5", 1));
+
+        controller.startNewSale();
+        assertTrue("Abandoned units should be released", inventory.isItemAvailable("5", 48));
+    }
+
+    /**
+     * Tests that two sales competing for the last unit cannot both get it.
+     */
+    @Test
+    public void testLastUnitIsSoldOnce() {
+        Controller otherLane = new Controller(creator);
+        controller.startNewSale();
+        otherLane.startNewSale();
+        controller.enterItem("5", 49);
+
+        ItemRegistrationDTO first = controller.enterItem("5", 1);
+        ItemRegistrationDTO second = otherLane.enterItem("5", 1);
+
+        assertFalse("First sale should get the last unit", first.isOutOfStock());
+        assertTrue("Second sale should be told the item is out of stock", second.isOutOfStock());
+        assertTrue("Unit should not be added to the second sale",
+                   otherLane.getCurrentSaleInfo().items().isEmpty());
+        assertEquals("Running total should not include the unit", Amount.zero(), second.runningTotal());
+
+        BatchRegistrationDTO batch = otherLane.enterItems(Arrays.asList(new ItemEntryDTO("5", 1),
+                                                                        new ItemEntryDTO("1", 1)));
+        assertEquals("Batch should report the item out of stock", Arrays.asList("5"), batch.outOfStockItemIDs());
+        assertEquals("Available items of the batch should be added", 1, batch.enteredItems().size());
+    }
+
+    /**
+     * Tests that paying a sale settles its reservations.
+     */
+    @Test
+    public void testPaymentSettlesReservations() {
+        InventorySystem inventory = creator.getInventorySystem();
+
+        controller.startNewSale();
+        controller.enterItem("5", 10);
+        controller.processPayment(new Amount(1000.0));
+        controller.startNewSale();
+
+        assertTrue("Remaining stock should be available", inventory.isItemAvailable("5", 40));
+        assertFalse("Sold units should not be available", inventory.isItemAvailable("5", 41));
+    }
+
+    /**
+     * Tests that a sale interrupted by a restart is resumed with its items.
+     */
+    @Test
+    public void testInterruptedSaleIsResumed() throws IOException {
+        Path dataDirectory = tempFolder.getRoot().toPath();
+        RegistryCreator firstRun = new RegistryCreator(dataDirectory);
+        Controller firstController = new Controller(firstRun);
+        firstController.startNewSale();
+        firstController.enterItem("1", 2);
+        firstController.enterItem("4", 1);
+        SaleDTO interrupted = firstController.getCurrentSaleInfo();
+        firstRun.shutdown();
+
+        RegistryCreator secondRun = new RegistryCreator(dataDirectory);
+        try {
+            Controller secondController = new Controller(secondRun);
+
+            assertTrue("Interrupted sale should be active", secondController.isSaleActive());
+            SaleDTO resumed = secondController.getCurrentSaleInfo();
+            assertEquals("Items should be resumed", interrupted.items().size(), resumed.items().size());
+            assertEquals("Total should be resumed", interrupted.totalWithVat(), resumed.totalWithVat());
+            assertFalse("Resumed units should be reserved again",
+                        secondRun.getInventorySystem().isItemAvailable("1", 49));
+        } finally {
+            secondRun.shutdown();
+        }
+    }
+
+    /**
+     * Tests that a paid sale is not resumed after a restart.
+     */
+    @Test
+    public void testPaidSaleIsNotResumed() throws IOException {
+        Path dataDirectory = tempFolder.getRoot().toPath();
+        RegistryCreator firstRun = new RegistryCreator(dataDirectory);
+        Controller firstController = new Controller(firstRun);
+        firstController.startNewSale();
+        firstController.enterItem("1", 1);
+        firstController.processPayment(new Amount(100));
+        firstRun.shutdown();
+
+        RegistryCreator secondRun = new RegistryCreator(dataDirectory);
+        try {
+            assertFalse("No sale should be active", new Controller(secondRun).isSaleActive());
+        } finally {
+            secondRun.shutdown();
+        }
+    }
+
+    /**
+     * Tests that sales at a lane reusing its sale object are independent.
+     */
+    @Test
+    public void testReusedSalesAreIndependent() {
+        Controller reusingController = new Controller(creator, true);
+        reusingController.startNewSale();
+        reusingController.enterItem("5", 2);
+        SaleDTO firstSale = reusingController.endSale();
+        reusingController.processPayment(new Amount(500));
+
+        reusingController.startNewSale();
+        reusingController.enterItem("1", 1);
+        SaleDTO secondSale = reusingController.endSale();
+
+        assertEquals("First sale DTO should keep its item", "5", firstSale.items().get(0).item().itemID());
+        assertEquals("First sale DTO should keep its quantity", 2, firstSale.items().get(0).quantity());
+        assertEquals("Second sale should only hold its own item", 1, secondSale.items().size());
+        assertEquals("Second sale should hold the new item", "1", secondSale.items().get(0).item().itemID());
+    }
+
+    /**
+     * Tests that a paid sale is exported as an e-receipt.
+     */
+    @Test
+    public void testPaidSaleIsExported() throws IOException {
+        RegistryCreator diskCreator = new RegistryCreator(tempFolder.getRoot().toPath());
+        Controller diskController = new Controller(diskCreator);
+        diskController.startNewSale();
+        diskController.enterItem("1", 1);
+        diskController.processPayment(new Amount(100));
+        diskCreator.shutdown();
+
+        Path outbox = tempFolder.getRoot().toPath().resolve("outbox");
+        try (Stream<Path> files = Files.list(outbox)) {
+            assertEquals("Receipt should be exported as JSON and PDF", 2, files.count());
+        }
+    }
 }
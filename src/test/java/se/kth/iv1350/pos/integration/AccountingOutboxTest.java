@@ -0,0 +1,215 @@
+package se.kth.iv1350.pos.integration;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import se.kth.iv1350.pos.dto.LedgerEntryDTO;
+import se.kth.iv1350.pos.util.Amount;
+
+/**
+ * Tests the AccountingOutbox class, which books sales in the ledger in the
+ * background without losing or duplicating them.
+ */
+public class AccountingOutboxTest {
+    private static final LocalDateTime SALE_TIME = LocalDateTime.of(2024, 5, 17, 14, 3);
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private SimulatedLedger ledger;
+    private Path outboxFile;
+    private AccountingOutbox outbox;
+
+    /**
+     * Sets up the test environment before each test.
+     */
+    @Before
+    public void setUp() throws IOException {
+        ledger = new SimulatedLedger();
+        outboxFile = tempFolder.getRoot().toPath().resolve("accounting-outbox.log");
+        outbox = open(outboxFile);
+    }
+
+    /**
+     * Cleans up the test environment after each test.
+     */
+    @After
+    public void tearDown() {
+        outbox.close(0);
+        outbox = null;
+        ledger = null;
+    }
+
+    /**
+     * Tests that pending sales are posted in batches.
+     */
+    @Test
+    public void testSalesArePostedInBatches() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            outbox.submit(entry("sale-" + i, 100));
+        }
+
+        assertEquals("All sales should be posted", 5, outbox.flush());
+        assertEquals("Sales should be posted two at a time", 3, ledger.getPostCount());
+        assertEquals("All sales should be booked", 5, ledger.getBookedEntryCount());
+        assertEquals("Nothing should be pending", 0, outbox.getPendingCount());
+        assertEquals("No sale should be pending after a restart", 0, reopenedCopy().getPendingCount());
+    }
+
+    /**
+     * Tests that a sale submitted again is ignored, whether pending or booked.
+     */
+    @Test
+    public void testDuplicateSaleIsIgnored() throws IOException {
+        assertTrue("First submission should be accepted", outbox.submit(entry("sale-1", 100)));
+        assertFalse("Pending sale should not be accepted again", outbox.submit(entry("sale-1", 100)));
+        outbox.flush();
+        assertFalse("Booked sale should not be accepted again", outbox.submit(entry("sale-1", 100)));
+
+        assertEquals("Sale should be booked once", new Amount(1.00), ledger.getBookedRevenue());
+    }
+
+    /**
+     * Tests that a booked sale is still refused after a restart.
+     */
+    @Test
+    public void testBookedSaleIsRefusedAfterRestart() throws IOException {
+        outbox.submit(entry("sale-1", 100));
+        outbox.flush();
+        outbox.close(0);
+
+        outbox = open(outboxFile);
+
+        assertFalse("Booked sale should not be accepted after a restart", outbox.submit(entry("sale-1", 100)));
+        assertTrue("New sale should be accepted", outbox.submit(entry("sale-2", 100)));
+    }
+
+    /**
+     * Tests that sales are kept during an outage and booked once the ledger
+     * is back.
+     */
+    @Test
+    public void testSalesAreKeptDuringOutage() throws IOException {
+        ledger.setAvailable(false);
+        outbox.submit(entry("sale-1", 100));
+        outbox.submit(entry("sale-2", 250));
+
+        try {
+            outbox.flush();
+            fail("Flush should fail while the ledger is down");
+        } catch (IOException expected) {
+            assertEquals("Sales should still be pending", 2, outbox.getPendingCount());
+        }
+
+        ledger.setAvailable(true);
+        outbox.flush();
+
+        assertEquals("Revenue should be booked after the outage", new Amount(3.50), ledger.getBookedRevenue());
+    }
+
+    /**
+     * Tests that pending sales survive a restart and are booked afterwards.
+     */
+    @Test
+    public void testPendingSalesSurviveRestart() throws IOException {
+        ledger.setAvailable(false);
+        outbox.submit(entry("sale-1", 100));
+        outbox.submit(entry("sale-2", 250));
+        outbox.close(0);
+
+        ledger.setAvailable(true);
+        outbox = open(outboxFile);
+
+        assertEquals("Pending sales should be recovered", 2, outbox.getPendingCount());
+        outbox.flush();
+        assertEquals("Recovered sales should be booked", new Amount(3.50), ledger.getBookedRevenue());
+    }
+
+    /**
+     * Tests that a sale posted just before a crash, but not acknowledged, is
+     * posted again after the restart without being booked twice.
+     */
+    @Test
+    public void testRepostedSaleIsNotBookedTwice() throws IOException {
+        outbox.submit(entry("sale-1", 100));
+        Path crashedFile = tempFolder.getRoot().toPath().resolve("crashed-outbox.log");
+        Files.copy(outboxFile, crashedFile);
+        outbox.flush();
+
+        AccountingOutbox restarted = open(crashedFile);
+        try {
+            assertEquals("Unacknowledged sale should be posted again", 1, restarted.flush());
+        } finally {
+            restarted.close(0);
+        }
+
+        assertEquals("Sale should be booked once", 1, ledger.getBookedEntryCount());
+        assertEquals("Repost should be recognized", 1, ledger.getDuplicateCount());
+        assertEquals("Revenue should not be duplicated", new Amount(1.00), ledger.getBookedRevenue());
+    }
+
+    /**
+     * Tests that the background flusher books sales once an outage is over.
+     */
+    @Test
+    public void testBackgroundFlusherRetries() throws InterruptedException {
+        ledger.setAvailable(false);
+        outbox.start();
+        outbox.submit(entry("sale-1", 100));
+        Thread.sleep(50);
+        ledger.setAvailable(true);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (outbox.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals("Sale should be booked after the outage", 1, ledger.getBookedEntryCount());
+    }
+
+    /**
+     * Tests that the retry delay doubles up to the maximum delay.
+     */
+    @Test
+    public void testBackoffMillis() {
+        assertEquals("First retry should wait the initial delay", 500, AccountingOutbox.backoffMillis(1, 500, 60_000));
+        assertEquals("Delay should double", 2000, AccountingOutbox.backoffMillis(3, 500, 60_000));
+        assertEquals("Delay should be capped", 60_000, AccountingOutbox.backoffMillis(10, 500, 60_000));
+        assertEquals("Many failures should not overflow", 60_000,
+                     AccountingOutbox.backoffMillis(Integer.MAX_VALUE, 500, 60_000));
+    }
+
+    /**
+     * Tests that an idempotency key that cannot be stored is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidKeyIsRejected() {
+        outbox.submit(entry("sale;1", 100));
+    }
+
+    private AccountingOutbox reopenedCopy() throws IOException {
+        Path copy = tempFolder.getRoot().toPath().resolve("copied-outbox.log");
+        Files.copy(outboxFile, copy);
+        AccountingOutbox reopened = open(copy);
+        reopened.close(0);
+        return reopened;
+    }
+
+    private AccountingOutbox open(Path file) throws IOException {
+        AccountingOutbox opened = new AccountingOutbox(file, ledger, 2, 10, 10, 40);
+        opened.recover();
+        return opened;
+    }
+
+    private static LedgerEntryDTO entry(String key, long totalWithVatOre) {
+        return new LedgerEntryDTO(key, Amount.ofOre(totalWithVatOre * 4 / 5), Amount.ofOre(totalWithVatOre / 5),
+                                  Amount.zero(), Amount.ofOre(totalWithVatOre), SALE_TIME);
+    }
+}
@@ -3,24 +3,32 @@ package se.kth.iv1350.pos.integration;
 import static org.junit.Assert.*;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
-import java.io.ByteArrayOutputStream;
-import java.io.PrintStream;
+import org.junit.rules.TemporaryFolder;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import se.kth.iv1350.pos.dto.ItemDTO;
 import se.kth.iv1350.pos.dto.SaleDTO;
 import se.kth.iv1350.pos.dto.SaleItemDTO;
 import se.kth.iv1350.pos.util.Amount;
+import se.kth.iv1350.pos.util.AsyncLogger;
 
 /**
  * Tests the AccountingSystem class, which contains calls to the external accounting system.
  */
 public class AccountingSystemTest {
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     private AccountingSystem accountingSystem;
-    private ByteArrayOutputStream outContent;
-    private PrintStream originalOut;
+    private long logStart;
     private SaleDTO saleDTO;
 
     /**
@@ -30,10 +38,8 @@ public class AccountingSystemTest {
     public void setUp() {
         accountingSystem = new AccountingSystem();
 
-        // Set up capture of System.out
-        originalOut = System.out;
-        outContent = new ByteArrayOutputStream();
-        System.setOut(new PrintStream(outContent));
+        // Only diagnostics logged by this test are checked
+        logStart = logSize();
 
         // Create a test sale
         ItemDTO itemDTO = new ItemDTO("1", "Test Item", "Test description", new Amount(50.0), 0.25);
@@ -58,9 +64,9 @@ public class AccountingSystemTest {
      */
     @After
     public void tearDown() {
+        accountingSystem.shutdown();
         accountingSystem = null;
         saleDTO = null;
-        System.setOut(originalOut);
     }
 
     /**
@@ -70,7 +76,7 @@ public class AccountingSystemTest {
     public void testRecordSale() {
         accountingSystem.recordSale(saleDTO);
 
-        String output = outContent.toString();
+        String output = capturedOutput();
         assertTrue("Sale recording should be logged",
                   output.contains("Sale recorded in accounting system"));
         assertTrue("Total amount should be logged",
@@ -87,7 +93,7 @@ public class AccountingSystemTest {
         Amount saleAmount = new Amount(125.0);
         accountingSystem.updateSalesStatistics(saleAmount);
 
-        String output = outContent.toString();
+        String output = capturedOutput();
         assertTrue("Statistics update should be logged",
                   output.contains("Sales statistics updated"));
         assertTrue("Sale amount should be logged",
@@ -110,7 +116,7 @@ public class AccountingSystemTest {
 
         accountingSystem.recordSale(zeroSale);
 
-        String output = outContent.toString();
+        String output = capturedOutput();
         assertTrue("Zero sale recording should be logged",
                   output.contains("Sale recorded in accounting system"));
     }
@@ -123,7 +129,7 @@ public class AccountingSystemTest {
         Amount zeroAmount = new Amount(0.0);
         accountingSystem.updateSalesStatistics(zeroAmount);
 
-        String output = outContent.toString();
+        String output = capturedOutput();
         assertTrue("Zero statistics update should be logged",
                   output.contains("Sales statistics updated"));
     }
@@ -134,17 +140,73 @@ public class AccountingSystemTest {
     @Test
     public void testBothOperationsInSequence() {
         // Clear output from previous tests
-        outContent.reset();
+        logStart = logSize();
 
         // Perform operations
         accountingSystem.recordSale(saleDTO);
         accountingSystem.updateSalesStatistics(saleDTO.totalWithVat());
 
         // Verify output
-        String output = outContent.toString();
+        String output = capturedOutput();
         assertTrue("Sale recording should be logged",
                   output.contains("Sale recorded in accounting system"));
         assertTrue("Statistics update should be logged",
                   output.contains("Sales statistics updated"));
     }
+
+    /**
+     * Tests that sold units are counted per item over all recorded sales.
+     */
+    @Test
+    public void testItemSalesFrequency() {
+        accountingSystem.recordSale(saleDTO);
+        accountingSystem.recordSale(saleDTO);
+
+        Map<String, Long> salesFrequency = accountingSystem.getItemSalesFrequency();
+        assertEquals("Sold units should be summed", Long.valueOf(4), salesFrequency.get("1"));
+        assertEquals("Only sold items should be counted", 1, salesFrequency.size());
+    }
+
+    /**
+     * Tests that a sale recorded twice with the same transaction identifier
+     * is booked and counted once.
+     */
+    @Test
+    public void testSaleWithSameTransactionIsRecordedOnce() throws IOException {
+        SimulatedLedger ledger = new SimulatedLedger();
+        accountingSystem.shutdown();
+        accountingSystem = new AccountingSystem(tempFolder.getRoot().toPath().resolve("outbox.log"), ledger);
+        SaleDTO identifiedSale = new SaleDTO(saleDTO.items(), saleDTO.total(), saleDTO.totalVat(),
+                                             saleDTO.discountAmount(), saleDTO.totalWithVat(),
+                                             saleDTO.saleTime(), "sale-1");
+
+        accountingSystem.recordSale(identifiedSale);
+        accountingSystem.recordSale(identifiedSale);
+        accountingSystem.shutdown();
+
+        assertEquals("Sold units should be counted once", Long.valueOf(2),
+                     accountingSystem.getItemSalesFrequency().get("1"));
+        assertEquals("Sale should be booked once", 1, ledger.getBookedEntryCount());
+        assertEquals("Revenue should be booked once", new Amount(125.0), ledger.getBookedRevenue());
+        assertEquals("Nothing should be left pending", 0, accountingSystem.getPendingSaleCount());
+    }
+
+    private String capturedOutput() {
+        AsyncLogger.diagnostics().flush();
+        try {
+            byte[] log = Files.readAllBytes(AsyncLogger.diagnosticsFile());
+            return new String(log, (int) logStart, log.length - (int) logStart, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long logSize() {
+        AsyncLogger.diagnostics().flush();
+        try {
+            return Files.size(AsyncLogger.diagnosticsFile());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
@@ -0,0 +1,223 @@
+package se.kth.iv1350.pos.integration;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import se.kth.iv1350.pos.dto.CacheStatisticsDTO;
+import se.kth.iv1350.pos.dto.ItemDTO;
+import se.kth.iv1350.pos.util.Amount;
+
+/**
+ * Tests the CachedCatalog class, which caches items fetched from a slow catalog backend.
+ */
+public class CachedCatalogTest {
+    private static final long TTL_MILLIS = 60_000;
+
+    private Map<String, ItemDTO> backendItems;
+    private SimulatedCatalogBackend backend;
+    private AtomicLong clock;
+    private CachedCatalog cachedCatalog;
+
+    /**
+     * Sets up the test environment before each test.
+     */
+    @Before
+    public void setUp() {
+        backendItems = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            String itemID = String.valueOf(i);
+            backendItems.put(itemID, new ItemDTO(itemID, "Item " + i, "Description " + i, new Amount(i), 0.25));
+        }
+        backend = new SimulatedCatalogBackend(backendItems, 0);
+        clock = new AtomicLong();
+        cachedCatalog = new CachedCatalog(backend, 1_000_000, TTL_MILLIS, clock::get);
+    }
+
+    /**
+     * Cleans up the test environment after each test.
+     */
+    @After
+    public void tearDown() {
+        cachedCatalog = null;
+        backend = null;
+        backendItems = null;
+    }
+
+    /**
+     * Tests that a second lookup of the same item is served by the cache.
+     */
+    @Test
+    public void testHitAfterMiss() {
+        ItemDTO first = cachedCatalog.findItem("1");
+        ItemDTO second = cachedCatalog.findItem("1");
+
+        assertEquals("Cached item should be returned", first, second);
+        assertEquals("Backend should be called once", 1, backend.getFetchCount());
+
+        CacheStatisticsDTO stats = cachedCatalog.getStatistics();
+        assertEquals("One hit should be counted", 1, stats.hits());
+        assertEquals("One miss should be counted", 1, stats.misses());
+        assertEquals("One entry should be cached", 1, stats.entryCount());
+    }
+
+    /**
+     * Tests that items unknown to the backend are not cached.
+     */
+    @Test
+    public void testUnknownItemIsNotCached() {
+        assertNull("Unknown item should not be found", cachedCatalog.findItem("unknown"));
+        assertEquals("Unknown item should not be cached", 0, cachedCatalog.getStatistics().entryCount());
+    }
+
+    /**
+     * Tests that cached items are fetched again once their time to live has passed.
+     */
+    @Test
+    public void testEntryExpires() {
+        cachedCatalog.findItem("1");
+        backend.updateItem(new ItemDTO("1", "Item 1", "Description 1", new Amount(99), 0.25));
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(TTL_MILLIS / 2));
+        assertEquals("Item should be cached before expiry", new Amount(1), cachedCatalog.findItem("1").price());
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(TTL_MILLIS));
+        assertEquals("New price should be fetched after expiry", new Amount(99), cachedCatalog.findItem("1").price());
+        assertEquals("Expiration should be counted", 1, cachedCatalog.getStatistics().expirations());
+    }
+
+    /**
+     * Tests that the cache stays within its weight bound.
+     */
+    @Test
+    public void testWeightIsBounded() {
+        CachedCatalog smallCache = new CachedCatalog(backend, 5_000, TTL_MILLIS, clock::get);
+        for (int i = 0; i < 1000; i++) {
+            smallCache.findItem(String.valueOf(i));
+        }
+
+        CacheStatisticsDTO stats = smallCache.getStatistics();
+        assertTrue("Weighted size should not exceed the bound: " + stats.weightedSize(),
+                   stats.weightedSize() <= 5_000);
+        assertTrue("Some entries should be cached", stats.entryCount() > 0);
+    }
+
+    /**
+     * Tests that frequently requested items are kept when many items are
+     * requested only once.
+     */
+    @Test
+    public void testFrequentItemsAreKept() {
+        CachedCatalog smallCache = new CachedCatalog(backend, 5_000, TTL_MILLIS, clock::get);
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 10; i++) {
+                smallCache.findItem(String.valueOf(i));
+            }
+        }
+        for (int i = 100; i < 1000; i++) {
+            smallCache.findItem(String.valueOf(i));
+        }
+
+        long fetchesBefore = backend.getFetchCount();
+        for (int i = 0; i < 10; i++) {
+            smallCache.findItem(String.valueOf(i));
+        }
+        assertEquals("Popular items should still be cached", fetchesBefore, backend.getFetchCount());
+        assertTrue("One-time items should be rejected", smallCache.getStatistics().rejections() > 0);
+    }
+
+    /**
+     * Tests that concurrent misses for the same item cause a single backend fetch.
+     */
+    @Test
+    public void testConcurrentMissesAreCoalesced() throws Exception {
+        SimulatedCatalogBackend slowBackend = new SimulatedCatalogBackend(backendItems, 200);
+        CachedCatalog slowCache = new CachedCatalog(slowBackend, 1_000_000, TTL_MILLIS);
+        int lanes = 10;
+        ExecutorService executor = Executors.newFixedThreadPool(lanes);
+        CountDownLatch start = new CountDownLatch(1);
+
+        try {
+            List<Future<ItemDTO>> results = new ArrayList<>();
+            for (int i = 0; i < lanes; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return slowCache.findItem("42");
+                }));
+            }
+            start.countDown();
+            for (Future<ItemDTO> result : results) {
+                assertEquals("Every lane should get the item", "42", result.get().itemID());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals("Backend should be called once", 1, slowBackend.getFetchCount());
+    }
+
+    /**
+     * Tests that lanes waiting for a failed fetch get the exception of the
+     * backend, not a wrapped one.
+     */
+    @Test
+    public void testCoalescedMissesGetBackendException() throws Exception {
+        CatalogBackend failingBackend = new CatalogBackend() {
+            @Override
+            public ItemDTO fetchItem(String itemID) {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException("Catalog is offline");
+            }
+
+            @Override
+            public Set<String> getItemIDs() {
+                return Collections.emptySet();
+            }
+        };
+        CachedCatalog failingCache = new CachedCatalog(failingBackend, 1_000_000, TTL_MILLIS);
+        int lanes = 10;
+        ExecutorService executor = Executors.newFixedThreadPool(lanes);
+        CountDownLatch start = new CountDownLatch(1);
+
+        try {
+            List<Future<ItemDTO>> results = new ArrayList<>();
+            for (int i = 0; i < lanes; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return failingCache.findItem("42");
+                }));
+            }
+            start.countDown();
+            for (Future<ItemDTO> result : results) {
+                try {
+                    result.get();
+                    fail("Lookup should fail");
+                } catch (ExecutionException e) {
+                    assertEquals("Every lane should get the backend exception",
+                                 IllegalStateException.class, e.getCause().getClass());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue("Some lanes should have waited for another fetch",
+                   failingCache.getStatistics().coalescedMisses() > 0);
+    }
+}
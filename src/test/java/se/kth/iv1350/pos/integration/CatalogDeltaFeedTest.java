@@ -0,0 +1,173 @@
+package se.kth.iv1350.pos.integration;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import se.kth.iv1350.pos.dto.ItemDTO;
+import se.kth.iv1350.pos.util.VatRate;
+
+/**
+ * Tests the CatalogDeltaFeed class, which applies incremental catalog changes
+ * from an append-only file.
+ */
+public class CatalogDeltaFeedTest {
+    private ItemRegistry itemRegistry;
+    private CatalogDeltaFeed feed;
+    private Path baseFile;
+    private Path deltaFile;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    /**
+     * Sets up the test environment before each test.
+     */
+    @Before
+    public void setUp() {
+        itemRegistry = new ItemRegistry();
+        baseFile = tempFolder.getRoot().toPath().resolve("catalog.txt");
+        deltaFile = tempFolder.getRoot().toPath().resolve("catalog-delta.log");
+        feed = new CatalogDeltaFeed(itemRegistry, baseFile, deltaFile, 100);
+    }
+
+    /**
+     * Cleans up the test environment after each test.
+     */
+    @After
+    public void tearDown() {
+        feed.stop();
+        feed = null;
+        itemRegistry = null;
+    }
+
+    /**
+     * Tests that all kinds of deltas are applied as one new catalog version.
+     */
+    @Test
+    public void testPollAppliesDeltas() throws IOException {
+        long versionBefore = itemRegistry.getCatalogVersion();
+        append("UPSERT;6;Loka Citron;33cl;9.90;0.12",
+               "DELETE;2",
+               "PRICE;1;11.50",
+               "VAT;4;0.12");
+
+        int applied = feed.poll();
+
+        assertEquals("All deltas should be applied", 4, applied);
+        assertEquals("Deltas should be published as one version",
+                     versionBefore + 1, itemRegistry.getCatalogVersion());
+        assertNotNull("Upserted item should be found", itemRegistry.findItem("6"));
+        assertNull("Deleted item should not be found", itemRegistry.findItem("2"));
+        assertEquals("Price should be changed", 0,
+                     new BigDecimal("11.50").compareTo(itemRegistry.findItem("1").price().getValue()));
+        assertEquals("VAT rate should be changed", VatRate.of(0.12), itemRegistry.findItem("4").vatRate());
+    }
+
+    /**
+     * Tests that only deltas appended since the previous poll are applied.
+     */
+    @Test
+    public void testPollIsIncremental() throws IOException {
+        append("PRICE;1;11.00");
+        feed.poll();
+        append("PRICE;3;25.00");
+
+        assertEquals("Only the new delta should be applied", 1, feed.poll());
+        assertEquals("Nothing new should be applied", 0, feed.poll());
+    }
+
+    /**
+     * Tests that a partially written last line is not applied until completed.
+     */
+    @Test
+    public void testIncompleteLineIsDeferred() throws IOException {
+        Files.write(deltaFile, "PRICE;1;11.00\nPRICE;3;2".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("Only the complete line should be applied", 1, feed.poll());
+
+        Files.write(deltaFile, "5.00\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        assertEquals("Completed line should be applied", 1, feed.poll());
+        assertEquals("Completed delta should be correct", 0,
+                     new BigDecimal("25.00").compareTo(itemRegistry.findItem("3").price().getValue()));
+    }
+
+    /**
+     * Tests that malformed deltas are skipped and counted.
+     */
+    @Test
+    public void testMalformedDeltaIsSkipped() throws IOException {
+        append("RENAME;1;Cornflakes", "PRICE;1;11.00");
+
+        assertEquals("Valid delta should be applied", 1, feed.poll());
+        assertEquals("Malformed delta should be counted", 1, feed.getRejectedDeltaCount());
+    }
+
+    /**
+     * Tests that reaching the compaction threshold writes a new base catalog
+     * that can be loaded into a fresh registry.
+     */
+    @Test
+    public void testCompaction() throws IOException {
+        CatalogDeltaFeed compactingFeed = new CatalogDeltaFeed(itemRegistry, baseFile, deltaFile, 2);
+        append("PRICE;1;11.00", "DELETE;5");
+
+        compactingFeed.poll();
+
+        assertTrue("Base catalog should be written", Files.exists(baseFile));
+        assertFalse("Applied deltas should no longer be read", Files.exists(deltaFile));
+
+        ItemRegistry restarted = new ItemRegistry();
+        restarted.reloadCatalog(baseFile);
+        ItemDTO item = restarted.findItem("1");
+        assertEquals("Compacted price should be loaded", 0,
+                     new BigDecimal("11.00").compareTo(item.price().getValue()));
+        assertNull("Compacted delete should be loaded", restarted.findItem("5"));
+    }
+
+    /**
+     * Tests that a delta appended by a producer that opened the delta file
+     * before compaction renamed it is applied and kept in the base catalog.
+     */
+    @Test
+    public void testAppendDuringCompactionIsNotLost() throws IOException {
+        append("PRICE;1;11.00");
+        feed.poll();
+
+        try (FileChannel producer = FileChannel.open(deltaFile, StandardOpenOption.WRITE,
+                                                     StandardOpenOption.APPEND)) {
+            feed.compact();
+            producer.write(ByteBuffer.wrap("PRICE;2;22.00\n".getBytes(StandardCharsets.UTF_8)));
+        }
+        append("DELETE;5");
+
+        assertEquals("Late and new deltas should be applied", 2, feed.poll());
+        assertEquals("Late delta should be applied", 0,
+                     new BigDecimal("22.00").compareTo(itemRegistry.findItem("2").price().getValue()));
+        assertNull("New delta should be applied", itemRegistry.findItem("5"));
+        feed.poll();
+
+        ItemRegistry restarted = new ItemRegistry();
+        restarted.reloadCatalog(baseFile);
+        assertEquals("Late delta should be compacted", 0,
+                     new BigDecimal("22.00").compareTo(restarted.findItem("2").price().getValue()));
+        assertEquals("Compacted price should be kept", 0,
+                     new BigDecimal("11.00").compareTo(restarted.findItem("1").price().getValue()));
+    }
+
+    private void append(String... lines) throws IOException {
+        Files.write(deltaFile, Arrays.asList(lines), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+}
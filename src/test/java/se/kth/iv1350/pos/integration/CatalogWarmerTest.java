@@ -0,0 +1,164 @@
+package se.kth.iv1350.pos.integration;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import se.kth.iv1350.pos.dto.CacheStatisticsDTO;
+import se.kth.iv1350.pos.dto.ItemDTO;
+import se.kth.iv1350.pos.util.Amount;
+
+/**
+ * Tests the CatalogWarmer class, which preloads the most sold items.
+ */
+public class CatalogWarmerTest {
+    private SimulatedCatalogBackend backend;
+    private ItemRegistry itemRegistry;
+    private CatalogWarmer warmer;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    /**
+     * Sets up the test environment before each test.
+     */
+    @Before
+    public void setUp() {
+        Map<String, ItemDTO> items = new HashMap<>();
+        for (int i = 0; i < 20; i++) {
+            String itemID = String.valueOf(i);
+            items.put(itemID, new ItemDTO(itemID, "Item " + i, "Description " + i, new Amount(10), 0.12));
+        }
+        backend = new SimulatedCatalogBackend(items, 20);
+        itemRegistry = new ItemRegistry(new CachedCatalog(backend, 1_000_000, 60_000));
+        warmer = new CatalogWarmer(itemRegistry, 4);
+    }
+
+    /**
+     * Cleans up the test environment after each test.
+     */
+    @After
+    public void tearDown() {
+        warmer = null;
+        itemRegistry = null;
+        backend = null;
+    }
+
+    /**
+     * Tests that the most sold items are selected, most sold first.
+     */
+    @Test
+    public void testSelectMostSold() {
+        Map<String, Long> salesFrequency = new HashMap<>();
+        salesFrequency.put("1", 5L);
+        salesFrequency.put("2", 50L);
+        salesFrequency.put("3", 1L);
+        salesFrequency.put("4", 20L);
+
+        assertEquals("Top items should be selected in order",
+                     Arrays.asList("2", "4"), CatalogWarmer.selectMostSold(salesFrequency, 2));
+    }
+
+    /**
+     * Tests that warmed up items are served without calling the backend.
+     */
+    @Test
+    public void testWarmUpPreloadsItems() throws InterruptedException {
+        Map<String, Long> salesFrequency = new HashMap<>();
+        for (int i = 0; i < 10; i++) {
+            salesFrequency.put(String.valueOf(i), (long) i);
+        }
+        salesFrequency.put("unknown", 100L);
+
+        int loaded = warmer.warmUp(salesFrequency, 8);
+
+        assertEquals("Known items among the top should be loaded", 7, loaded);
+        long fetchesAfterWarmUp = backend.getFetchCount();
+        itemRegistry.findItem("9");
+        itemRegistry.findItem("3");
+        assertEquals("Warm items should not be fetched again", fetchesAfterWarmUp, backend.getFetchCount());
+    }
+
+    /**
+     * Tests that warming up is not counted as lookups, and that the first
+     * real scan of a warm item is a cache hit.
+     */
+    @Test
+    public void testFirstScanAfterWarmUpIsHit() throws InterruptedException {
+        Map<String, Long> salesFrequency = new HashMap<>();
+        salesFrequency.put("5", 10L);
+        salesFrequency.put("6", 5L);
+
+        warmer.warmUp(salesFrequency, 2);
+
+        CacheStatisticsDTO warmStatistics = itemRegistry.getCacheStatistics();
+        assertEquals("Warm-up should not count as hits", 0, warmStatistics.hits());
+        assertEquals("Warm-up should not count as misses", 0, warmStatistics.misses());
+        assertEquals("Warm-up should not count as lookups", 0, itemRegistry.getItemFilterStatistics().lookups());
+
+        itemRegistry.findItem("5");
+        CacheStatisticsDTO scanStatistics = itemRegistry.getCacheStatistics();
+        assertEquals("First scan should be a hit", 1, scanStatistics.hits());
+        assertEquals("First scan should not be a miss", 0, scanStatistics.misses());
+    }
+
+    /**
+     * Tests that a registry without a remote catalog is not warmed up.
+     */
+    @Test
+    public void testLocalRegistryIsNotWarmedUp() throws InterruptedException {
+        CatalogWarmer localWarmer = new CatalogWarmer(new ItemRegistry(), 4);
+        Map<String, Long> salesFrequency = new HashMap<>();
+        salesFrequency.put("abc123", 10L);
+
+        assertEquals("Nothing should be loaded", 0, localWarmer.warmUp(salesFrequency, 10));
+    }
+
+    /**
+     * Tests that warming up with no sales history loads nothing.
+     */
+    @Test
+    public void testWarmUpWithoutHistory() throws InterruptedException {
+        assertEquals("Nothing should be loaded", 0, warmer.warmUp(new HashMap<>(), 10));
+        assertEquals("Backend should not be called", 0, backend.getFetchCount());
+    }
+
+    /**
+     * Tests that the hotness file keeps recent sales and decays older counts.
+     */
+    @Test
+    public void testUpdateHotnessFile() throws IOException {
+        Path hotnessFile = tempFolder.getRoot().toPath().resolve("hotness.txt");
+        Map<String, Long> firstDay = new HashMap<>();
+        firstDay.put("1", 40L);
+        firstDay.put("2", 1L);
+        CatalogWarmer.updateHotnessFile(hotnessFile, firstDay);
+
+        Map<String, Long> secondDay = new HashMap<>();
+        secondDay.put("3", 7L);
+        CatalogWarmer.updateHotnessFile(hotnessFile, secondDay);
+
+        Map<String, Long> stored = CatalogWarmer.readHotnessFile(hotnessFile);
+        assertEquals("Older count should be halved", Long.valueOf(20), stored.get("1"));
+        assertNull("Faded item should be dropped", stored.get("2"));
+        assertEquals("Recent count should be kept", Long.valueOf(7), stored.get("3"));
+    }
+
+    /**
+     * Tests that a missing hotness file gives no sales history.
+     */
+    @Test
+    public void testReadMissingHotnessFile() throws IOException {
+        Path hotnessFile = tempFolder.getRoot().toPath().resolve("missing.txt");
+
+        assertTrue("Missing file should give empty history",
+                   CatalogWarmer.readHotnessFile(hotnessFile).isEmpty());
+    }
+}
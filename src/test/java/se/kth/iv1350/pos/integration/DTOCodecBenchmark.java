@@ -0,0 +1,78 @@
+package se.kth.iv1350.pos.integration;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import se.kth.iv1350.pos.dto.ItemDTO;
+import se.kth.iv1350.pos.dto.SaleDTO;
+import se.kth.iv1350.pos.dto.SaleItemDTO;
+import se.kth.iv1350.pos.util.Amount;
+
+/**
+ * Measures the throughput of DTOCodec for a sale of ten lines. This is not
+ * run as part of the tests; start it with its main method.
+ */
+public class DTOCodecBenchmark {
+    private static final int WARM_UP_ROUNDS = 200_000;
+    private static final int MEASURED_ROUNDS = 1_000_000;
+
+    /**
+     * Runs the benchmark and prints the number of sales encoded and decoded per second.
+     *
+     * @param args Not used
+     */
+    public static void main(String[] args) {
+        SaleDTO sale = createSale();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(8192);
+
+        run(sale, buffer, WARM_UP_ROUNDS);
+        long encodeStart = System.nanoTime();
+        long checksum = encode(sale, buffer, MEASURED_ROUNDS);
+        long encodeNanos = System.nanoTime() - encodeStart;
+        long decodeStart = System.nanoTime();
+        checksum += decode(buffer, MEASURED_ROUNDS);
+        long decodeNanos = System.nanoTime() - decodeStart;
+
+        System.out.printf("Message size: %d bytes%n", buffer.limit());
+        System.out.printf("Encode: %.0f sales/s%n", MEASURED_ROUNDS * 1e9 / encodeNanos);
+        System.out.printf("Decode: %.0f sales/s%n", MEASURED_ROUNDS * 1e9 / decodeNanos);
+        System.out.println("Checksum: " + checksum);
+    }
+
+    private static void run(SaleDTO sale, ByteBuffer buffer, int rounds) {
+        encode(sale, buffer, rounds);
+        decode(buffer, rounds);
+    }
+
+    private static long encode(SaleDTO sale, ByteBuffer buffer, int rounds) {
+        long checksum = 0;
+        for (int i = 0; i < rounds; i++) {
+            buffer.clear();
+            DTOCodec.encode(sale, buffer);
+            checksum += buffer.position();
+        }
+        buffer.flip();
+        return checksum;
+    }
+
+    private static long decode(ByteBuffer buffer, int rounds) {
+        long checksum = 0;
+        for (int i = 0; i < rounds; i++) {
+            buffer.rewind();
+            checksum += DTOCodec.decodeSale(buffer).items().size();
+        }
+        return checksum;
+    }
+
+    private static SaleDTO createSale() {
+        List<SaleItemDTO> items = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            ItemDTO item = new ItemDTO(String.valueOf(i), "Item " + i, "Description of item " + i,
+                                       new Amount(10 + i), 0.12);
+            items.add(new SaleItemDTO(item, 2, new Amount(20 + 2 * i), new Amount(2.4), new Amount(22.4 + 2 * i)));
+        }
+        return new SaleDTO(items, new Amount(290), new Amount(24), new Amount(0), new Amount(314),
+                           LocalDateTime.now());
+    }
+}
@@ -0,0 +1,232 @@
+package se.kth.iv1350.pos.integration;
+
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import se.kth.iv1350.pos.dto.ItemDTO;
+import se.kth.iv1350.pos.dto.PaymentDTO;
+import se.kth.iv1350.pos.dto.ReceiptDTO;
+import se.kth.iv1350.pos.dto.SaleDTO;
+import se.kth.iv1350.pos.dto.SaleItemDTO;
+import se.kth.iv1350.pos.util.Amount;
+
+/**
+ * Tests the DTOCodec class, which encodes DTOs in a binary format.
+ */
+public class DTOCodecTest {
+    private ItemDTO item;
+    private SaleItemDTO saleItem;
+    private ByteBuffer buffer;
+
+    /**
+     * Sets up the test environment before each test.
+     */
+    @Before
+    public void setUp() {
+        item = new ItemDTO("1", "Kellogg's Cornflakes", "500g, whole grain", new Amount(10.0), 0.12);
+        saleItem = new SaleItemDTO(item, 3, new Amount(30), new Amount(3.6), new Amount(33.6));
+        buffer = ByteBuffer.allocate(4096);
+    }
+
+    /**
+     * Tests that an item survives a round trip.
+     */
+    @Test
+    public void testItemRoundTrip() {
+        DTOCodec.encode(item, buffer);
+        buffer.flip();
+
+        assertEquals("Item should be decoded unchanged", item, DTOCodec.decodeItem(buffer));
+        assertFalse("Whole message should be read", buffer.hasRemaining());
+    }
+
+    /**
+     * Tests that texts outside ASCII and null fields survive a round trip.
+     */
+    @Test
+    public void testNonAsciiAndNullRoundTrip() {
+        ItemDTO special = new ItemDTO("7", "Räksmörgås € 🥐", null, new Amount(-12.5), 0.25);
+
+        DTOCodec.encode(special, buffer);
+        buffer.flip();
+
+        assertEquals("Item should be decoded unchanged", special, DTOCodec.decodeItem(buffer));
+    }
+
+    /**
+     * Tests that a sale line survives a round trip.
+     */
+    @Test
+    public void testSaleItemRoundTrip() {
+        DTOCodec.encode(saleItem, buffer);
+        buffer.flip();
+
+        assertEquals("Sale line should be decoded unchanged", saleItem, DTOCodec.decodeSaleItem(buffer));
+    }
+
+    /**
+     * Tests that a sale survives a round trip, also in a direct buffer of
+     * little-endian byte order.
+     */
+    @Test
+    public void testSaleRoundTrip() {
+        SaleItemDTO otherItem = new SaleItemDTO(
+                new ItemDTO("5", "Fazer Chocolate", "200g", new Amount(75), 0.25),
+                1, new Amount(75), new Amount(18.75), new Amount(93.75));
+        SaleDTO sale = new SaleDTO(Arrays.asList(saleItem, otherItem), new Amount(105), new Amount(22.35),
+                                   new Amount(0), new Amount(127.35), LocalDateTime.of(2024, 5, 17, 14, 3, 9, 123));
+        ByteBuffer direct = ByteBuffer.allocateDirect(4096).order(ByteOrder.LITTLE_ENDIAN);
+
+        DTOCodec.encode(sale, direct);
+        direct.flip();
+
+        assertEquals("Sale should be decoded unchanged", sale, DTOCodec.decodeSale(direct));
+    }
+
+    /**
+     * Tests that a receipt survives a round trip.
+     */
+    @Test
+    public void testReceiptRoundTrip() {
+        ReceiptDTO receipt = new ReceiptDTO(Collections.singletonList(saleItem), new Amount(30), new Amount(3.6),
+                                            new Amount(50), new Amount(16.4), LocalDateTime.now());
+
+        DTOCodec.encode(receipt, buffer);
+        buffer.flip();
+
+        assertEquals("Receipt should be decoded unchanged", receipt, DTOCodec.decodeReceipt(buffer));
+    }
+
+    /**
+     * Tests that the sale identifier of a receipt survives a round trip, and
+     * that receipts of the first schema version are read without it.
+     */
+    @Test
+    public void testReceiptSaleIDAndOlderVersion() {
+        ReceiptDTO receipt = new ReceiptDTO(Collections.emptyList(), new Amount(30), new Amount(3.6),
+                                            new Amount(50), new Amount(16.4), LocalDateTime.now(), "sale-42");
+
+        DTOCodec.encode(receipt, buffer);
+        buffer.flip();
+        ByteBuffer versionOne = buffer.duplicate();
+        ReceiptDTO decoded = DTOCodec.decodeReceipt(buffer);
+        versionOne.put(1, (byte) 1);
+
+        assertEquals("Sale identifier should be decoded", "sale-42", decoded.saleID());
+        assertNull("Version 1 receipts have no sale identifier", DTOCodec.decodeReceipt(versionOne).saleID());
+    }
+
+    /**
+     * Tests that the transaction identifier of a sale is encoded, and that
+     * sales of older versions are decoded without one.
+     */
+    @Test
+    public void testSaleTransactionIDAndOlderVersion() {
+        SaleDTO sale = new SaleDTO(Collections.emptyList(), new Amount(30), new Amount(3.6),
+                                   new Amount(0), new Amount(33.6), LocalDateTime.now(), "sale-42");
+
+        DTOCodec.encode(sale, buffer);
+        buffer.flip();
+        ByteBuffer versionTwo = buffer.duplicate();
+        SaleDTO decoded = DTOCodec.decodeSale(buffer);
+        versionTwo.put(1, (byte) 2);
+
+        assertEquals("Transaction identifier should be decoded", "sale-42", decoded.transactionID());
+        assertNull("Version 2 sales have no transaction identifier", DTOCodec.decodeSale(versionTwo).transactionID());
+    }
+
+    /**
+     * Tests that VAT rates are written as basis points, and that items of
+     * older versions, with the VAT rate as a double, are still read.
+     */
+    @Test
+    public void testVatRateAndOlderVersion() {
+        DTOCodec.encode(item, buffer);
+        int vatPosition = buffer.position() - Integer.BYTES;
+        assertEquals("VAT rate should be written as basis points", 1200, buffer.getInt(vatPosition));
+
+        ByteBuffer versionThree = ByteBuffer.allocate(4096);
+        versionThree.put(buffer.array(), 0, vatPosition);
+        versionThree.put(1, (byte) 3);
+        versionThree.putDouble(0.12);
+        versionThree.flip();
+
+        assertEquals("Version 3 item should be decoded", item, DTOCodec.decodeItem(versionThree));
+        assertFalse("Whole message should be read", versionThree.hasRemaining());
+    }
+
+    /**
+     * Tests that a payment survives a round trip.
+     */
+    @Test
+    public void testPaymentRoundTrip() {
+        PaymentDTO payment = new PaymentDTO(new Amount(100), new Amount(12.75));
+
+        DTOCodec.encode(payment, buffer);
+        buffer.flip();
+
+        assertEquals("Payment should be decoded unchanged", payment, DTOCodec.decodePayment(buffer));
+    }
+
+    /**
+     * Tests that several messages can follow each other in one buffer.
+     */
+    @Test
+    public void testConsecutiveMessages() {
+        PaymentDTO payment = new PaymentDTO(new Amount(100), new Amount(0));
+        DTOCodec.encode(item, buffer);
+        DTOCodec.encode(payment, buffer);
+        buffer.flip();
+
+        assertEquals("First message should be read", item, DTOCodec.decodeItem(buffer));
+        assertEquals("Second message should be read", payment, DTOCodec.decodePayment(buffer));
+    }
+
+    /**
+     * Tests that a message of another type is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongMessageType() {
+        DTOCodec.encode(item, buffer);
+        buffer.flip();
+
+        DTOCodec.decodePayment(buffer);
+    }
+
+    /**
+     * Tests that a message of a newer schema version is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownSchemaVersion() {
+        DTOCodec.encode(item, buffer);
+        buffer.put(1, (byte) (DTOCodec.SCHEMA_VERSION + 1));
+        buffer.flip();
+
+        DTOCodec.decodeItem(buffer);
+    }
+
+    /**
+     * Tests that a message cut off anywhere is rejected as invalid.
+     */
+    @Test
+    public void testTruncatedMessage() {
+        SaleDTO sale = new SaleDTO(Arrays.asList(saleItem, saleItem), new Amount(60), new Amount(7.2),
+                                   new Amount(0), new Amount(67.2), LocalDateTime.now(), "sale-42");
+        DTOCodec.encode(sale, buffer);
+        int length = buffer.position();
+
+        for (int cut = 0; cut < length; cut++) {
+            ByteBuffer truncated = ByteBuffer.wrap(buffer.array(), 0, cut);
+            try {
+                DTOCodec.decodeSale(truncated);
+                fail("Sale cut after " + cut + " bytes should be rejected");
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package se.kth.iv1350.pos.integration;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import se.kth.iv1350.pos.dto.ItemDTO;
+import se.kth.iv1350.pos.dto.ReceiptDTO;
+import se.kth.iv1350.pos.dto.SaleItemDTO;
+import se.kth.iv1350.pos.util.Amount;
+
+/**
+ * Compares the memory allocated and the time taken to turn a receipt of ten
+ * lines into printer bytes, through the text receipt of Printer and through
+ * EscPosReceiptEncoder. This is not run as part of the tests; start it with
+ * its main method.
+ */
+public class EscPosReceiptEncoderBenchmark {
+    private static final int WARM_UP_ROUNDS = 100_000;
+    private static final int MEASURED_ROUNDS = 500_000;
+
+    /**
+     * Runs the benchmark and prints the bytes allocated per receipt and the
+     * number of receipts encoded per second for both paths.
+     *
+     * @param args Not used
+     */
+    public static void main(String[] args) {
+        ReceiptDTO receipt = createReceipt();
+        Printer printer = new Printer();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(4096);
+
+        encodeText(printer, receipt, WARM_UP_ROUNDS);
+        encodeEscPos(receipt, buffer, WARM_UP_ROUNDS);
+        measure("Text", () -> encodeText(printer, receipt, MEASURED_ROUNDS));
+        measure("ESC/POS", () -> encodeEscPos(receipt, buffer, MEASURED_ROUNDS));
+    }
+
+    private static void measure(String name, Round round) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        long checksum = round.run();
+        long nanos = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        System.out.printf("%s: %d bytes allocated per receipt, %.0f receipts/s (checksum %d)%n", name,
+                          allocated / MEASURED_ROUNDS, MEASURED_ROUNDS * 1e9 / nanos, checksum);
+    }
+
+    private static long encodeText(Printer printer, ReceiptDTO receipt, int rounds) {
+        long checksum = 0;
+        for (int i = 0; i < rounds; i++) {
+            checksum += printer.formatReceipt(receipt).getBytes(StandardCharsets.UTF_8).length;
+        }
+        return checksum;
+    }
+
+    private static long encodeEscPos(ReceiptDTO receipt, ByteBuffer buffer, int rounds) {
+        long checksum = 0;
+        for (int i = 0; i < rounds; i++) {
+            buffer.clear();
+            EscPosReceiptEncoder.encode(receipt, buffer);
+            checksum += buffer.position();
+        }
+        return checksum;
+    }
+
+    private static ReceiptDTO createReceipt() {
+        List<SaleItemDTO> items = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            ItemDTO item = new ItemDTO(String.valueOf(i), "Item " + i, "Description of item " + i,
+                                       new Amount(10 + i), 0.12);
+            items.add(new SaleItemDTO(item, 2, new Amount(20 + 2 * i), new Amount(2.4), new Amount(22.4 + 2 * i)));
+        }
+        return new ReceiptDTO(items, new Amount(290), new Amount(24), new Amount(400), new Amount(86),
+                              LocalDateTime.now(), "8c2f1a6e-3b7d-4c55-9a0e-5f4b2d1c7e90");
+    }
+
+    private interface Round {
+        long run();
+    }
+}
@@ -0,0 +1,131 @@
+package se.kth.iv1350.pos.integration;
+
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import se.kth.iv1350.pos.dto.ItemDTO;
+import se.kth.iv1350.pos.dto.ReceiptDTO;
+import se.kth.iv1350.pos.dto.SaleItemDTO;
+import se.kth.iv1350.pos.util.Amount;
+
+/**
+ * Tests the EscPosReceiptEncoder class, which encodes receipts as ESC/POS
+ * commands. The expected output of each receipt is kept as a hex dump in
+ * <code>src/test/resources/escpos</code>.
+ */
+public class EscPosReceiptEncoderTest {
+    private static final LocalDateTime SALE_TIME = LocalDateTime.of(2024, 3, 5, 9, 7, 30);
+
+    private ByteBuffer buffer;
+
+    /**
+     * Sets up the test environment before each test.
+     */
+    @Before
+    public void setUp() {
+        buffer = ByteBuffer.allocateDirect(4096);
+    }
+
+    /**
+     * Tests a receipt with several lines, Swedish letters and a sale barcode.
+     */
+    @Test
+    public void testReceiptWithItems() throws IOException {
+        ItemDTO sandwich = new ItemDTO("7", "Räksmörgås", "", new Amount(59.90), 0.12);
+        ItemDTO coffee = new ItemDTO("8", "Kaffe", "", new Amount(25), 0.12);
+        ReceiptDTO receipt = new ReceiptDTO(Arrays.asList(
+                new SaleItemDTO(sandwich, 2, new Amount(119.80), new Amount(14.38), new Amount(134.18)),
+                new SaleItemDTO(coffee, 1, new Amount(25), new Amount(3), new Amount(28))),
+                new Amount(144.80), new Amount(17.38), new Amount(200), new Amount(37.82), SALE_TIME, "SALE-0001");
+
+        assertMatchesGoldenFile("receipt-with-items.hex", receipt);
+    }
+
+    /**
+     * Tests a receipt without items and without a sale identifier, which is
+     * printed without a barcode.
+     */
+    @Test
+    public void testEmptyReceipt() throws IOException {
+        ReceiptDTO receipt = new ReceiptDTO(Collections.emptyList(), new Amount(0), new Amount(0),
+                                            new Amount(0), new Amount(0), SALE_TIME);
+
+        assertMatchesGoldenFile("empty-receipt.hex", receipt);
+    }
+
+    /**
+     * Tests that a name too long for the amount column still leaves a space
+     * before the amount.
+     */
+    @Test
+    public void testLongNameAndLargeAmount() throws IOException {
+        ItemDTO television = new ItemDTO("9", "Television 65 inch OLED with wall mount", "",
+                                         new Amount(24999), 0.25);
+        ReceiptDTO receipt = new ReceiptDTO(Collections.singletonList(
+                new SaleItemDTO(television, 1, new Amount(24999), new Amount(6249.75), new Amount(31248.75))),
+                new Amount(24999), new Amount(6249.75), new Amount(31250), new Amount(1.25), SALE_TIME, "S");
+
+        assertMatchesGoldenFile("long-name.hex", receipt);
+    }
+
+    /**
+     * Tests the commands framing a receipt.
+     */
+    @Test
+    public void testCommands() {
+        ReceiptDTO receipt = new ReceiptDTO(Collections.emptyList(), new Amount(0), new Amount(0),
+                                            new Amount(0), new Amount(0), SALE_TIME, "ABC");
+        byte[] encoded = encode(receipt);
+        String text = new String(encoded, StandardCharsets.ISO_8859_1);
+
+        assertEquals("Printer should be initialized first", "\u001B@", text.substring(0, 2));
+        assertTrue("Paper should be cut last", text.endsWith("\u001DVB\u0003"));
+        assertTrue("Total should be bold", text.contains("\u001BE\u0001Total :"));
+        assertTrue("Sale identifier should be a CODE128 barcode", text.contains("\u001DkI\u0005{BABC"));
+    }
+
+    private void assertMatchesGoldenFile(String name, ReceiptDTO receipt) throws IOException {
+        assertEquals("Encoded receipt should match " + name, readGoldenFile(name), toHex(encode(receipt)));
+    }
+
+    private byte[] encode(ReceiptDTO receipt) {
+        buffer.clear();
+        EscPosReceiptEncoder.encode(receipt, buffer);
+        buffer.flip();
+        byte[] encoded = new byte[buffer.remaining()];
+        buffer.get(encoded);
+        return encoded;
+    }
+
+    private static String readGoldenFile(String name) throws IOException {
+        try (InputStream in = EscPosReceiptEncoderTest.class.getResourceAsStream("/escpos/" + name)) {
+            assertNotNull("Golden file should exist: " + name, in);
+            List<String> lines = Arrays.asList(new String(in.readAllBytes(), StandardCharsets.US_ASCII)
+                                                       .split("\\R"));
+            return String.join("\n", lines).trim();
+        }
+    }
+
+    /**
+     * Formats bytes as lines of sixteen space-separated hex bytes, which is
+     * the format of the golden files.
+     */
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (int i = 0; i < bytes.length; i++) {
+            if (i > 0) {
+                hex.append(i % 16 == 0 ? '\n' : ' ');
+            }
+            hex.append(String.format("%02x", bytes[i]));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,177 @@
+package se.kth.iv1350.pos.integration;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * Tests the InventoryStore class, which persists inventory quantities with write-behind.
+ */
+public class InventoryStoreTest {
+    private Path checkpointFile;
+    private Path logFile;
+    private InventoryStore store;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    /**
+     * Sets up the test environment before each test.
+     */
+    @Before
+    public void setUp() throws IOException {
+        checkpointFile = tempFolder.getRoot().toPath().resolve("inventory.checkpoint");
+        logFile = tempFolder.getRoot().toPath().resolve("inventory.log");
+        store = new InventoryStore(checkpointFile, logFile, 100);
+        store.recover();
+    }
+
+    /**
+     * Cleans up the test environment after each test.
+     */
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+        store = null;
+    }
+
+    /**
+     * Tests that recording a change does not write to disk until flushed.
+     */
+    @Test
+    public void testRecordIsWrittenBehind() throws IOException {
+        store.recordQuantity("1", 49);
+
+        assertEquals("Nothing should be written before flush", 0, Files.size(logFile));
+        store.flush();
+        assertTrue("Change should be written at flush", Files.size(logFile) > 0);
+    }
+
+    /**
+     * Tests that the last recorded quantity of each item is recovered.
+     */
+    @Test
+    public void testRecoverFromLog() throws IOException {
+        store.recordQuantity("1", 49);
+        store.recordQuantity("1", 47);
+        store.recordQuantity("2", 10);
+        store.close();
+
+        store = reopen(100);
+        Map<String, Integer> recovered = store.recover();
+
+        assertEquals("Last quantity should be recovered", Integer.valueOf(47), recovered.get("1"));
+        assertEquals("Other item should be recovered", Integer.valueOf(10), recovered.get("2"));
+    }
+
+    /**
+     * Tests that a checkpoint replaces the log and is used at recovery.
+     */
+    @Test
+    public void testRecoverFromCheckpoint() throws IOException {
+        store.close();
+        store = reopen(2);
+        store.recover();
+        store.recordQuantity("1", 49);
+        store.recordQuantity("2", 30);
+        store.flush();
+        assertTrue("Checkpoint should be written", Files.exists(checkpointFile));
+        assertEquals("Log should be started over", 0, Files.size(logFile));
+
+        store.recordQuantity("1", 45);
+        store.close();
+        store = reopen(2);
+        Map<String, Integer> recovered = store.recover();
+
+        assertEquals("Logged quantity should override checkpoint", Integer.valueOf(45), recovered.get("1"));
+        assertEquals("Checkpointed quantity should be recovered", Integer.valueOf(30), recovered.get("2"));
+    }
+
+    /**
+     * Tests that log records already in the checkpoint are not replayed, as
+     * after a crash between writing a checkpoint and truncating the log.
+     */
+    @Test
+    public void testStaleLogRecordsAreSkipped() throws IOException {
+        store.close();
+        Files.write(checkpointFile, "5\n1;40\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(logFile, "5;1;41\n6;2;8\n".getBytes(StandardCharsets.UTF_8));
+
+        store = reopen(100);
+        Map<String, Integer> recovered = store.recover();
+
+        assertEquals("Record in checkpoint should be skipped", Integer.valueOf(40), recovered.get("1"));
+        assertEquals("Newer record should be replayed", Integer.valueOf(8), recovered.get("2"));
+    }
+
+    /**
+     * Tests that a torn record at the end of the log is ignored.
+     */
+    @Test
+    public void testTornRecordIsIgnored() throws IOException {
+        store.recordQuantity("1", 49);
+        store.close();
+        Files.write(logFile, "2;1".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        store = reopen(100);
+        Map<String, Integer> recovered = store.recover();
+
+        assertEquals("Complete record should be recovered", Integer.valueOf(49), recovered.get("1"));
+    }
+
+    /**
+     * Tests that changes whose write failed are written by the next flush.
+     * The write is made to fail by interrupting the flushing thread, which
+     * closes the log channel.
+     */
+    @Test
+    public void testFailedWriteIsRetried() throws IOException {
+        store.recordQuantity("1", 49);
+        Thread.currentThread().interrupt();
+        try {
+            store.flush();
+            fail("Flush should fail when the write is interrupted");
+        } catch (IOException expected) {
+            // The batch shall be kept
+        } finally {
+            Thread.interrupted();
+        }
+
+        store.recordQuantity("2", 30);
+        store.flush();
+        store.close();
+        store = reopen(100);
+        Map<String, Integer> recovered = store.recover();
+
+        assertEquals("Change of the failed write should be recovered", Integer.valueOf(49), recovered.get("1"));
+        assertEquals("Later change should be recovered", Integer.valueOf(30), recovered.get("2"));
+    }
+
+    /**
+     * Tests that the background flusher writes recorded changes.
+     */
+    @Test
+    public void testBackgroundFlush() throws Exception {
+        store.start(10);
+        store.recordQuantity("3", 12);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (Files.size(logFile) == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue("Change should be flushed in the background", Files.size(logFile) > 0);
+    }
+
+    private InventoryStore reopen(int checkpointThreshold) {
+        return new InventoryStore(checkpointFile, logFile, checkpointThreshold);
+    }
+}
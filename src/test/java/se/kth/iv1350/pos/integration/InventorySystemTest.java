@@ -4,13 +4,21 @@ import static org.junit.Assert.*;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
-import java.io.ByteArrayOutputStream;
-import java.io.PrintStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import se.kth.iv1350.pos.dto.InventoryEventDTO;
 import se.kth.iv1350.pos.dto.ItemDTO;
 import se.kth.iv1350.pos.model.SaleLineItem;
 import se.kth.iv1350.pos.util.Amount;
+import se.kth.iv1350.pos.util.AsyncLogger;
 
 /**
  * Tests the InventorySystem class, which is responsible for inventory management.
@@ -19,8 +27,7 @@ public class InventorySystemTest {
     private InventorySystem inventorySystem;
     private ItemRegistry itemRegistry;
     private List<SaleLineItem> testItems;
-    private ByteArrayOutputStream outContent;
-    private PrintStream originalOut;
+    private long logStart;
 
     /**
      * Sets up the test environment before each test.
@@ -38,10 +45,8 @@ public class InventorySystemTest {
         testItems.add(new SaleLineItem(itemDTO1, 2));
         testItems.add(new SaleLineItem(itemDTO2, 3));
 
-        // Set up capture of System.out
-        originalOut = System.out;
-        outContent = new ByteArrayOutputStream();
-        System.setOut(new PrintStream(outContent));
+        // Only diagnostics logged by this test are checked
+        logStart = logSize();
     }
 
     /**
@@ -49,10 +54,10 @@ public class InventorySystemTest {
      */
     @After
     public void tearDown() {
+        inventorySystem.shutdown();
         inventorySystem = null;
         itemRegistry = null;
         testItems = null;
-        System.setOut(originalOut);
     }
 
     /**
@@ -65,7 +70,7 @@ public class InventorySystemTest {
         assertTrue("Inventory update should succeed with valid items", result);
 
         // Verify output contains expected messages
-        String output = outContent.toString();
+        String output = capturedOutput();
         assertTrue("Output should indicate update was performed",
                   output.contains("Updating inventory"));
         assertTrue("Output should indicate successful update",
@@ -82,7 +87,7 @@ public class InventorySystemTest {
         assertTrue("Inventory update should succeed with empty list", result);
 
         // Verify output
-        String output = outContent.toString();
+        String output = capturedOutput();
         assertTrue("Output should indicate update was performed",
                   output.contains("Updating inventory"));
         assertTrue("Output should indicate successful update",
@@ -110,7 +115,7 @@ public class InventorySystemTest {
         assertFalse("Inventory update should fail when registry fails", result);
 
         // Verify output
-        String output = outContent.toString();
+        String output = capturedOutput();
         assertTrue("Output should indicate update was performed",
                   output.contains("Updating inventory"));
         assertTrue("Output should indicate failed update",
@@ -138,7 +143,7 @@ public class InventorySystemTest {
         assertFalse("Inventory update should fail when any item fails", result);
 
         // Verify output
-        String output = outContent.toString();
+        String output = capturedOutput();
         assertTrue("Output should indicate update was performed",
                   output.contains("Updating inventory"));
         assertTrue("Output should indicate failed update",
@@ -160,10 +165,197 @@ public class InventorySystemTest {
         assertFalse("Inventory update should fail with excessive quantities", result);
 
         // Verify output
-        String output = outContent.toString();
+        String output = capturedOutput();
         assertTrue("Output should indicate update was performed",
                   output.contains("Updating inventory"));
         assertTrue("Output should indicate failed update",
                   output.contains("failed") && !output.contains("successfully updated"));
     }
+
+    /**
+     * Tests that units reserved by one sale are not available to another.
+     */
+    @Test
+    public void testReservationReducesAvailability() {
+        assertTrue("Reservation should succeed", inventorySystem.reserveItem("sale-1", "1", 45));
+
+        assertTrue("Unreserved units should be available", inventorySystem.isItemAvailable("1", 5));
+        assertFalse("Reserved units should not be available", inventorySystem.isItemAvailable("1", 6));
+        assertFalse("Second sale should not reserve reserved units",
+                    inventorySystem.reserveItem("sale-2", "1", 6));
+        assertTrue("Stock itself should not be decreased", itemRegistry.isItemAvailable("1", 50));
+    }
+
+    /**
+     * Tests that releasing an abandoned sale makes its units available again.
+     */
+    @Test
+    public void testReleaseReservations() {
+        inventorySystem.reserveItem("sale-1", "1", 50);
+
+        inventorySystem.releaseReservations("sale-1");
+
+        assertTrue("Released units should be available", inventorySystem.isItemAvailable("1", 50));
+    }
+
+    /**
+     * Tests that paying a sale turns its reservations into stock decrements.
+     */
+    @Test
+    public void testUpdateInventorySettlesReservations() {
+        inventorySystem.reserveItem("sale-1", "1", 2);
+        inventorySystem.reserveItem("sale-1", "2", 3);
+
+        assertTrue("Update should succeed", inventorySystem.updateInventory("sale-1", testItems));
+
+        assertTrue("Remaining stock should be available", inventorySystem.isItemAvailable("1", 48));
+        assertFalse("Sold units should be gone", inventorySystem.isItemAvailable("1", 49));
+        assertTrue("Remaining stock should be available", inventorySystem.isItemAvailable("2", 47));
+    }
+
+    /**
+     * Tests that expired reservations are released by the reaper.
+     */
+    @Test
+    public void testExpiredReservationsAreReleased() {
+        inventorySystem.reserveItem("sale-1", "1", 50);
+
+        assertEquals("Fresh reservation should not expire",
+                     0, inventorySystem.releaseExpiredReservations(System.nanoTime()));
+        assertEquals("Old reservation should expire",
+                     1, inventorySystem.releaseExpiredReservations(System.nanoTime() + TimeUnit.HOURS.toNanos(1)));
+        assertTrue("Expired units should be available", inventorySystem.isItemAvailable("1", 50));
+    }
+
+    /**
+     * Tests that concurrent lanes never reserve more units than in stock.
+     */
+    @Test
+    public void testConcurrentReservations() throws InterruptedException {
+        List<Thread> lanes = new ArrayList<>();
+        AtomicInteger reservedUnits = new AtomicInteger();
+        for (int lane = 0; lane < 8; lane++) {
+            String saleID = "sale-" + lane;
+            lanes.add(new Thread(() -> {
+                for (int i = 0; i < 20; i++) {
+                    if (inventorySystem.reserveItem(saleID, "3", 1)) {
+                        reservedUnits.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Thread lane : lanes) {
+            lane.start();
+        }
+        for (Thread lane : lanes) {
+            lane.join();
+        }
+
+        assertEquals("Exactly the stock should be reserved", 50, reservedUnits.get());
+        assertFalse("Nothing should be left", inventorySystem.isItemAvailable("3", 1));
+    }
+
+    /**
+     * Tests that crossing the low-stock threshold emits one event.
+     */
+    @Test
+    public void testLowStockEvent() throws InterruptedException {
+        BlockingQueue<InventoryEventDTO> received = new LinkedBlockingQueue<>();
+        inventorySystem.addInventoryObserver(received::add);
+        inventorySystem.setLowStockThreshold("1", 45);
+
+        inventorySystem.updateInventory(List.of(new SaleLineItem(testItems.get(0).getItem(), 4)));
+        inventorySystem.updateInventory(List.of(new SaleLineItem(testItems.get(0).getItem(), 2)));
+        inventorySystem.updateInventory(List.of(new SaleLineItem(testItems.get(0).getItem(), 2)));
+
+        InventoryEventDTO event = received.poll(5, TimeUnit.SECONDS);
+        assertNotNull("Low-stock event should be delivered", event);
+        assertEquals("Event should be low stock", InventoryEventDTO.Type.LOW_STOCK, event.type());
+        assertEquals("Event should give remaining stock", 44, event.remainingQuantity());
+        assertNull("Further decreases below threshold should not emit",
+                   received.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Tests that selling the last unit emits an out-of-stock event.
+     */
+    @Test
+    public void testOutOfStockEvent() throws InterruptedException {
+        BlockingQueue<InventoryEventDTO> received = new LinkedBlockingQueue<>();
+        inventorySystem.addInventoryObserver(received::add);
+
+        inventorySystem.updateInventory(List.of(new SaleLineItem(testItems.get(1).getItem(), 45)));
+        inventorySystem.updateInventory(List.of(new SaleLineItem(testItems.get(1).getItem(), 5)));
+
+        InventoryEventDTO lowStock = received.poll(5, TimeUnit.SECONDS);
+        InventoryEventDTO outOfStock = received.poll(5, TimeUnit.SECONDS);
+        assertEquals("First event should be low stock", InventoryEventDTO.Type.LOW_STOCK, lowStock.type());
+        assertEquals("Second event should be out of stock", InventoryEventDTO.Type.OUT_OF_STOCK, outOfStock.type());
+        assertEquals("No units should remain", 0, outOfStock.remainingQuantity());
+    }
+
+    /**
+     * Tests that a slow observer holds back publishers instead of losing events.
+     */
+    @Test
+    public void testSlowObserverLosesNoEvents() throws InterruptedException {
+        InventoryEventStream stream = new InventoryEventStream(2);
+        AtomicInteger delivered = new AtomicInteger();
+        stream.addObserver(event -> {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            delivered.incrementAndGet();
+        });
+
+        for (int i = 0; i < 20; i++) {
+            stream.publish(new InventoryEventDTO(String.valueOf(i), InventoryEventDTO.Type.LOW_STOCK, 1, 10));
+            assertTrue("Queue should stay within its capacity", stream.getQueuedEventCount() <= 2);
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (delivered.get() < 20 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        stream.close();
+
+        assertEquals("All events should be delivered", 20, delivered.get());
+    }
+
+    /**
+     * Tests that publishing to a closed stream never blocks, even when more
+     * events are published than the queue can hold.
+     */
+    @Test(timeout = 5000)
+    public void testPublishAfterCloseDoesNotBlock() {
+        InventoryEventStream stream = new InventoryEventStream(2);
+        stream.addObserver(event -> { });
+        stream.close();
+
+        for (int i = 0; i < 10; i++) {
+            stream.publish(new InventoryEventDTO(String.valueOf(i), InventoryEventDTO.Type.LOW_STOCK, 1, 10));
+        }
+
+        assertEquals("Events should be discarded after close", 0, stream.getQueuedEventCount());
+    }
+
+    private String capturedOutput() {
+        AsyncLogger.diagnostics().flush();
+        try {
+            byte[] log = Files.readAllBytes(AsyncLogger.diagnosticsFile());
+            return new String(log, (int) logStart, log.length - (int) logStart, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long logSize() {
+        AsyncLogger.diagnostics().flush();
+        try {
+            return Files.size(AsyncLogger.diagnosticsFile());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
@@ -0,0 +1,113 @@
+package se.kth.iv1350.pos.integration;
+
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import se.kth.iv1350.pos.dto.ItemDTO;
+import se.kth.iv1350.pos.util.Amount;
+
+/**
+ * Tests the ItemInterner class, which gives equal items one canonical instance.
+ */
+public class ItemInternerTest {
+    private ItemInterner interner;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    /**
+     * Sets up the test environment before each test.
+     */
+    @Before
+    public void setUp() {
+        interner = new ItemInterner();
+    }
+
+    /**
+     * Tests that equal items are interned to the same instance.
+     */
+    @Test
+    public void testEqualItemsShareInstance() {
+        ItemDTO first = new ItemDTO("1", "Milk", "1L", new Amount(22), 0.12);
+        ItemDTO second = new ItemDTO("1", "Milk", "1L", new Amount(22), 0.12);
+
+        assertSame("First item should become canonical", first, interner.intern(first));
+        assertSame("Equal item should give the canonical instance", first, interner.intern(second));
+    }
+
+    /**
+     * Tests that items differing in any field are kept apart.
+     */
+    @Test
+    public void testDifferentItemsAreKeptApart() {
+        ItemDTO item = interner.intern(new ItemDTO("1", "Milk", "1L", new Amount(22), 0.12));
+        ItemDTO repriced = interner.intern(new ItemDTO("1", "Milk", "1L", new Amount(21), 0.12));
+
+        assertNotSame("Repriced item should have its own instance", item, repriced);
+        assertEquals("Both items should be interned", 2, interner.size());
+    }
+
+    /**
+     * Tests that items no longer referenced are dropped.
+     */
+    @Test
+    public void testUnreferencedItemsAreDropped() throws InterruptedException {
+        for (int i = 0; i < 1000; i++) {
+            interner.intern(new ItemDTO(String.valueOf(i), "Item", "", new Amount(i), 0.25));
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (interner.size() > 0 && System.currentTimeMillis() < deadline) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals("Unreferenced items should be dropped", 0, interner.size());
+    }
+
+    /**
+     * Tests that unchanged items keep their instance when the catalog is reloaded.
+     */
+    @Test
+    public void testReloadKeepsUnchangedInstances() throws IOException {
+        Path catalogFile = tempFolder.getRoot().toPath().resolve("catalog.txt");
+        Files.write(catalogFile, Arrays.asList("10;Oatly;1L, oat drink;19.90;0.12",
+                                               "11;Bread;Rye;25.00;0.12"), StandardCharsets.UTF_8);
+        ItemRegistry itemRegistry = new ItemRegistry();
+        itemRegistry.reloadCatalog(catalogFile);
+        ItemDTO before = itemRegistry.findItem("10");
+
+        Files.write(catalogFile, Arrays.asList("10;Oatly;1L, oat drink;19.90;0.12",
+                                               "11;Bread;Rye;27.00;0.12"), StandardCharsets.UTF_8);
+        itemRegistry.reloadCatalog(catalogFile);
+
+        assertSame("Unchanged item should keep its instance", before, itemRegistry.findItem("10"));
+        assertEquals("Changed item should be updated", new Amount(27), itemRegistry.findItem("11").price());
+    }
+
+    /**
+     * Tests that an item fetched again after expiring from the cache is the same instance.
+     */
+    @Test
+    public void testRefetchedItemKeepsInstance() {
+        Map<String, ItemDTO> items = new HashMap<>();
+        items.put("20", new ItemDTO("20", "Remote", "From backend", new Amount(5), 0.25));
+        long[] now = {0};
+        SimulatedCatalogBackend backend = new SimulatedCatalogBackend(items, 0);
+        CachedCatalog cache = new CachedCatalog(backend, 1_000_000, 1, () -> now[0]);
+        ItemDTO first = cache.findItem("20");
+        now[0] += 10_000_000;
+        backend.updateItem(new ItemDTO("20", "Remote", "From backend", new Amount(5), 0.25));
+
+        assertSame("Refetched item should be the same instance", first, cache.findItem("20"));
+        assertEquals("Item should be fetched again", 2, backend.getFetchCount());
+    }
+}
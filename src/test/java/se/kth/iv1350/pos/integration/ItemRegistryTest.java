@@ -3,8 +3,22 @@ package se.kth.iv1350.pos.integration;
 import static org.junit.Assert.*;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import se.kth.iv1350.pos.dto.CacheStatisticsDTO;
 import se.kth.iv1350.pos.dto.ItemDTO;
+import se.kth.iv1350.pos.dto.ItemFilterStatisticsDTO;
+import se.kth.iv1350.pos.util.Amount;
 
 /**
  * Tests the ItemRegistry class, which contains all calls to the external inventory system.
@@ -12,6 +26,9 @@ import se.kth.iv1350.pos.dto.ItemDTO;
 public class ItemRegistryTest {
     private ItemRegistry itemRegistry;
 
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     /**
      * Sets up the test environment before each test.
      */
@@ -50,6 +67,18 @@ public class ItemRegistryTest {
         assertNull("Should not find a non-existent item", item);
     }
 
+    /**
+     * Tests finding several items at once.
+     */
+    @Test
+    public void testFindItems() {
+        Map<String, ItemDTO> found = itemRegistry.findItems(Arrays.asList("1", "999", "3"));
+
+        assertEquals("Only existing items should be found", 2, found.size());
+        assertEquals("Found item should match a single lookup", itemRegistry.findItem("3"), found.get("3"));
+        assertFalse("Non-existent item should be left out", found.containsKey("999"));
+    }
+
     /**
      * Tests checking if an item is available with sufficient quantity.
      */
@@ -134,4 +163,160 @@ public class ItemRegistryTest {
         assertTrue("Item quantity should not change after zero decrease",
                   itemRegistry.isItemAvailable("1", 50));
     }
+
+    /**
+     * Tests that lookups of unknown items are counted by the item filter.
+     */
+    @Test
+    public void testItemFilterStatistics() {
+        itemRegistry.findItem("1");
+        for (int i = 100; i < 200; i++) {
+            itemRegistry.findItem(String.valueOf(i));
+        }
+
+        ItemFilterStatisticsDTO stats = itemRegistry.getItemFilterStatistics();
+        assertEquals("All lookups should be counted", 101, stats.lookups());
+        assertEquals("All unknown lookups should be rejected or counted as false positives",
+                     100, stats.rejectedLookups() + stats.falsePositives());
+        assertTrue("Most unknown items should be rejected by the filter",
+                   stats.rejectedLookups() > 90);
+        assertTrue("Expected false-positive rate should be small",
+                   stats.expectedFalsePositiveRate() < 0.05);
+    }
+
+    /**
+     * Tests that the item filter never hides an existing item.
+     */
+    @Test
+    public void testItemFilterKeepsExistingItems() {
+        for (int i = 1; i <= 5; i++) {
+            assertNotNull("Existing item should be found: " + i,
+                          itemRegistry.findItem(String.valueOf(i)));
+        }
+        assertEquals("No lookup of an existing item should be rejected",
+                     0, itemRegistry.getItemFilterStatistics().rejectedLookups());
+    }
+
+    /**
+     * Tests that reloading the catalog publishes new prices and items,
+     * while items already handed out keep their old data.
+     */
+    @Test
+    public void testReloadCatalog() throws IOException {
+        ItemDTO before = itemRegistry.findItem("1");
+        long versionBefore = itemRegistry.getCatalogVersion();
+
+        long version = itemRegistry.reloadCatalog(writeCatalog(
+                "# reloaded catalog",
+                "1;Kellogg's Cornflakes;500g;12.50;0.12",
+                "6;Loka Citron;33cl, sparkling water;9.90;0.12"));
+
+        assertEquals("Version should be increased", versionBefore + 1, version);
+        assertEquals("Current version should be the published one", version, itemRegistry.getCatalogVersion());
+        assertEquals("New price should be used", 0,
+                     new BigDecimal("12.50").compareTo(itemRegistry.findItem("1").price().getValue()));
+        assertNotNull("New item should be found", itemRegistry.findItem("6"));
+        assertNull("Removed item should not be found", itemRegistry.findItem("2"));
+        assertEquals("Previously found item should keep its price", 0,
+                     new BigDecimal("10.00").compareTo(before.price().getValue()));
+    }
+
+    /**
+     * Tests that items new to a reloaded catalog are stocked, while the stock
+     * of known items is kept.
+     */
+    @Test
+    public void testReloadStocksNewItems() throws IOException {
+        itemRegistry.decreaseInventoryQuantity("1", 10);
+
+        itemRegistry.reloadCatalog(writeCatalog(
+                "1;Kellogg's Cornflakes;500g;12.50;0.12",
+                "6;Loka Citron;33cl, sparkling water;9.90;0.12"));
+
+        assertEquals("New item should be stocked", 50, itemRegistry.getInventoryQuantity("6"));
+        assertEquals("Stock of known item should be kept", 40, itemRegistry.getInventoryQuantity("1"));
+    }
+
+    /**
+     * Tests that a failed reload keeps the current catalog.
+     */
+    @Test
+    public void testReloadMalformedCatalog() throws IOException {
+        Path catalogFile = writeCatalog("1;Missing fields");
+        long versionBefore = itemRegistry.getCatalogVersion();
+
+        try {
+            itemRegistry.reloadCatalog(catalogFile);
+            fail("Malformed catalog should not be loaded");
+        } catch (IOException e) {
+            // Expected
+        }
+
+        assertEquals("Version should not change", versionBefore, itemRegistry.getCatalogVersion());
+        assertNotNull("Current catalog should still be used", itemRegistry.findItem("2"));
+    }
+
+    /**
+     * Tests reloading the catalog in the background.
+     */
+    @Test
+    public void testReloadCatalogInBackground() throws IOException, InterruptedException, ExecutionException {
+        Path catalogFile = writeCatalog("7;Marabou;200g, milk chocolate;32.00;0.12");
+
+        long version = itemRegistry.reloadCatalogInBackground(catalogFile).get();
+
+        assertEquals("Background reload should be published", version, itemRegistry.getCatalogVersion());
+        assertNotNull("Item of reloaded catalog should be found", itemRegistry.findItem("7"));
+    }
+
+    /**
+     * Tests finding items through a cached remote catalog.
+     */
+    @Test
+    public void testFindItemInRemoteCatalog() {
+        Map<String, ItemDTO> remoteItems = new HashMap<>();
+        remoteItems.put("8", new ItemDTO("8", "Remote Item", "Remote description", new Amount(5.0), 0.12));
+        SimulatedCatalogBackend backend = new SimulatedCatalogBackend(remoteItems, 0);
+        ItemRegistry remoteRegistry = new ItemRegistry(new CachedCatalog(backend, 100_000, 60_000));
+
+        assertNotNull("Remote item should be found", remoteRegistry.findItem("8"));
+        assertNotNull("Remote item should be found again", remoteRegistry.findItem("8"));
+        assertNull("Unknown item should not be found", remoteRegistry.findItem("999"));
+
+        CacheStatisticsDTO stats = remoteRegistry.getCacheStatistics();
+        assertEquals("Second lookup should hit the cache", 1, stats.hits());
+        assertEquals("Backend should be called once", 1, backend.getFetchCount());
+        assertTrue("Remote item should be available in inventory", remoteRegistry.isItemAvailable("8", 1));
+    }
+
+    /**
+     * Tests that items added to the remote catalog are found once the
+     * remote item identifiers have been refreshed.
+     */
+    @Test
+    public void testItemAddedToRemoteCatalogIsFoundAfterRefresh() {
+        SimulatedCatalogBackend backend = new SimulatedCatalogBackend(new HashMap<>(), 0);
+        ItemRegistry remoteRegistry = new ItemRegistry(new CachedCatalog(backend, 100_000, 60_000));
+        backend.updateItem(new ItemDTO("9", "New Item", "Added later", new Amount(5.0), 0.12));
+        long version = remoteRegistry.getCatalogVersion();
+
+        assertTrue("Refresh should publish a new version", remoteRegistry.refreshRemoteItemIDs() > version);
+        assertNotNull("Item added to the backend should be found", remoteRegistry.findItem("9"));
+        assertEquals("Unchanged identifiers should not publish a new version",
+                     remoteRegistry.getCatalogVersion(), remoteRegistry.refreshRemoteItemIDs());
+    }
+
+    /**
+     * Tests that a registry without remote catalog has no cache statistics.
+     */
+    @Test
+    public void testNoCacheStatisticsWithoutRemoteCatalog() {
+        assertNull("Local registry should not report cache statistics", itemRegistry.getCacheStatistics());
+    }
+
+    private Path writeCatalog(String... lines) throws IOException {
+        Path catalogFile = tempFolder.newFile().toPath();
+        Files.write(catalogFile, Arrays.asList(lines), StandardCharsets.UTF_8);
+        return catalogFile;
+    }
 }
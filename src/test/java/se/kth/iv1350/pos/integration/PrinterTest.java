@@ -3,11 +3,17 @@ package se.kth.iv1350.pos.integration;
 import static org.junit.Assert.*;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runners.JUnit4;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -26,6 +32,9 @@ public class PrinterTest {
     private PrintStream originalOut;
     private ReceiptDTO receiptDTO;
 
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     /**
      * Sets up the test environment before each test.
      * Redirects System.out to capture output.
@@ -75,7 +84,7 @@ public class PrinterTest {
     public void testPrintReceipt() {
         printer.printReceipt(receiptDTO);
 
-        String output = outContent.toString();
+        String output = capturedOutput();
         assertNotEquals("Printing should produce output", 0, output.length());
     }
 
@@ -86,7 +95,7 @@ public class PrinterTest {
     public void testReceiptContainsHeader() {
         printer.printReceipt(receiptDTO);
 
-        String output = outContent.toString();
+        String output = capturedOutput();
         assertTrue("Receipt should contain header",
                   output.contains("Begin receipt"));
         assertTrue("Receipt should contain time of sale",
@@ -100,7 +109,7 @@ public class PrinterTest {
     public void testReceiptContainsItemInfo() {
         printer.printReceipt(receiptDTO);
 
-        String output = outContent.toString();
+        String output = capturedOutput();
         assertTrue("Receipt should contain item name",
                   output.contains("Test Item"));
         assertTrue("Receipt should show quantity",
@@ -114,7 +123,7 @@ public class PrinterTest {
     public void testReceiptContainsTotals() {
         printer.printReceipt(receiptDTO);
 
-        String output = outContent.toString();
+        String output = capturedOutput();
         assertTrue("Receipt should show total",
                   output.contains("Total :"));
         assertTrue("Receipt should show VAT",
@@ -128,7 +137,7 @@ public class PrinterTest {
     public void testReceiptContainsPaymentInfo() {
         printer.printReceipt(receiptDTO);
 
-        String output = outContent.toString();
+        String output = capturedOutput();
         assertTrue("Receipt should show cash amount",
                   output.contains("Cash :"));
         assertTrue("Receipt should show change amount",
@@ -142,7 +151,7 @@ public class PrinterTest {
     public void testReceiptContainsFooter() {
         printer.printReceipt(receiptDTO);
 
-        String output = outContent.toString();
+        String output = capturedOutput();
         assertTrue("Receipt should contain footer",
                   output.contains("End receipt"));
     }
@@ -163,10 +172,32 @@ public class PrinterTest {
 
         printer.printReceipt(emptyReceipt);
 
-        String output = outContent.toString();
+        String output = capturedOutput();
         assertNotEquals("Printing empty receipt should still produce output",
                        0, output.length());
         assertTrue("Empty receipt should contain header and footer",
                   output.contains("Begin receipt") && output.contains("End receipt"));
     }
+
+    /**
+     * Tests that a receipt spooled to a printer device is written to the device.
+     */
+    @Test
+    public void testSpooledReceiptIsPrinted() throws IOException {
+        Path device = tempFolder.getRoot().toPath().resolve("printer.prn");
+        Printer spoolingPrinter = new Printer(new FilePrinterDevice(device));
+
+        spoolingPrinter.printReceipt(receiptDTO);
+        spoolingPrinter.shutdown();
+
+        String printed = Files.readString(device, StandardCharsets.UTF_8);
+        assertTrue("Receipt should be printed on the device", printed.contains("Begin receipt"));
+        assertEquals("Receipt should be counted", 1, spoolingPrinter.getSpoolStatistics().printedReceipts());
+        assertNull("Console printer should have no spool", printer.getSpoolStatistics());
+    }
+
+    private String capturedOutput() {
+        // Receipts are written directly, without waiting for the logger
+        return outContent.toString();
+    }
 }
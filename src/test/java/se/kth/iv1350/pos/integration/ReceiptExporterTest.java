@@ -0,0 +1,115 @@
+package se.kth.iv1350.pos.integration;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import se.kth.iv1350.pos.dto.ItemDTO;
+import se.kth.iv1350.pos.dto.ReceiptDTO;
+import se.kth.iv1350.pos.dto.SaleItemDTO;
+import se.kth.iv1350.pos.util.Amount;
+
+/**
+ * Tests the ReceiptExporter class, which exports e-receipts in the background.
+ */
+public class ReceiptExporterTest {
+    private Path outbox;
+    private ReceiptExporter exporter;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    /**
+     * Sets up the test environment before each test.
+     */
+    @Before
+    public void setUp() throws IOException {
+        outbox = tempFolder.getRoot().toPath().resolve("outbox");
+        exporter = new ReceiptExporter(outbox, 4);
+    }
+
+    /**
+     * Cleans up the test environment after each test.
+     */
+    @After
+    public void tearDown() {
+        exporter.shutdown();
+        exporter = null;
+    }
+
+    /**
+     * Tests that a receipt is exported as JSON and PDF, named after the sale.
+     */
+    @Test
+    public void testExportReceipt() throws IOException {
+        exporter.export(createReceipt("sale-1", "Kaffe \"bryggt\"")).join();
+
+        String json = Files.readString(outbox.resolve("sale-1.json"), StandardCharsets.UTF_8);
+        assertTrue("JSON should hold the sale", json.startsWith("{\"saleID\":\"sale-1\""));
+        assertTrue("JSON should escape names", json.contains("\"name\":\"Kaffe \\\"bryggt\\\"\""));
+        assertTrue("JSON should hold amounts", json.contains("\"subtotal\":50.00,\"vat\":6.00"));
+        assertTrue("JSON should hold the total with VAT", json.contains("\"totalWithVat\":56.00"));
+        assertTrue("PDF should be exported", Files.exists(outbox.resolve("sale-1.pdf")));
+    }
+
+    /**
+     * Tests that the cross-reference table of the PDF points at its objects.
+     */
+    @Test
+    public void testPdfStructure() {
+        byte[] pdf = ReceiptExporter.renderPdf(createReceipt("sale-2", "Bröd (fullkorn)"));
+        String text = new String(pdf, StandardCharsets.ISO_8859_1);
+
+        assertTrue("PDF should start with its header", text.startsWith("%PDF-1.4"));
+        assertTrue("PDF should end with its trailer", text.endsWith("%%EOF\n"));
+        assertTrue("Parentheses should be escaped", text.contains("(Bröd \\(fullkorn\\) 2 x 25.00)"));
+        int startxref = Integer.parseInt(text.substring(text.indexOf("startxref\n") + 10,
+                                                        text.indexOf("\n%%EOF")));
+        assertTrue("startxref should point at the table", text.startsWith("xref", startxref));
+        String[] entries = text.substring(startxref).split("\n");
+        for (int object = 1; object <= 5; object++) {
+            int offset = Integer.parseInt(entries[2 + object].substring(0, 10));
+            assertTrue("Object " + object + " should be at its offset",
+                       text.startsWith(object + " 0 obj", offset));
+        }
+    }
+
+    /**
+     * Tests that receipts exported at the same time all end up complete in
+     * the outbox, without temporary files left behind.
+     */
+    @Test
+    public void testConcurrentExports() throws IOException {
+        List<CompletableFuture<Void>> exports = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            exports.add(exporter.export(createReceipt("sale-" + i, "Item " + i)));
+        }
+        CompletableFuture.allOf(exports.toArray(new CompletableFuture<?>[0])).join();
+
+        try (Stream<Path> files = Files.list(outbox)) {
+            List<String> names = files.map(file -> file.getFileName().toString()).collect(Collectors.toList());
+            assertEquals("Every receipt should be exported in both formats", 100, names.size());
+            assertTrue("No temporary files should remain", names.stream().noneMatch(name -> name.endsWith(".tmp")));
+        }
+    }
+
+    private static ReceiptDTO createReceipt(String saleID, String itemName) {
+        ItemDTO item = new ItemDTO("1", itemName, "", new Amount(25), 0.12);
+        return new ReceiptDTO(Collections.singletonList(
+                new SaleItemDTO(item, 2, new Amount(50), new Amount(6), new Amount(56))),
+                new Amount(50), new Amount(6), new Amount(100), new Amount(44), LocalDateTime.now(), saleID);
+    }
+}
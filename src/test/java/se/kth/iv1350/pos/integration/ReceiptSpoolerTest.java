@@ -0,0 +1,107 @@
+package se.kth.iv1350.pos.integration;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import se.kth.iv1350.pos.dto.SpoolStatisticsDTO;
+
+/**
+ * Tests the ReceiptSpooler class, which prints receipts on a background thread.
+ */
+public class ReceiptSpoolerTest {
+    private ReceiptSpooler spooler;
+
+    /**
+     * Cleans up the test environment after each test.
+     */
+    @After
+    public void tearDown() {
+        if (spooler != null) {
+            spooler.close(0);
+        }
+        spooler = null;
+    }
+
+    /**
+     * Tests that receipts queued while the device is busy are printed in one write.
+     */
+    @Test
+    public void testQueuedReceiptsAreBatched() throws InterruptedException {
+        TestDevice device = new TestDevice(0);
+        spooler = new ReceiptSpooler(device, 16, 10);
+
+        spooler.spool(bytes("first;"));
+        device.writing.await();
+        for (int i = 0; i < 5; i++) {
+            spooler.spool(bytes("next;"));
+        }
+        device.release.countDown();
+
+        assertTrue("Spool should drain", spooler.awaitEmpty(5000));
+        SpoolStatisticsDTO statistics = spooler.getStatistics();
+        assertEquals("All receipts should be printed", 6, statistics.printedReceipts());
+        assertEquals("Queued receipts should share one write", 2, statistics.deviceWrites());
+        assertEquals("Queue depth should be tracked", 6, statistics.maxQueuedReceipts());
+        assertEquals("Receipts should be printed in order",
+                     "first;next;next;next;next;next;", device.printed());
+    }
+
+    /**
+     * Tests that receipts are printed again from the spool when the device fails.
+     */
+    @Test
+    public void testReceiptIsReprintedAfterDeviceFailure() throws InterruptedException {
+        TestDevice device = new TestDevice(2);
+        device.release.countDown();
+        spooler = new ReceiptSpooler(device, 16, 10);
+
+        spooler.spool(bytes("receipt;"));
+
+        assertTrue("Spool should drain once the device works", spooler.awaitEmpty(5000));
+        assertEquals("Failed writes should be counted", 2, spooler.getStatistics().failedWrites());
+        assertEquals("Receipt should be printed once it succeeds", "receipt;", device.printed());
+        assertEquals("Spool should be empty", 0, spooler.getStatistics().queuedReceipts());
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A device that waits to be released before its first write completes,
+     * and fails a number of writes before it starts working.
+     */
+    private static final class TestDevice implements PrinterDevice {
+        private final CountDownLatch writing = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        private int failuresLeft;
+
+        private TestDevice(int failures) {
+            this.failuresLeft = failures;
+        }
+
+        @Override
+        public synchronized void write(byte[] data) throws IOException {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException("Interrupted");
+            }
+            if (failuresLeft > 0) {
+                failuresLeft--;
+                throw new IOException("Paper jam");
+            }
+            output.writeBytes(data);
+        }
+
+        private synchronized String printed() {
+            return output.toString(StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package se.kth.iv1350.pos.integration;
+
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import se.kth.iv1350.pos.dto.ItemDTO;
+import se.kth.iv1350.pos.dto.ReceiptDTO;
+import se.kth.iv1350.pos.dto.SaleDTO;
+import se.kth.iv1350.pos.dto.SaleItemDTO;
+import se.kth.iv1350.pos.util.Amount;
+
+/**
+ * Tests the RegistryCreator class, which creates and starts all external systems.
+ */
+public class RegistryCreatorTest {
+    private Path dataDirectory;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    /**
+     * Sets up the test environment before each test.
+     */
+    @Before
+    public void setUp() {
+        dataDirectory = tempFolder.getRoot().toPath().resolve("pos");
+    }
+
+    /**
+     * Tests that the default creator provides all systems.
+     */
+    @Test
+    public void testDefaultCreator() {
+        RegistryCreator creator = new RegistryCreator();
+
+        assertNotNull("Item registry should be created", creator.getItemRegistry());
+        assertNotNull("Accounting system should be created", creator.getAccountingSystem());
+        assertNotNull("Inventory system should be created", creator.getInventorySystem());
+        assertNotNull("Printer should be created", creator.getPrinter());
+        assertNotNull("Discount registry should be created", creator.getDiscountRegistry());
+        creator.shutdown();
+    }
+
+    /**
+     * Tests that the catalog file and pending catalog deltas are loaded at startup.
+     */
+    @Test
+    public void testStartupLoadsCatalog() throws IOException {
+        Files.createDirectories(dataDirectory);
+        Files.write(dataDirectory.resolve("catalog.txt"),
+                    Arrays.asList("10;Oatly;1L, oat drink;19.90;0.12"), StandardCharsets.UTF_8);
+        Files.write(dataDirectory.resolve("catalog-delta.log"),
+                    Arrays.asList("PRICE;10;21.90"), StandardCharsets.UTF_8);
+
+        RegistryCreator creator = new RegistryCreator(dataDirectory);
+        try {
+            ItemDTO item = creator.getItemRegistry().findItem("10");
+            assertNotNull("Item of catalog file should be found", item);
+            assertEquals("Pending delta should be applied", new Amount(21.90), item.price());
+        } finally {
+            creator.shutdown();
+        }
+    }
+
+    /**
+     * Tests that receipts are printed on the printer device in the data directory.
+     */
+    @Test
+    public void testReceiptsArePrintedOnDevice() throws IOException {
+        RegistryCreator creator = new RegistryCreator(dataDirectory);
+        ItemDTO item = new ItemDTO("1", "Test Item", "Test description", new Amount(10), 0.25);
+        SaleItemDTO soldItem = new SaleItemDTO(item, 1, new Amount(10), new Amount(2.5), new Amount(12.5));
+        try {
+            creator.getPrinter().printReceipt(new ReceiptDTO(Collections.singletonList(soldItem),
+                    new Amount(10), new Amount(2.5), new Amount(20), new Amount(7.5), LocalDateTime.now()));
+        } finally {
+            creator.shutdown();
+        }
+
+        String printed = Files.readString(dataDirectory.resolve("printer.prn"), StandardCharsets.UTF_8);
+        assertTrue("Receipt should be printed on the device", printed.contains("Begin receipt"));
+    }
+
+    /**
+     * Tests that sales recorded before shutdown make items warm at the next startup.
+     */
+    @Test
+    public void testSalesWarmUpNextStartup() throws IOException {
+        Map<String, ItemDTO> items = new HashMap<>();
+        ItemDTO item = new ItemDTO("20", "Popular Item", "Sells a lot", new Amount(10), 0.12);
+        items.put("20", item);
+        SimulatedCatalogBackend backend = new SimulatedCatalogBackend(items, 0);
+
+        RegistryCreator firstRun = new RegistryCreator(dataDirectory, backend);
+        SaleItemDTO soldItem = new SaleItemDTO(item, 3, new Amount(30), new Amount(3.6), new Amount(33.6));
+        firstRun.getAccountingSystem().recordSale(new SaleDTO(Collections.singletonList(soldItem),
+                new Amount(30), new Amount(3.6), new Amount(0), new Amount(33.6), LocalDateTime.now()));
+        firstRun.shutdown();
+
+        RegistryCreator secondRun = new RegistryCreator(dataDirectory, backend);
+        try {
+            long fetchesAfterStartup = backend.getFetchCount();
+            assertEquals("Popular item should be fetched during startup", 1, fetchesAfterStartup);
+            secondRun.getItemRegistry().findItem("20");
+            assertEquals("Popular item should be warm", fetchesAfterStartup, backend.getFetchCount());
+        } finally {
+            secondRun.shutdown();
+        }
+    }
+
+    /**
+     * Tests that a failed startup stops the systems that were already started.
+     */
+    @Test
+    public void testFailedStartupStopsStartedSystems() throws IOException, InterruptedException {
+        Files.createDirectories(dataDirectory.resolve("inventory.log"));
+        try {
+            new RegistryCreator(dataDirectory);
+            fail("Startup should fail when the inventory log cannot be opened");
+        } catch (IOException expected) {
+        }
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("receipt-spooler")) {
+                thread.join(1000);
+                assertFalse("Receipt spooler should be stopped", thread.isAlive());
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package se.kth.iv1350.pos.integration;
+
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests the SaleEventLog class, a memory-mapped log of sale events.
+ */
+public class SaleEventLogTest {
+    private Path directory;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    /**
+     * Sets up the test environment before each test.
+     */
+    @Before
+    public void setUp() {
+        directory = tempFolder.getRoot().toPath().resolve("lane-1");
+    }
+
+    /**
+     * Tests that appended events can be read back by sequence number.
+     */
+    @Test
+    public void testAppendAndRead() throws IOException {
+        SaleEventLog log = new SaleEventLog(directory, 8, 4);
+
+        long sequence = log.append(SaleEvent.Type.ITEM_ADDED, "3", 2, 2200, 1200);
+
+        SaleEvent event = log.read(sequence);
+        assertEquals("Sequence numbers should start at one", 1, sequence);
+        assertEquals("Identifier should be read back", "3", event.getID());
+        assertEquals("Quantity should be read back", 2, event.getQuantity());
+        assertEquals("Amount should be read back", 2200, event.getAmount());
+        assertEquals("VAT should be read back", 1200, event.getVatBasisPoints());
+    }
+
+    /**
+     * Tests that a reopened log continues after its last event.
+     */
+    @Test
+    public void testReopenFindsEnd() throws IOException {
+        SaleEventLog log = new SaleEventLog(directory, 8, 4);
+        for (int i = 0; i < 11; i++) {
+            log.append(SaleEvent.Type.ITEM_ADDED, String.valueOf(i), 1, 100, 2500);
+        }
+        log.force();
+
+        SaleEventLog reopened = new SaleEventLog(directory, 8, 4);
+
+        assertEquals("Last sequence should be found", 11, reopened.getLastSequence());
+        assertEquals("Next event should follow", 12,
+                     reopened.append(SaleEvent.Type.ITEM_ADDED, "x", 1, 100, 2500));
+        assertEquals("Earlier segment should be readable", "0", reopened.read(1).getID());
+    }
+
+    /**
+     * Tests that the oldest segments are dropped and reported to slow tailers.
+     */
+    @Test
+    public void testOldSegmentsAreDropped() throws IOException {
+        SaleEventLog log = new SaleEventLog(directory, 8, 2);
+        SaleEventLog.Tailer slowTailer = log.newTailerFromStart();
+        for (int i = 0; i < 40; i++) {
+            log.append(SaleEvent.Type.ITEM_ADDED, String.valueOf(i), 1, 100, 2500);
+        }
+
+        assertEquals("Only two segments should be kept", 25, log.getFirstSequence());
+        assertNull("Dropped events should not be readable", log.read(24));
+        AtomicLong firstRead = new AtomicLong();
+        slowTailer.poll(event -> firstRead.compareAndSet(0, event.getSequence()), 100);
+        assertEquals("Tailer should skip to the oldest kept event", 25, firstRead.get());
+        assertEquals("Missed events should be counted", 24, slowTailer.getMissedEventCount());
+    }
+
+    /**
+     * Tests that a tailer on another thread sees every event in order while
+     * the writer keeps appending.
+     */
+    @Test
+    public void testConcurrentTailer() throws Exception {
+        SaleEventLog log = new SaleEventLog(directory, 1024, 1000);
+        int eventCount = 100_000;
+        SaleEventLog.Tailer tailer = log.newTailer();
+        AtomicLong expected = new AtomicLong(1);
+        AtomicLong outOfOrder = new AtomicLong();
+        Thread reader = new Thread(() -> {
+            while (expected.get() <= eventCount) {
+                tailer.poll(event -> {
+                    if (event.getSequence() != expected.getAndIncrement()) {
+                        outOfOrder.incrementAndGet();
+                    }
+                }, 256);
+            }
+        });
+        reader.start();
+
+        for (int i = 0; i < eventCount; i++) {
+            log.append(SaleEvent.Type.ITEM_ADDED, "1", 1, i, 1200);
+        }
+        reader.join(10_000);
+
+        assertFalse("Tailer should finish", reader.isAlive());
+        assertEquals("All events should be read in order", 0, outOfOrder.get());
+        assertEquals("No events should be missed", 0, tailer.getMissedEventCount());
+    }
+}
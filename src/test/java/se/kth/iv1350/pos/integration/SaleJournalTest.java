@@ -0,0 +1,191 @@
+package se.kth.iv1350.pos.integration;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import se.kth.iv1350.pos.dto.ItemDTO;
+import se.kth.iv1350.pos.model.Sale;
+import se.kth.iv1350.pos.util.Amount;
+
+/**
+ * Tests the SaleJournal class, which records the sale in progress so it can be rebuilt.
+ */
+public class SaleJournalTest {
+    private Path directory;
+    private ItemRegistry itemRegistry;
+    private SaleJournal journal;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    /**
+     * Sets up the test environment before each test.
+     */
+    @Before
+    public void setUp() throws IOException {
+        directory = tempFolder.getRoot().toPath().resolve("journal");
+        itemRegistry = new ItemRegistry();
+        journal = new SaleJournal(directory, "lane-1", itemRegistry, 4);
+        journal.recover();
+    }
+
+    /**
+     * Cleans up the test environment after each test.
+     */
+    @After
+    public void tearDown() {
+        journal.close();
+        journal = null;
+        itemRegistry = null;
+    }
+
+    /**
+     * Tests that an interrupted sale is rebuilt with its items and totals.
+     */
+    @Test
+    public void testRecoverInterruptedSale() throws IOException {
+        Sale sale = startSale();
+        addItem(sale, itemRegistry.findItem("1"), 2);
+        addItem(sale, itemRegistry.findItem("3"), 1);
+
+        Sale recovered = restart(4).recover();
+
+        assertNotNull("Interrupted sale should be recovered", recovered);
+        assertEquals("Sale identifier should be kept", sale.getSaleID(), recovered.getSaleID());
+        assertEquals("All lines should be recovered", 2, recovered.getItems().size());
+        assertEquals("Total should be the same", sale.calculateTotalWithVat(), recovered.calculateTotalWithVat());
+    }
+
+    /**
+     * Tests that a paid sale is not recovered.
+     */
+    @Test
+    public void testPaidSaleIsNotRecovered() throws IOException {
+        Sale sale = startSale();
+        addItem(sale, itemRegistry.findItem("1"), 1);
+        journal.paymentReceived(new Amount(100));
+
+        assertNull("Paid sale should not be recovered", restart(4).recover());
+    }
+
+    /**
+     * Tests that a sale spanning snapshots and log records is rebuilt exactly once.
+     */
+    @Test
+    public void testRecoverFromSnapshotAndLog() throws IOException {
+        Sale sale = startSale();
+        for (int i = 0; i < 10; i++) {
+            addItem(sale, itemRegistry.findItem(String.valueOf(i % 5 + 1)), 1);
+        }
+        assertTrue("Snapshot should be written", Files.exists(directory.resolve("lane-1.snapshot")));
+
+        Sale recovered = restart(4).recover();
+
+        assertEquals("Quantities should not be applied twice",
+                     sale.calculateTotalWithVat(), recovered.calculateTotalWithVat());
+        assertEquals("Quantity of the first item should be kept", 2, recovered.getItems().get(0).getQuantity());
+    }
+
+    /**
+     * Tests that the scanned price is recovered even if the catalog changed.
+     */
+    @Test
+    public void testRecoverKeepsScannedPrice() throws IOException {
+        Sale sale = startSale();
+        ItemDTO promotion = new ItemDTO("2", "Barilla Pasta", "On promotion", new Amount(9.90), 0.12);
+        addItem(sale, promotion, 3);
+
+        Sale recovered = restart(4).recover();
+
+        assertEquals("Scanned price should be recovered",
+                     new Amount(9.90), recovered.getItems().get(0).getItem().price());
+        assertEquals("Description should come from the catalog",
+                     "500g, spaghetti, bronze cut", recovered.getItems().get(0).getItem().description());
+    }
+
+    /**
+     * Tests that a discount is recovered.
+     */
+    @Test
+    public void testRecoverDiscount() throws IOException {
+        Sale sale = startSale();
+        addItem(sale, itemRegistry.findItem("5"), 1);
+        sale.applyDiscount("customer-7", new Amount(15));
+        journal.discountApplied("customer-7", new Amount(15));
+
+        Sale recovered = restart(4).recover();
+
+        assertEquals("Customer should be recovered", "customer-7", recovered.getCustomerID());
+        assertEquals("Discount should be recovered", new Amount(15), recovered.getDiscountAmount());
+    }
+
+    /**
+     * Tests that a record only partly written before a crash is ignored and
+     * overwritten by the next event.
+     */
+    @Test
+    public void testPartlyWrittenRecordIsIgnored() throws IOException {
+        Sale sale = startSale();
+        addItem(sale, itemRegistry.findItem("1"), 1);
+        journal.close();
+        try (FileChannel segment = FileChannel.open(directory.resolve("lane-1").resolve("0000000000.segment"),
+                                                    StandardOpenOption.WRITE)) {
+            segment.write(ByteBuffer.wrap(new byte[] {1, 3, 0, 0, 0, 0, 0, 9}), 2 * SaleEvent.RECORD_SIZE + 8);
+        }
+
+        journal = new SaleJournal(directory, "lane-1", itemRegistry, 4);
+        Sale recovered = journal.recover();
+        journal.itemAdded(itemRegistry.findItem("2"), 1);
+        Sale recoveredAgain = restart(4).recover();
+
+        assertEquals("Complete records should be recovered", 1, recovered.getItems().size());
+        assertEquals("Next event should replace the partial record", 2, recoveredAgain.getItems().size());
+    }
+
+    /**
+     * Tests that journaled events can be followed through the event log.
+     */
+    @Test
+    public void testEventsCanBeTailed() {
+        SaleEventLog.Tailer tailer = journal.getEventLog().newTailer();
+        Sale sale = startSale();
+        addItem(sale, itemRegistry.findItem("4"), 2);
+        journal.paymentReceived(new Amount(100));
+
+        List<SaleEvent.Type> types = new ArrayList<>();
+        tailer.poll(event -> types.add(event.getType()), 10);
+
+        assertEquals("All events should be tailed in order",
+                     Arrays.asList(SaleEvent.Type.SALE_STARTED, SaleEvent.Type.ITEM_ADDED,
+                                   SaleEvent.Type.PAYMENT_RECEIVED), types);
+    }
+
+    private Sale startSale() {
+        Sale sale = new Sale();
+        journal.saleStarted(sale);
+        return sale;
+    }
+
+    private void addItem(Sale sale, ItemDTO item, int quantity) {
+        sale.addItem(item, quantity);
+        journal.itemAdded(item, quantity);
+    }
+
+    private SaleJournal restart(int snapshotInterval) throws IOException {
+        journal.close();
+        journal = new SaleJournal(directory, "lane-1", itemRegistry, snapshotInterval);
+        return journal;
+    }
+}
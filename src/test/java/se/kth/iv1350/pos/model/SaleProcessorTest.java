@@ -59,6 +59,7 @@ public class SaleProcessorTest {
         assertEquals("Total should match", sale.calculateTotal(), saleDTO.total());
         assertEquals("Total VAT should match", sale.calculateTotalVat(), saleDTO.totalVat());
         assertEquals("Total with VAT should match", sale.calculateTotalWithVat(), saleDTO.totalWithVat());
+        assertEquals("Transaction ID should be the sale ID", sale.getSaleID(), saleDTO.transactionID());
 
         // Verify items list
         List<SaleItemDTO> itemDTOs = saleDTO.items();
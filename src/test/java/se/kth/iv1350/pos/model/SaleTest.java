@@ -5,8 +5,11 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import se.kth.iv1350.pos.dto.ItemDTO;
+import se.kth.iv1350.pos.dto.SaleItemDTO;
 import se.kth.iv1350.pos.util.Amount;
+import se.kth.iv1350.pos.util.VatRate;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Tests the Sale class, which represents a single sale transaction.
@@ -167,4 +170,195 @@ public class SaleTest {
         assertEquals("Original items list should not be affected by modification attempt",
                     originalSize, itemsAgain.size());
     }
+
+    /**
+     * Tests that every sale gets its own identifier.
+     */
+    @Test
+    public void testSaleIDIsUnique() {
+        assertNotNull("Sale should have an identifier", sale.getSaleID());
+        assertNotEquals("Sales should have different identifiers",
+                        sale.getSaleID(), new Sale().getSaleID());
+    }
+
+    /**
+     * Tests that a reset sale is empty and has a new identifier.
+     */
+    @Test
+    public void testReset() {
+        sale.addItem(testItem1, 2);
+        sale.applyDiscount("customer-1", new Amount(10));
+        String oldSaleID = sale.getSaleID();
+
+        sale.reset();
+
+        assertTrue("Reset sale should have no items", sale.getItems().isEmpty());
+        assertEquals("Reset sale should have no total", new Amount(), sale.calculateTotalWithVat());
+        assertNull("Reset sale should have no customer", sale.getCustomerID());
+        assertNotEquals("Reset sale should get a new identifier", oldSaleID, sale.getSaleID());
+    }
+
+    /**
+     * Tests that an item list handed out before a reset cannot be used afterwards.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testStaleItemListIsDetected() {
+        sale.addItem(testItem1, 1);
+        List<SaleLineItem> staleItems = sale.getItems();
+
+        sale.reset();
+        sale.addItem(testItem2, 1);
+
+        staleItems.get(0);
+    }
+
+    /**
+     * Tests that a receipt created before a reset keeps the old sale data.
+     */
+    @Test
+    public void testReceiptSurvivesReset() {
+        sale.addItem(testItem1, 2);
+        Receipt receipt = sale.createReceipt(new Amount(200), new Amount(75));
+
+        sale.reset();
+        sale.addItem(testItem2, 5);
+
+        assertEquals("Receipt should keep its lines", 1, receipt.getItems().size());
+        assertEquals("Receipt should keep its item", testItem1, receipt.getItems().get(0).getItem());
+        assertEquals("Receipt should keep its quantity", 2, receipt.getItems().get(0).getQuantity());
+    }
+
+    /**
+     * Tests that the VAT is grouped by rate.
+     */
+    @Test
+    public void testCalculateVatByRate() {
+        ItemDTO testItem3 = new ItemDTO("3", "TestItem3", "Test item 3 description", new Amount(10.0), 0.25);
+        sale.addItem(testItem1, 1);
+        sale.addItem(testItem2, 2);
+        sale.addItem(testItem3, 3);
+
+        Map<VatRate, Amount> vatByRate = sale.calculateVatByRate();
+
+        assertEquals("There should be one group per rate", 2, vatByRate.size());
+        assertEquals("VAT at 12% should be grouped", new Amount(7.20), vatByRate.get(VatRate.of(0.12)));
+        assertEquals("VAT at 25% should be grouped", new Amount(20.0), vatByRate.get(VatRate.of(0.25)));
+    }
+
+    /**
+     * Tests that totals match the sum of the line items, also when the sale
+     * grows past its initial capacity and VAT is rounded per line.
+     */
+    @Test
+    public void testTotalsMatchLineItems() {
+        for (int i = 0; i < 40; i++) {
+            sale.addItem(new ItemDTO(String.valueOf(i), "Item " + i, "", new Amount(1.99 + i), 0.06), i % 3 + 1);
+        }
+        sale.addItem(new ItemDTO("7", "Item 7", "", new Amount(8.99), 0.06), 2);
+
+        Amount total = new Amount();
+        Amount totalVat = new Amount();
+        for (SaleLineItem item : sale.getItems()) {
+            total = total.add(item.getSubtotal());
+            totalVat = totalVat.add(item.getVatAmount());
+        }
+
+        assertEquals("All lines should be kept", 40, sale.getItems().size());
+        assertEquals("Rescanned quantity should be added", 4, sale.getItems().get(7).getQuantity());
+        assertEquals("Total should match the line items", total, sale.calculateTotal());
+        assertEquals("VAT should match the line items", totalVat, sale.calculateTotalVat());
+    }
+
+    /**
+     * Tests that VAT is rounded once per line by default, and once for the
+     * whole sale when rounding per receipt.
+     */
+    @Test
+    public void testVatRounding() {
+        ItemDTO cheapItem = new ItemDTO("9", "Cheap item", "", new Amount(0.05), 0.12);
+        ItemDTO otherItem = new ItemDTO("10", "Other item", "", new Amount(0.05), 0.12);
+        sale.addItem(cheapItem, 1);
+        sale.addItem(otherItem, 1);
+
+        assertEquals("Each line should be rounded", new Amount(0.02), sale.calculateTotalVat());
+
+        sale.setVatRounding(VatRounding.PER_RECEIPT);
+
+        assertEquals("The sale should be rounded once", new Amount(0.01), sale.calculateTotalVat());
+        assertEquals("Rate groups should be rounded once", new Amount(0.01),
+                     sale.calculateVatByRate().get(VatRate.of(0.12)));
+    }
+
+    /**
+     * Tests that the VAT reported for each addition follows the VAT rounding
+     * of the sale, so the additions add up to the sale total.
+     */
+    @Test
+    public void testAddedVatFollowsRounding() {
+        ItemDTO cheapItem = new ItemDTO("9", "Cheap item", "", new Amount(0.05), 0.12);
+        ItemDTO otherItem = new ItemDTO("10", "Other item", "", new Amount(0.05), 0.12);
+        sale.setVatRounding(VatRounding.PER_RECEIPT);
+
+        SaleItemDTO first = sale.addItem(cheapItem, 1);
+        SaleItemDTO second = sale.addItem(otherItem, 1);
+
+        assertEquals("First addition should round the sale VAT up", new Amount(0.01), first.vatAmount());
+        assertEquals("Second addition should not change the rounded VAT", Amount.zero(), second.vatAmount());
+        assertEquals("Additions should add up to the total", sale.calculateTotalWithVat(),
+                     first.totalWithVat().add(second.totalWithVat()));
+    }
+
+    /**
+     * Tests that added items are found by identifier.
+     */
+    @Test
+    public void testContainsItem() {
+        sale.addItem(testItem1, 1);
+
+        assertTrue("Added item should be found", sale.containsItem("1"));
+        assertFalse("Other item should not be found", sale.containsItem("2"));
+    }
+
+    /**
+     * Tests that VAT of a line is computed from the whole line, not from a
+     * rounded unit VAT.
+     */
+    @Test
+    public void testVatIsExactForLargeQuantities() {
+        sale.addItem(new ItemDTO("11", "Screw", "", new Amount(0.33), 0.25), 1000);
+
+        assertEquals("VAT should be exact", new Amount(82.50), sale.calculateTotalVat());
+        assertEquals("Line VAT should match", new Amount(82.50), sale.getItems().get(0).getVatAmount());
+    }
+
+    /**
+     * Tests that totals of a very large sale, summed in parallel, are exactly
+     * the totals summed sequentially, with both kinds of VAT rounding.
+     */
+    @Test
+    public void testParallelTotalsMatchSequentialTotals() {
+        VatRate[] rates = {VatRate.ofBasisPoints(600), VatRate.ofBasisPoints(1200), VatRate.ofBasisPoints(2500)};
+        for (int i = 0; i < 20_000; i++) {
+            sale.addItem(new ItemDTO("B" + i, "Bulk item " + i, "", Amount.ofOre(1 + i * 7 % 10_000),
+                                     rates[i % rates.length]), i % 5 + 1);
+        }
+        sale.applyDiscount("customer", new Amount(100.0));
+
+        for (VatRounding rounding : VatRounding.values()) {
+            sale.setVatRounding(rounding);
+            sale.setParallelThreshold(Integer.MAX_VALUE);
+            Amount sequentialTotal = sale.calculateTotal();
+            Amount sequentialVat = sale.calculateTotalVat();
+            Amount sequentialTotalWithVat = sale.calculateTotalWithVat();
+            Map<VatRate, Amount> sequentialVatByRate = sale.calculateVatByRate();
+
+            sale.setParallelThreshold(1);
+
+            assertEquals("Parallel total should match", sequentialTotal, sale.calculateTotal());
+            assertEquals("Parallel VAT should match", sequentialVat, sale.calculateTotalVat());
+            assertEquals("Parallel total with VAT should match", sequentialTotalWithVat,
+                         sale.calculateTotalWithVat());
+            assertEquals("Parallel VAT per rate should match", sequentialVatByRate, sale.calculateVatByRate());
+        }
+    }
 }
@@ -0,0 +1,53 @@
+package se.kth.iv1350.pos.util;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import java.math.BigDecimal;
+
+/**
+ * Tests the static factories of the Amount class, which share common amounts.
+ */
+public class AmountTest {
+
+    /**
+     * Tests that zero is shared and equal to a created zero.
+     */
+    @Test
+    public void testZero() {
+        assertSame("Zero should be shared", Amount.zero(), Amount.zero());
+        assertSame("Zero öre should be zero", Amount.zero(), Amount.ofOre(0));
+        assertEquals("Zero should equal a new zero", new Amount(), Amount.zero());
+    }
+
+    /**
+     * Tests that common amounts are shared, whichever factory creates them.
+     */
+    @Test
+    public void testCommonAmountsAreShared() {
+        Amount price = Amount.ofOre(29_90);
+
+        assertSame("Same öre value should be shared", price, Amount.ofOre(29_90));
+        assertSame("Same decimal value should be shared", price, Amount.of(new BigDecimal("29.9")));
+        assertSame("Same double value should be shared", price, Amount.of(29.9));
+        assertSame("Sums should be shared", price, Amount.ofOre(20_00).add(Amount.ofOre(9_90)));
+    }
+
+    /**
+     * Tests that amounts outside the cache are still created correctly.
+     */
+    @Test
+    public void testUncommonAmounts() {
+        assertEquals("Negative amount should be created", new Amount(-1.5), Amount.ofOre(-150));
+        assertEquals("Large amount should be created", new Amount(123456.78), Amount.ofOre(123_456_78));
+        assertEquals("Values should be rounded half up", new Amount(1.01), Amount.of(new BigDecimal("1.005")));
+    }
+
+    /**
+     * Tests the conversion to öre.
+     */
+    @Test
+    public void testToOre() {
+        assertEquals("Amount should be converted to öre", 1234, new Amount(12.34).toOre());
+        assertEquals("Negative amount should be converted to öre", -5, Amount.ofOre(-5).toOre());
+    }
+}
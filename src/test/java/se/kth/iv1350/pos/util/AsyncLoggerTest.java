@@ -0,0 +1,154 @@
+package se.kth.iv1350.pos.util;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Tests the AsyncLogger class, which writes log messages on a writer thread.
+ */
+public class AsyncLoggerTest {
+    private ByteArrayOutputStream output;
+    private AsyncLogger logger;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    /**
+     * Sets up the test environment before each test.
+     */
+    @Before
+    public void setUp() {
+        output = new ByteArrayOutputStream();
+        logger = new AsyncLogger(Channels.newChannel(output), AsyncLogger.Level.INFO, 16,
+                                 AsyncLogger.OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * Cleans up the test environment after each test.
+     */
+    @After
+    public void tearDown() {
+        logger.close();
+        logger = null;
+    }
+
+    /**
+     * Tests that messages are written in order once flushed.
+     */
+    @Test
+    public void testMessagesAreWrittenInOrder() {
+        for (int i = 0; i < 100; i++) {
+            logger.info("Message " + i);
+        }
+        logger.flush();
+
+        String[] lines = writtenText().split(System.lineSeparator());
+        assertEquals("All messages should be written", 100, lines.length);
+        assertEquals("First message should come first", "Message 0", lines[0]);
+        assertEquals("Last message should come last", "Message 99", lines[99]);
+    }
+
+    /**
+     * Tests that messages below the minimum level are not written.
+     */
+    @Test
+    public void testLevelGating() {
+        logger.debug("Hidden");
+        logger.warning("Shown");
+        logger.flush();
+
+        assertFalse("Debug message should be discarded", writtenText().contains("Hidden"));
+        assertTrue("Warning should be prefixed", writtenText().contains("Warning: Shown"));
+        assertFalse("Debug should be disabled", logger.isEnabled(AsyncLogger.Level.DEBUG));
+    }
+
+    /**
+     * Tests that messages are dropped and counted, instead of waiting, when
+     * the queue of a dropping logger is full.
+     */
+    @Test
+    public void testDropPolicy() throws InterruptedException {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AsyncLogger dropping = new AsyncLogger(new BlockingChannel(writing, release), AsyncLogger.Level.INFO,
+                                               4, AsyncLogger.OverflowPolicy.DROP);
+        dropping.info("First");
+        writing.await();
+        for (int i = 0; i < 10; i++) {
+            dropping.info("Queued " + i);
+        }
+        release.countDown();
+        dropping.close();
+
+        assertEquals("Messages beyond the capacity should be dropped", 6, dropping.getDroppedMessageCount());
+    }
+
+    /**
+     * Tests that messages are appended to a log file.
+     */
+    @Test
+    public void testWritesToFile() throws IOException {
+        Path file = tempFolder.getRoot().toPath().resolve("pos.log");
+        AsyncLogger fileLogger = AsyncLogger.toFile(file, AsyncLogger.Level.INFO, 16,
+                                                    AsyncLogger.OverflowPolicy.BLOCK);
+        fileLogger.info("Sale recorded");
+        fileLogger.close();
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals("Message should be in the file", List.of("Sale recorded"), lines);
+    }
+
+    private String writtenText() {
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A channel whose first write waits until released, which keeps the
+     * writer thread busy while the queue fills up.
+     */
+    private static final class BlockingChannel implements WritableByteChannel {
+        private final CountDownLatch writing;
+        private final CountDownLatch release;
+
+        private BlockingChannel(CountDownLatch writing, CountDownLatch release) {
+            this.writing = writing;
+            this.release = release;
+        }
+
+        @Override
+        public int write(ByteBuffer source) {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            int length = source.remaining();
+            source.position(source.limit());
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
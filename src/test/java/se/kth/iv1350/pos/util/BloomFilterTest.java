@@ -0,0 +1,95 @@
+package se.kth.iv1350.pos.util;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests the BloomFilter class, which is used to reject unknown keys cheaply.
+ */
+public class BloomFilterTest {
+    private static final int KEY_COUNT = 10_000;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private List<String> keys;
+    private BloomFilter filter;
+
+    /**
+     * Sets up the test environment before each test.
+     */
+    @Before
+    public void setUp() {
+        keys = new ArrayList<>();
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keys.add("item-" + i);
+        }
+        filter = BloomFilter.of(keys, FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * Cleans up the test environment after each test.
+     */
+    @After
+    public void tearDown() {
+        keys = null;
+        filter = null;
+    }
+
+    /**
+     * Tests that every key added to the filter is reported as possibly contained.
+     */
+    @Test
+    public void testNoFalseNegatives() {
+        for (String key : keys) {
+            assertTrue("Added key should always be reported: " + key, filter.mightContain(key));
+        }
+    }
+
+    /**
+     * Tests that the share of unknown keys passing the filter stays close to
+     * the configured false-positive rate.
+     */
+    @Test
+    public void testFalsePositiveRateIsBounded() {
+        int falsePositives = 0;
+        for (int i = 0; i < KEY_COUNT; i++) {
+            if (filter.mightContain("unknown-" + i)) {
+                falsePositives++;
+            }
+        }
+
+        double observedRate = (double) falsePositives / KEY_COUNT;
+        assertTrue("Observed false-positive rate too high: " + observedRate,
+                   observedRate < FALSE_POSITIVE_RATE * 3);
+    }
+
+    /**
+     * Tests that the expected false-positive rate matches the requested one.
+     */
+    @Test
+    public void testExpectedFalsePositiveRate() {
+        assertEquals("Expected rate should be close to the requested rate",
+                     FALSE_POSITIVE_RATE, filter.expectedFalsePositiveRate(), 0.005);
+    }
+
+    /**
+     * Tests that an empty filter rejects every key.
+     */
+    @Test
+    public void testEmptyFilter() {
+        BloomFilter empty = BloomFilter.of(new ArrayList<>(), FALSE_POSITIVE_RATE);
+
+        assertFalse("Empty filter should not contain any key", empty.mightContain("1"));
+    }
+
+    /**
+     * Tests that an invalid false-positive rate is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidFalsePositiveRate() {
+        BloomFilter.of(keys, 1.5);
+    }
+}
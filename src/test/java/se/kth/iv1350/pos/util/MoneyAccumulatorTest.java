@@ -0,0 +1,73 @@
+package se.kth.iv1350.pos.util;
+
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Tests the MoneyAccumulator class, which sums amounts in öre.
+ */
+public class MoneyAccumulatorTest {
+    private MoneyAccumulator accumulator;
+
+    /**
+     * Sets up the test environment before each test.
+     */
+    @Before
+    public void setUp() {
+        accumulator = new MoneyAccumulator();
+    }
+
+    /**
+     * Tests that amounts, products and VAT are added.
+     */
+    @Test
+    public void testAdd() {
+        accumulator.add(new Amount(10.50))
+                   .addProduct(new Amount(2.25), 4)
+                   .addVat(new Amount(0.33), VatRate.ofBasisPoints(2500), 1000);
+
+        assertEquals("Sum should be exact", 10_50 + 9_00 + 82_50, accumulator.getOre());
+        assertEquals("Sum should be an amount", new Amount(102.00), accumulator.toAmount());
+    }
+
+    /**
+     * Tests that accumulators are combined and reset.
+     */
+    @Test
+    public void testCombineAndReset() {
+        MoneyAccumulator other = new MoneyAccumulator().addOre(-2_50);
+        accumulator.addOre(10_00).combine(other);
+
+        assertEquals("Sums should be combined", new Amount(7.50), accumulator.toAmount());
+        assertEquals("Combined accumulator should be unchanged", -2_50, other.getOre());
+
+        accumulator.reset();
+
+        assertSame("Reset accumulator should be zero", Amount.zero(), accumulator.toAmount());
+    }
+
+    /**
+     * Tests that a parallel sum gives the same result as a sequential sum.
+     */
+    @Test
+    public void testParallelSum() {
+        List<Amount> amounts = IntStream.range(0, 10_000).mapToObj(Amount::ofOre).collect(Collectors.toList());
+
+        Amount parallelSum = amounts.parallelStream().collect(MoneyAccumulator.summing());
+        Amount sequentialSum = amounts.stream().reduce(Amount.zero(), Amount::add);
+
+        assertEquals("Parallel sum should match", sequentialSum, parallelSum);
+    }
+
+    /**
+     * Tests that a sum too large for a long is not wrapped around.
+     */
+    @Test(expected = ArithmeticException.class)
+    public void testOverflow() {
+        accumulator.addOre(Long.MAX_VALUE).addOre(1);
+    }
+}
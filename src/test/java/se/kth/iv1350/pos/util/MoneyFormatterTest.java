@@ -0,0 +1,81 @@
+package se.kth.iv1350.pos.util;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Tests the MoneyFormatter class, which formats amounts for receipts and
+ * displays.
+ */
+public class MoneyFormatterTest {
+
+    /**
+     * Tests that amounts are formatted with two decimals.
+     */
+    @Test
+    public void testFormat() {
+        MoneyFormatter formatter = MoneyFormatter.RECEIPT;
+
+        assertEquals("Amount should have two decimals", "12:50", formatter.format(new Amount(12.5)));
+        assertEquals("Zero should be formatted", "0:00", formatter.format(new Amount()));
+        assertEquals("Small amount should keep its zero", "0:05", formatter.format(5));
+        assertEquals("Negative amount should have a sign", "-0:05", formatter.format(-5));
+        assertEquals("Large amount should not be grouped", "1234567:89", formatter.format(123_456_789));
+    }
+
+    /**
+     * Tests that formatting an everyday amount again returns the cached string.
+     */
+    @Test
+    public void testCommonAmountsAreCached() {
+        MoneyFormatter formatter = MoneyFormatter.RECEIPT;
+
+        assertSame("Price should be cached", formatter.format(29_90), formatter.format(new Amount(29.90)));
+        assertSame("Whole kronor should be cached", formatter.format(500_00), formatter.format(500_00));
+        assertNotSame("Odd large amounts should not be cached", formatter.format(500_01), formatter.format(500_01));
+    }
+
+    /**
+     * Tests that the separator of the locale is used.
+     */
+    @Test
+    public void testLocaleSeparator() {
+        assertEquals("Swedish amounts should use a comma", "12,50",
+                     MoneyFormatter.forLocale(Locale.forLanguageTag("sv-SE")).format(12_50));
+        assertEquals("English amounts should use a point", "12.50",
+                     MoneyFormatter.forLocale(Locale.ENGLISH).format(12_50));
+        assertSame("Formatters should be shared", MoneyFormatter.withSeparator('.'),
+                   MoneyFormatter.forLocale(Locale.ENGLISH));
+    }
+
+    /**
+     * Tests that amounts are appended and written without creating strings.
+     */
+    @Test
+    public void testAppendAndWrite() {
+        StringBuilder builder = new StringBuilder("Total: ");
+        MoneyFormatter.RECEIPT.appendTo(builder, new Amount(-1234.05));
+        assertEquals("Amount should be appended", "Total: -1234:05", builder.toString());
+
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        int written = MoneyFormatter.RECEIPT.writeTo(buffer, -1234_05);
+        assertEquals("All characters should be counted", MoneyFormatter.width(-1234_05), written);
+        assertEquals("Amount should be written", "-1234:05",
+                     new String(buffer.array(), 0, written, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Tests that an amount too large for a long is still formatted.
+     */
+    @Test
+    public void testHugeAmount() {
+        Amount huge = new Amount(new BigDecimal("123456789012345678901.25"));
+
+        assertEquals("Huge amount should be formatted", "123456789012345678901:25",
+                     MoneyFormatter.RECEIPT.format(huge));
+    }
+}
@@ -0,0 +1,68 @@
+package se.kth.iv1350.pos.util;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import java.math.BigDecimal;
+
+/**
+ * Tests the VatRate class, which calculates VAT exactly in basis points.
+ */
+public class VatRateTest {
+
+    /**
+     * Tests that rates given in different ways are equal.
+     */
+    @Test
+    public void testCreateRates() {
+        VatRate fromBasisPoints = VatRate.ofBasisPoints(1200);
+
+        assertEquals("Rate from double should be equal", fromBasisPoints, VatRate.of(0.12));
+        assertEquals("Parsed rate should be equal", fromBasisPoints, VatRate.parse("0.12"));
+        assertSame("Common rates should be shared", fromBasisPoints, VatRate.parse("0.120"));
+        assertEquals("Basis points should be kept", 1200, fromBasisPoints.getBasisPoints());
+    }
+
+    /**
+     * Tests that a negative rate is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeRate() {
+        VatRate.parse("-0.06");
+    }
+
+    /**
+     * Tests that VAT is rounded half up to whole öre.
+     */
+    @Test
+    public void testVatOn() {
+        VatRate rate = VatRate.ofBasisPoints(2500);
+
+        assertEquals("Exact VAT should not be rounded", new Amount(12.50), rate.vatOn(new Amount(50.0)));
+        assertEquals("Half an öre should be rounded up", 1, rate.vatOnOre(2));
+        assertEquals("Less than half an öre should be rounded down", 0, rate.vatOnOre(1));
+        assertEquals("Negative VAT should be rounded away from zero", -1, rate.vatOnOre(-2));
+    }
+
+    /**
+     * Tests that a sum of exact VAT products is rounded once.
+     */
+    @Test
+    public void testRoundBasisPointProduct() {
+        assertEquals("Sum should be rounded half up", 2, VatRate.roundBasisPointProduct(15_000));
+        assertEquals("Sum should be rounded down", 1, VatRate.roundBasisPointProduct(14_999));
+    }
+
+    /**
+     * Tests the conversions and the text form of a rate.
+     */
+    @Test
+    public void testConversions() {
+        VatRate rate = VatRate.ofBasisPoints(1250);
+
+        assertEquals("Decimal form should be exact", new BigDecimal("0.125"), rate.toBigDecimal());
+        assertEquals("Double form should match", 0.125, rate.toDouble(), 0.0);
+        assertEquals("Text form should be a percentage", "12.5%", rate.toString());
+        assertEquals("Whole percentages should have no decimals", "12%", VatRate.ofBasisPoints(1200).toString());
+        assertEquals("Zero rate should be plain", "0", VatRate.ofBasisPoints(0).toBigDecimal().toPlainString());
+    }
+}